@@ -0,0 +1,110 @@
+package com.ditech.backend.benchmark;
+
+import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserPageResponseDto;
+import com.ditech.backend.dto.UserResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formatos de la negociación de contenido de UserController: escritura de una página completa de
+ * GET /users (100 usuarios, el máximo) y lectura del cuerpo de POST /users, en JSON, JSON con gzip
+ * (nivel por defecto, el que usa Tomcat), Smile y CBOR. El tamaño de cada cuerpo se imprime al preparar
+ * el benchmark. Se ejecuta con: mvn -Pjmh test -Djmh.args="FormatBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"json", "json-gzip", "smile", "cbor"})
+    private String format;
+
+    private boolean gzip;
+    private ObjectWriter pageWriter;
+    private ObjectReader createReader;
+    private UserPageResponseDto page;
+    private byte[] createBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = switch (format) {
+            case "json", "json-gzip" -> Jackson2ObjectMapperBuilder.json().build();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            default -> throw new IllegalArgumentException("Formato desconocido: " + format);
+        };
+        gzip = format.endsWith("-gzip");
+        pageWriter = objectMapper.writerFor(UserPageResponseDto.class);
+        createReader = objectMapper.readerFor(UserCreateRequestDto.class);
+
+        List<UserResponseDto> users = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            long id = 100_000 + i;
+            users.add(new UserResponseDto(id, "user" + id, "user" + id + "@example.com", i % 10 != 0, null));
+        }
+        page = new UserPageResponseDto(users, "aWQ6MTAwMDk5", true);
+
+        UserCreateRequestDto createRequest = new UserCreateRequestDto();
+        createRequest.setUsername("testuser");
+        createRequest.setEmail("test@example.com");
+        createRequest.setActive(true);
+        createBody = encode(objectMapper.writeValueAsBytes(createRequest));
+
+        System.out.printf("%n%s: página de %d usuarios %d bytes, alta %d bytes%n",
+                format, PAGE_SIZE, writePage().length, createBody.length);
+    }
+
+    @Benchmark
+    public byte[] writePage() throws IOException {
+        return encode(pageWriter.writeValueAsBytes(page));
+    }
+
+    @Benchmark
+    public UserCreateRequestDto readCreateRequest() throws IOException {
+        if (gzip) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(createBody))) {
+                return createReader.readValue(in);
+            }
+        }
+        return createReader.readValue(createBody);
+    }
+
+    private byte[] encode(byte[] body) throws IOException {
+        if (!gzip) {
+            return body;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
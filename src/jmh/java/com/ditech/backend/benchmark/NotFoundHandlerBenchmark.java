@@ -0,0 +1,59 @@
+package com.ditech.backend.benchmark;
+
+import com.ditech.backend.exception.ErrorResponse;
+import com.ditech.backend.exception.GlobalExceptionHandler;
+import com.ditech.backend.exception.UserNotFoundException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino de un 404 de GET /users/{id}: crear la excepción, resolverla en GlobalExceptionHandler
+ * y serializar el cuerpo de error
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotFoundHandlerBenchmark {
+
+    private GlobalExceptionHandler handler;
+    private ServletWebRequest request;
+    private ObjectWriter errorWriter;
+
+    @Setup
+    public void setUp() {
+        handler = new GlobalExceptionHandler();
+        request = new ServletWebRequest(new MockHttpServletRequest("GET", "/users/999"));
+        errorWriter = Jackson2ObjectMapperBuilder.json().build().writerFor(ErrorResponse.class);
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorResponse> handle() {
+        return handler.handleUserNotFoundException(new UserNotFoundException(999L), request);
+    }
+
+    @Benchmark
+    public byte[] handleAndSerialize() throws JsonProcessingException {
+        ResponseEntity<ErrorResponse> response =
+                handler.handleUserNotFoundException(new UserNotFoundException(999L), request);
+        return errorWriter.writeValueAsBytes(response.getBody());
+    }
+}
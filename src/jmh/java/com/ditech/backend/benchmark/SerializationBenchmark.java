@@ -0,0 +1,58 @@
+package com.ditech.backend.benchmark;
+
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.exception.ErrorResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización JSON de las respuestas más frecuentes con la misma configuración de Jackson
+ * que usa Spring MVC
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private ObjectWriter userWriter;
+    private ObjectWriter errorWriter;
+    private UserResponseDto user;
+    private ErrorResponse error;
+
+    @Setup
+    public void setUp() {
+        var objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        userWriter = objectMapper.writerFor(UserResponseDto.class);
+        errorWriter = objectMapper.writerFor(ErrorResponse.class);
+        user = new UserResponseDto(1L, "testuser", "test@example.com");
+        error = new ErrorResponse(LocalDateTime.now(), 404, "Not Found",
+                "Usuario no encontrado con ID: 999", "/users/999");
+    }
+
+    @Benchmark
+    public byte[] userResponseDto() throws JsonProcessingException {
+        return userWriter.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public byte[] errorResponse() throws JsonProcessingException {
+        return errorWriter.writeValueAsBytes(error);
+    }
+}
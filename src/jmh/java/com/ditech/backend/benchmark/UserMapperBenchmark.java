@@ -0,0 +1,63 @@
+package com.ditech.backend.benchmark;
+
+import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.mapper.UserMapper;
+import com.ditech.backend.mapper.UserMapperImpl;
+import com.ditech.backend.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de las conversiones de MapStruct entre DTOs y la entidad User
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMapperBenchmark {
+
+    private UserMapper userMapper;
+    private UserCreateRequestDto createRequest;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        userMapper = new UserMapperImpl();
+        createRequest = new UserCreateRequestDto();
+        createRequest.setUsername("testuser");
+        createRequest.setEmail("test@example.com");
+        createRequest.setActive(true);
+
+        user = new User();
+        user.setId(1L);
+        user.setUsername("testuser");
+        user.setEmail("test@example.com");
+        user.setActive(true);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public User toEntity() {
+        return userMapper.toEntity(createRequest);
+    }
+
+    @Benchmark
+    public UserResponseDto toResponseDto() {
+        return userMapper.toResponseDto(user);
+    }
+}
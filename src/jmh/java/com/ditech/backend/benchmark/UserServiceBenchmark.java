@@ -0,0 +1,95 @@
+package com.ditech.backend.benchmark;
+
+import com.ditech.backend.BackendUserServiceApplication;
+import com.ditech.backend.dto.UserPageResponseDto;
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.pagination.CursorCodec;
+import com.ditech.backend.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserService contra H2 en memoria sembrado con rows usuarios (IDs 1..rows). Con cacheSize=0
+ * la caché de usuarios descarta cada entrada al cargarla, así que getUserById mide siempre el
+ * acceso a la base de datos; con el tamaño por defecto la caché se llena antes de medir y
+ * getUserById refleja la mezcla real de aciertos y fallos
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000", "100000", "1000000"})
+    private int rows;
+
+    @Param({"0", "100000"})
+    private int cacheSize;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BackendUserServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:jmh-" + rows + "-" + cacheSize,
+                        "--spring.jpa.show-sql=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--users.cache.maximum-size=" + cacheSize,
+                        "--logging.level.root=WARN");
+        context.getBean(JdbcTemplate.class).update(
+                "INSERT INTO users (id, username, email, active) "
+                        + "SELECT X, 'user' || X, 'user' || X || '@ejemplo.com', MOD(X, 10) <> 0 "
+                        + "FROM SYSTEM_RANGE(1, ?)", rows);
+        userService = context.getBean(UserService.class);
+        // Con caché se parte del estado estable: tantos usuarios cargados como quepan
+        for (long id = 1; id <= Math.min(rows, cacheSize); id++) {
+            userService.getUserById(id);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserResponseDto getUserById() {
+        return userService.getUserById(ThreadLocalRandom.current().nextLong(1, rows + 1));
+    }
+
+    @Benchmark
+    public UserPageResponseDto getAllUsers_firstPage() {
+        return userService.getAllUsers(null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public UserPageResponseDto getAllUsers_randomPage() {
+        String cursor = CursorCodec.encode(ThreadLocalRandom.current().nextLong(0, rows - PAGE_SIZE));
+        return userService.getAllUsers(null, cursor, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,101 @@
+package com.ditech.backend.benchmark;
+
+import com.ditech.backend.index.UserTrigramIndex;
+import com.ditech.backend.repository.UserKeys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda aproximada en UserTrigramIndex con users usuarios sintéticos: nombres y apellidos de
+ * dos o tres sílabas (consonante, vocal y a veces consonante final), usernames nombre + inicial
+ * del apellido + número opcional y emails nombre.apellido[N]@dominio. Cada consulta parte de un
+ * usuario existente y le introduce un error de escritura (cambio de una letra) o se queda con la
+ * parte local del email. El índice se construye sin Spring ni base de datos.
+ * mvn -Pjmh test -Djmh.args="UserTrigramIndexBenchmark -p users=1000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class UserTrigramIndexBenchmark {
+
+    private static final String[] ONSETS = {
+            "b", "c", "d", "f", "g", "j", "l", "m", "n", "p", "r", "s", "t", "v", "z", "ch", "ll", "br", "cr", "gr", "tr"
+    };
+    private static final String[] VOWELS = {"a", "e", "i", "o", "u"};
+    private static final String[] CODAS = {"", "", "", "n", "r", "s", "l"};
+    private static final String[] DOMAINS = {"gmail.com", "hotmail.com", "ejemplo.com", "empresa.es"};
+    private static final int QUERIES = 1024;
+    private static final int LIMIT = 10;
+
+    @Param({"100000", "1000000"})
+    private int users;
+
+    private UserTrigramIndex index;
+    private String[] misspelledUsernames;
+    private String[] partialEmails;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new UserTrigramIndex(null, null, 0.3, 0.2, Duration.ofSeconds(1), new SimpleMeterRegistry());
+        Random random = new Random(42);
+        String[] usernames = new String[users];
+        String[] emails = new String[users];
+        for (int i = 0; i < users; i++) {
+            String first = name(random, 2 + random.nextInt(2));
+            String last = name(random, 2 + random.nextInt(2));
+            usernames[i] = first + last.charAt(0) + (random.nextBoolean() ? "" : random.nextInt(1000));
+            emails[i] = first + "." + last + (random.nextBoolean() ? "" : random.nextInt(100))
+                    + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            index.add(new UserKeys((long) i + 1, usernames[i], emails[i]));
+        }
+        misspelledUsernames = new String[QUERIES];
+        partialEmails = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            int user = random.nextInt(users);
+            char[] chars = usernames[user].toCharArray();
+            chars[random.nextInt(chars.length)] = (char) ('a' + random.nextInt(26));
+            misspelledUsernames[q] = new String(chars);
+            partialEmails[q] = emails[user].substring(0, emails[user].indexOf('@'));
+        }
+        System.out.printf("%nÍndice con %d usuarios: ~%d MB%n", users, index.estimatedSizeInBytes() >> 20);
+    }
+
+    @Benchmark
+    public UserTrigramIndex.SearchResult misspelledUsername() {
+        return index.search(misspelledUsernames[ThreadLocalRandom.current().nextInt(QUERIES)], LIMIT);
+    }
+
+    @Benchmark
+    public UserTrigramIndex.SearchResult partialEmail() {
+        return index.search(partialEmails[ThreadLocalRandom.current().nextInt(QUERIES)], LIMIT);
+    }
+
+    private static String name(Random random, int syllables) {
+        StringBuilder name = new StringBuilder();
+        for (int s = 0; s < syllables; s++) {
+            name.append(ONSETS[random.nextInt(ONSETS.length)])
+                    .append(VOWELS[random.nextInt(VOWELS.length)])
+                    .append(CODAS[random.nextInt(CODAS.length)]);
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,203 @@
+package com.ditech.backend.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Límite de peticiones concurrentes que se adapta a la latencia observada (algoritmo de gradiente,
+ * como Gradient2 de Netflix concurrency-limits, de la familia de TCP Vegas).
+ *
+ * Las latencias se agrupan en ventanas de al menos window y minWindowSamples muestras. Al cerrar cada
+ * ventana se compara su latencia media (corta) con una media móvil exponencial de las anteriores (larga,
+ * la latencia "sin carga"): gradiente = clamp(tolerance · larga / corta, 0,5, 1). Si la latencia sube más de
+ * lo tolerado, el límite baja en proporción; si no, crece en √límite para sondear si cabe más concurrencia.
+ * No crece mientras la aplicación no lo use (máximo en vuelo por debajo de la mitad del límite).
+ * El límite nuevo se suaviza con smoothing y se acota entre minLimit y maxLimit.
+ *
+ * Las peticiones fallidas (5xx, timeouts) no aportan latencia, pero cuentan para cerrar la ventana: si en una
+ * ventana hubo alguna, el límite se multiplica por backoffRatio en lugar de aplicar el gradiente (AIMD). Así el
+ * límite baja aunque la base de datos solo devuelva errores y no haya muestras de latencia con las que compararla.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /** Ventanas que pesa la media larga de la latencia */
+    private static final int LONG_WINDOW = 60;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int limit;
+
+    // Estado de la ventana actual y de la media larga, protegido por this
+    private double estimatedLimit;
+    private double longRttNanos;
+    private int windows;
+    private long windowStart;
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowDrops;
+    private int windowMaxInflight;
+
+    /**
+     * @param initialLimit límite al arrancar
+     * @param minLimit límite mínimo; se admiten siempre al menos estas peticiones concurrentes
+     * @param maxLimit límite máximo
+     * @param tolerance aumento de la latencia tolerado antes de bajar el límite (1,5 = 50 %)
+     * @param smoothing peso del límite calculado en cada ventana frente al anterior (0-1]
+     * @param backoffRatio factor que se aplica al límite tras una ventana con peticiones fallidas (0-1]
+     * @param window duración mínima de cada ventana en nanosegundos
+     * @param minWindowSamples muestras mínimas para cerrar una ventana
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance,
+                                    double smoothing, double backoffRatio, long window, int minWindowSamples) {
+        this(initialLimit, minLimit, maxLimit, tolerance, smoothing, backoffRatio, window, minWindowSamples,
+                System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                             double backoffRatio, long window, int minWindowSamples, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Límites de concurrencia inválidos: inicial " + initialLimit
+                    + ", mínimo " + minLimit + ", máximo " + maxLimit);
+        }
+        if (tolerance < 1.0) {
+            throw new IllegalArgumentException("tolerance no puede ser menor que 1: " + tolerance);
+        }
+        if (smoothing <= 0.0 || smoothing > 1.0) {
+            throw new IllegalArgumentException("smoothing debe estar en (0, 1]: " + smoothing);
+        }
+        if (backoffRatio <= 0.0 || backoffRatio > 1.0) {
+            throw new IllegalArgumentException("backoffRatio debe estar en (0, 1]: " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.windowNanos = window;
+        this.minWindowSamples = Math.max(1, minWindowSamples);
+        this.nanoClock = nanoClock;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Reservar un hueco; false si ya hay limit peticiones en vuelo
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inflight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Liberar el hueco de una petición completada y registrar su latencia
+     * @param rttNanos duración de la petición
+     * @param inflightAtStart peticiones en vuelo (incluida esta) al empezar
+     */
+    public void release(long rttNanos, int inflightAtStart) {
+        inflight.decrementAndGet();
+        sample(rttNanos, inflightAtStart);
+    }
+
+    /**
+     * Liberar el hueco sin registrar latencia (peticiones asíncronas, que no representan el tiempo de servicio)
+     */
+    public void release() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * Liberar el hueco de una petición fallida (5xx o timeout): no aporta latencia pero hace bajar el límite
+     * al cerrar la ventana
+     */
+    public void releaseDropped() {
+        inflight.decrementAndGet();
+        drop();
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inflight() {
+        return inflight.get();
+    }
+
+    private synchronized void sample(long rttNanos, int inflightAtStart) {
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInflight = Math.max(windowMaxInflight, inflightAtStart);
+        closeWindow();
+    }
+
+    private synchronized void drop() {
+        windowDrops++;
+        closeWindow();
+    }
+
+    private void closeWindow() {
+        long now = nanoClock.getAsLong();
+        if (windowSamples + windowDrops < minWindowSamples || now - windowStart < windowNanos) {
+            return;
+        }
+        int drops = windowDrops;
+        double shortRtt = windowSamples == 0 ? 0 : (double) windowRttSum / windowSamples;
+        int maxInflight = windowMaxInflight;
+        windowStart = now;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowDrops = 0;
+        windowMaxInflight = 0;
+        if (drops > 0) {
+            // La latencia de una ventana con errores no es fiable (los timeouts no llegan a medirse):
+            // se baja el límite sin tocar la media larga
+            backOff();
+        } else {
+            update(shortRtt, maxInflight);
+        }
+    }
+
+    private void backOff() {
+        estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+        limit = (int) estimatedLimit;
+    }
+
+    private void update(double shortRtt, int maxInflight) {
+        windows++;
+        if (windows == 1) {
+            longRttNanos = shortRtt;
+        } else {
+            // Media exponencial; durante las primeras ventanas pesa más cada muestra
+            double weight = 2.0 / (Math.min(windows, LONG_WINDOW) + 1);
+            longRttNanos = longRttNanos * (1 - weight) + shortRtt * weight;
+        }
+        if (longRttNanos / shortRtt > 2) {
+            // La latencia ha bajado mucho (por ejemplo, la base de datos se ha recuperado): se olvida antes el pasado
+            longRttNanos *= 0.95;
+        }
+        if (maxInflight < estimatedLimit / 2) {
+            // La aplicación no usa el límite: no hay información para subirlo
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRtt));
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+}
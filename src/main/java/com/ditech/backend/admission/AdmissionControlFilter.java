@@ -0,0 +1,148 @@
+package com.ditech.backend.admission;
+
+import com.ditech.backend.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Control de admisión de los endpoints /users: cada clase de endpoint (lecturas y escrituras) tiene su
+ * propio AdaptiveConcurrencyLimit y las peticiones que lo superan se rechazan al momento con 503 y
+ * Retry-After en lugar de esperar un hilo o una conexión. Así, cuando la base de datos se ralentiza, las
+ * peticiones no se acumulan en UserService y el resto de la aplicación (actuator, documentación) sigue
+ * respondiendo: esas rutas no pasan por el control.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    /**
+     * Atributo de la petición con el que GlobalExceptionHandler marca un fallo por sobrecarga (sin conexión a la
+     * base de datos, timeout del pool o de GuardedDataSource, excepción no controlada). Solo esas respuestas
+     * bajan el límite: los 503 que la aplicación devuelve al llenarse una capacidad propia (máximo de
+     * suscriptores SSE, cola de altas asíncronas) no indican que la base de datos esté saturada
+     */
+    public static final String OVERLOAD_ATTRIBUTE = AdmissionControlFilter.class.getName() + ".overload";
+
+    private static final String USERS_PATH = "/users";
+    private static final String LOOKUP_PATH = "/users/lookup";
+
+    /**
+     * Clase de endpoint con límite propio
+     */
+    public enum EndpointClass {
+        /** GET, HEAD y POST /users/lookup (búsqueda por lote de solo lectura) */
+        READ,
+        /** Altas y bajas */
+        WRITE
+    }
+
+    private final Map<EndpointClass, AdaptiveConcurrencyLimit> limits;
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+    private final String retryAfterSeconds;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param limits límite de cada clase de endpoint
+     * @param retryAfter tiempo que se indica al cliente en Retry-After al rechazar
+     */
+    public AdmissionControlFilter(Map<EndpointClass, AdaptiveConcurrencyLimit> limits, Duration retryAfter,
+                                  ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.limits = new EnumMap<>(limits);
+        this.retryAfterSeconds = Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+        this.objectMapper = objectMapper;
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            AdaptiveConcurrencyLimit limit = this.limits.get(endpointClass);
+            if (limit == null) {
+                throw new IllegalArgumentException("Falta el límite de concurrencia de " + endpointClass);
+            }
+            String tag = endpointClass.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("users.admission.limit", limit, AdaptiveConcurrencyLimit::limit)
+                    .description("Límite de peticiones concurrentes de la clase de endpoint")
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            Gauge.builder("users.admission.inflight", limit, AdaptiveConcurrencyLimit::inflight)
+                    .description("Peticiones en vuelo de la clase de endpoint")
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            rejections.put(endpointClass, Counter.builder("users.admission.rejected")
+                    .description("Peticiones rechazadas con 503 por superar el límite de concurrencia")
+                    .tag("class", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals(USERS_PATH) || path.startsWith(USERS_PATH + "/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpointClass = classify(request);
+        AdaptiveConcurrencyLimit limit = limits.get(endpointClass);
+        if (!limit.tryAcquire()) {
+            rejections.get(endpointClass).increment();
+            reject(request, response);
+            return;
+        }
+        int inflightAtStart = limit.inflight();
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (!completed || request.getAttribute(OVERLOAD_ATTRIBUTE) != null) {
+                // Una excepción que sale de la cadena o un fallo por sobrecarga (timeout de Hikari, rechazo de
+                // GuardedDataSource) no es una muestra de latencia, pero el límite debe bajar
+                limit.releaseDropped();
+            } else if (request.isAsyncStarted() || response.getStatus() >= 500) {
+                // La exportación NDJSON y los eventos (asíncronos, pueden durar minutos) no son una muestra de
+                // la latencia de servicio ni retienen el hueco mientras se transmiten; tampoco los 5xx restantes
+                limit.release();
+            } else {
+                limit.release(System.nanoTime() - start, inflightAtStart);
+            }
+        }
+    }
+
+    static EndpointClass classify(HttpServletRequest request) {
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return EndpointClass.READ;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return "POST".equals(method) && path.equals(LOOKUP_PATH) ? EndpointClass.READ : EndpointClass.WRITE;
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service Unavailable",
+                "El servicio está saturado, inténtelo de nuevo más tarde",
+                request.getRequestURI()
+        );
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+}
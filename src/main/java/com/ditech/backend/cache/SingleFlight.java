@@ -0,0 +1,122 @@
+package com.ditech.backend.cache;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ditech.backend.exception.LookupTimeoutException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Agrupa las búsquedas concurrentes de la misma clave (single-flight): la primera petición ejecuta
+ * la carga y las que llegan mientras está en curso esperan su resultado o su excepción en lugar de
+ * consultar también la base de datos. La espera está acotada por users.single-flight.timeout; al
+ * agotarse se lanza LookupTimeoutException (503) y la carga original sigue su curso.
+ *
+ * Cada tipo de búsqueda usa su propio nombre (por ejemplo "user-by-id" o "user-by-username"), que
+ * separa las claves y etiqueta las métricas users.singleflight.calls (result=executed, coalesced o
+ * timed_out). Las cargas no deben volver a entrar en la misma clave.
+ */
+@Component
+public class SingleFlight {
+    
+    private final ConcurrentMap<FlightKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    
+    private final ConcurrentMap<String, FlightMeters> meters = new ConcurrentHashMap<>();
+    
+    private final Duration timeout;
+    
+    private final MeterRegistry meterRegistry;
+    
+    public SingleFlight(@Value("${users.single-flight.timeout:2s}") Duration timeout,
+                        MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("users.singleflight.inflight", inFlight, ConcurrentMap::size)
+                .description("Cargas agrupadas en curso")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Ejecutar la carga de una clave o unirse a la que ya está en curso
+     * @param name Tipo de búsqueda
+     * @param key Clave buscada
+     * @param loader Carga el valor; se ejecuta en el hilo que llega primero
+     * @return Valor cargado (compartido con las peticiones agrupadas, no debe modificarse)
+     * @throws LookupTimeoutException si la carga en curso no termina dentro del tiempo máximo de espera
+     */
+    public <K, V> V execute(String name, K key, Function<K, V> loader) {
+        FlightKey flightKey = new FlightKey(name, key);
+        FlightMeters flightMeters = meters.computeIfAbsent(name, this::registerMeters);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            flightMeters.coalesced.increment();
+            return await(flightKey, existing, flightMeters);
+        }
+        
+        flightMeters.executed.increment();
+        try {
+            V value = loader.apply(key);
+            flight.complete(value);
+            return value;
+        } catch (Throwable ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <V> V await(FlightKey flightKey, CompletableFuture<Object> flight, FlightMeters flightMeters) {
+        try {
+            return (V) flight.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException ex) {
+            // Se propaga la misma excepción que recibió la petición que ejecutó la carga
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException ex) {
+            flightMeters.timedOut.increment();
+            throw new LookupTimeoutException(flightKey.name(), flightKey.key());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LookupTimeoutException(flightKey.name(), flightKey.key());
+        }
+    }
+    
+    private FlightMeters registerMeters(String name) {
+        return new FlightMeters(counter(name, "executed"), counter(name, "coalesced"), counter(name, "timed_out"));
+    }
+    
+    private Counter counter(String name, String result) {
+        return Counter.builder("users.singleflight.calls")
+                .description("Búsquedas agrupadas por resultado: ejecutadas, unidas a una carga en curso o con espera agotada")
+                .tag("lookup", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    private record FlightKey(String name, Object key) {
+    }
+    
+    private record FlightMeters(Counter executed, Counter coalesced, Counter timedOut) {
+    }
+}
@@ -0,0 +1,196 @@
+package com.ditech.backend.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.exception.UserNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Caché en memoria de usuarios por ID (lectura a través de la caché).
+ * Caffeine acota el tamaño con la política W-TinyLFU, por lo que el conjunto caliente
+ * se mantiene aunque haya barridos de IDs poco frecuentes. Las métricas de aciertos, fallos
+ * y expulsiones se publican como cache_* con la etiqueta cache="users".
+ *
+ * Además guarda durante poco tiempo los IDs que no existen (caché negativa, cache="users-missing"),
+ * para que las consultas repetidas de IDs inexistentes no lleguen a la base de datos. Con réplicas, los
+ * loaders deben confirmar en el primario un fallo leído de una réplica (ReadYourWrites.onPrimary): si no,
+ * un usuario recién creado que la réplica aún no tiene quedaría marcado como inexistente durante missing-ttl.
+ *
+ * Cualquier operación que modifique o elimine un usuario debe llamar a evict (o markDeleted) después de
+ * confirmar la transacción, y las inserciones a registerCreated. Los DTOs almacenados se comparten entre
+ * peticiones y no deben modificarse.
+ */
+@Component
+public class UserCache {
+    
+    public static final String CACHE_NAME = "users";
+    public static final String MISSING_CACHE_NAME = "users-missing";
+    
+    private final Cache<Long, UserResponseDto> cache;
+    
+    private final Cache<Long, Boolean> missing;
+    
+    /**
+     * Se incrementa con cada inserción confirmada. Una búsqueda solo registra un ID como inexistente
+     * si no hubo inserciones mientras consultaba, así un usuario recién creado nunca queda marcado.
+     */
+    private final AtomicLong insertEpoch = new AtomicLong();
+    
+    /**
+     * Se incrementa con cada invalidación (antes de invalidar). Una carga en bloque solo guarda sus
+     * resultados si no hubo invalidaciones mientras consultaba, así no resucita un usuario eliminado.
+     */
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+    
+    public UserCache(@Value("${users.cache.maximum-size:100000}") long maximumSize,
+                     @Value("${users.cache.ttl:10m}") Duration ttl,
+                     @Value("${users.cache.missing-maximum-size:100000}") long missingMaximumSize,
+                     @Value("${users.cache.missing-ttl:30s}") Duration missingTtl,
+                     MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(missingMaximumSize)
+                .expireAfterWrite(missingTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        CaffeineCacheMetrics.monitor(meterRegistry, missing, MISSING_CACHE_NAME);
+    }
+    
+    /**
+     * Obtener un usuario de la caché o cargarlo si no está
+     * Una invalidación concurrente espera a que termine la carga en curso, de modo que un
+     * usuario eliminado no puede quedar guardado después de su evict.
+     * @param id ID del usuario
+     * @param loader Carga el usuario desde la base de datos; si lanza una excepción no se guarda nada
+     * @return DTO del usuario
+     * @throws UserNotFoundException si el ID está en la caché negativa o el loader no lo encuentra
+     */
+    public UserResponseDto get(Long id, Function<Long, UserResponseDto> loader) {
+        if (missing.getIfPresent(id) != null) {
+            throw new UserNotFoundException(id);
+        }
+        long epoch = insertEpoch.get();
+        try {
+            return cache.get(id, loader);
+        } catch (UserNotFoundException ex) {
+            markMissing(id, epoch);
+            throw ex;
+        }
+    }
+    
+    /**
+     * Obtener varios usuarios: los que están en caché se devuelven directamente, los marcados como
+     * inexistentes se omiten y el resto se carga con una única llamada al loader
+     * @param ids IDs de los usuarios (sin repetidos)
+     * @param loader Carga en bloque los IDs indicados; los que no devuelve se consideran inexistentes
+     * @return Usuarios encontrados por ID; los IDs ausentes del mapa no existen
+     */
+    public Map<Long, UserResponseDto> getAll(Collection<Long> ids,
+                                             Function<Collection<Long>, Map<Long, UserResponseDto>> loader) {
+        Map<Long, UserResponseDto> found = new HashMap<>();
+        List<Long> toLoad = new ArrayList<>();
+        for (Long id : ids) {
+            UserResponseDto cached = cache.getIfPresent(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else if (missing.getIfPresent(id) == null) {
+                toLoad.add(id);
+            }
+        }
+        if (toLoad.isEmpty()) {
+            return found;
+        }
+        
+        long insertEpochAtLookup = insertEpoch.get();
+        long invalidationEpochAtLookup = invalidationEpoch.get();
+        Map<Long, UserResponseDto> loaded = loader.apply(toLoad);
+        found.putAll(loaded);
+        if (invalidationEpoch.get() == invalidationEpochAtLookup) {
+            cache.putAll(loaded);
+            // Si una invalidación llegó entre la comprobación y el putAll, se deshace el guardado
+            if (invalidationEpoch.get() != invalidationEpochAtLookup) {
+                cache.invalidateAll(loaded.keySet());
+            }
+        }
+        for (Long id : toLoad) {
+            if (!loaded.containsKey(id)) {
+                markMissing(id, insertEpochAtLookup);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Obtener un usuario solo si ya está en la caché
+     * @param id ID del usuario
+     * @return DTO del usuario o null
+     */
+    public UserResponseDto getIfPresent(Long id) {
+        return cache.getIfPresent(id);
+    }
+    
+    public void evict(Long id) {
+        invalidationEpoch.incrementAndGet();
+        cache.invalidate(id);
+    }
+    
+    public void evictAll(Collection<Long> ids) {
+        invalidationEpoch.incrementAndGet();
+        cache.invalidateAll(ids);
+    }
+    
+    /**
+     * Registrar un usuario eliminado: sale de la caché y su ID queda como inexistente
+     * (los IDs salen de una secuencia y no se reutilizan)
+     * @param id ID del usuario eliminado
+     */
+    public void markDeleted(Long id) {
+        invalidationEpoch.incrementAndGet();
+        cache.invalidate(id);
+        missing.put(id, Boolean.TRUE);
+    }
+    
+    /**
+     * Registrar usuarios recién insertados; debe llamarse después de confirmar la transacción
+     * @param ids IDs de los usuarios creados
+     */
+    public void registerCreated(Collection<Long> ids) {
+        insertEpoch.incrementAndGet();
+        missing.invalidateAll(ids);
+    }
+    
+    public void registerCreated(Long id) {
+        registerCreated(List.of(id));
+    }
+    
+    private void markMissing(Long id, long epochAtLookup) {
+        if (insertEpoch.get() != epochAtLookup) {
+            return;
+        }
+        missing.put(id, Boolean.TRUE);
+        // Si una inserción se confirmó entre la comprobación y el put, se deshace la marca
+        if (insertEpoch.get() != epochAtLookup) {
+            missing.invalidate(id);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ditech.backend.config;
+
+import com.ditech.backend.admission.AdaptiveConcurrencyLimit;
+import com.ditech.backend.admission.AdmissionControlFilter;
+import com.ditech.backend.admission.AdmissionControlFilter.EndpointClass;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Control de admisión de /users con un límite de concurrencia adaptativo para lecturas y otro para
+ * escrituras (users.admission.*)
+ */
+@Configuration
+public class AdmissionControlConfig {
+
+    /**
+     * Va justo después del filtro de observación de Spring Boot, de modo que los rechazos aparecen en
+     * http.server.requests con estado 503, y antes que el resto de filtros de la aplicación.
+     * Se desactiva con el registro y no con una condición para que funcione igual con Spring AOT
+     */
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            Environment environment,
+            @Value("${users.admission.enabled:true}") boolean enabled,
+            @Value("${users.admission.retry-after:1s}") Duration retryAfter,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        AdmissionControlFilter filter = new AdmissionControlFilter(Map.of(
+                EndpointClass.READ, limit(environment, "read"),
+                EndpointClass.WRITE, limit(environment, "write")), retryAfter, objectMapper, meterRegistry);
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+
+    private static AdaptiveConcurrencyLimit limit(Environment environment, String endpointClass) {
+        String prefix = "users.admission." + endpointClass + ".";
+        return new AdaptiveConcurrencyLimit(
+                environment.getProperty(prefix + "initial-limit", Integer.class, 100),
+                environment.getProperty(prefix + "min-limit", Integer.class, 10),
+                environment.getProperty(prefix + "max-limit", Integer.class, 1000),
+                environment.getProperty("users.admission.tolerance", Double.class, 1.5),
+                environment.getProperty("users.admission.smoothing", Double.class, 0.2),
+                environment.getProperty("users.admission.backoff-ratio", Double.class, 0.9),
+                environment.getProperty("users.admission.window", Duration.class, Duration.ofSeconds(1)).toNanos(),
+                environment.getProperty("users.admission.min-window-samples", Integer.class, 10));
+    }
+}
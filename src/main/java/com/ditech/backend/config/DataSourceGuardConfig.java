@@ -0,0 +1,62 @@
+package com.ditech.backend.config;
+
+import com.ditech.backend.datasource.GuardedDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+@Configuration
+public class DataSourceGuardConfig {
+
+    /**
+     * Envuelve el DataSource del pool en un GuardedDataSource para acotar los hilos que esperan
+     * conexión; necesario sobre todo con spring.threads.virtual.enabled=true
+     * @param maxWaiting máximo de hilos obteniendo una conexión a la vez
+     */
+    @Bean
+    public static BeanPostProcessor dataSourceGuardPostProcessor(
+            @Value("${users.datasource.max-waiting:200}") int maxWaiting) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !isGuarded(dataSource)) {
+                    return new GuardedDataSource(dataSource, maxWaiting);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * El DataSource con réplicas ya protege cada pool por dentro
+     */
+    private static boolean isGuarded(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(GuardedDataSource.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Publica las métricas users.datasource.guard.* del DataSource protegido
+     * @param dataSource DataSource de la aplicación
+     */
+    @Bean
+    public MeterBinder dataSourceGuardMetrics(DataSource dataSource) {
+        return registry -> {
+            try {
+                if (dataSource.isWrapperFor(GuardedDataSource.class)) {
+                    dataSource.unwrap(GuardedDataSource.class).bindTo(registry);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudo acceder al DataSource protegido", e);
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package com.ditech.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers users.json.write de un conversor Jackson, etiquetados con el formato (json, smile, cbor) y el
+ * tipo del cuerpo
+ */
+final class JacksonWriteTimers {
+
+    /**
+     * Escritura del cuerpo por el conversor
+     */
+    @FunctionalInterface
+    interface Write {
+        void write() throws IOException;
+    }
+
+    private final String format;
+    private final MeterRegistry meterRegistry;
+    /** Un Timer por tipo de cuerpo (los DTO de la API), para no buscarlo en el registro en cada respuesta */
+    private final Map<Class<?>, Timer> timers = new ConcurrentHashMap<>();
+
+    JacksonWriteTimers(String format, MeterRegistry meterRegistry) {
+        this.format = format;
+        this.meterRegistry = meterRegistry;
+    }
+
+    void record(Object body, Write write) throws IOException {
+        Object value = body instanceof MappingJacksonValue wrapper ? wrapper.getValue() : body;
+        Timer timer = timers.computeIfAbsent(value.getClass(), this::timer);
+        long start = System.nanoTime();
+        try {
+            write.write();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(Class<?> bodyType) {
+        return Timer.builder("users.json.write")
+                .description("Duración de la serialización de las respuestas con Jackson")
+                .tag("format", format)
+                .tag("type", bodyType.getSimpleName())
+                .register(meterRegistry);
+    }
+}
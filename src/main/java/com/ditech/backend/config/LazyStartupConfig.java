@@ -0,0 +1,59 @@
+package com.ditech.backend.config;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Arranque rápido: los beans de users.startup.lazy-beans (springdoc, la consola H2...) se crean en su
+ * primer uso en lugar de al arrancar. A diferencia de spring.main.lazy-initialization, el resto de la
+ * aplicación sigue creándose al arrancar y la primera petición a la API no paga su inicialización.
+ * Se decide con una propiedad y no con @Profile porque con Spring AOT los perfiles se fijan al compilar.
+ */
+@Configuration
+public class LazyStartupConfig {
+
+    /**
+     * @param environment entorno con users.startup.lazy-beans: prefijos de paquete o clase
+     */
+    @Bean
+    public static BeanFactoryPostProcessor lazyStartupBeans(Environment environment) {
+        List<String> prefixes = Binder.get(environment)
+                .bind("users.startup.lazy-beans", Bindable.listOf(String.class))
+                .orElse(List.of());
+        return beanFactory -> {
+            if (prefixes.isEmpty()) {
+                return;
+            }
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                if (matches(prefixes, definition.getBeanClassName())
+                        || matches(prefixes, factoryClassName(beanFactory, definition))) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    /**
+     * Clase de configuración que declara el bean con un método @Bean
+     */
+    private static String factoryClassName(ConfigurableListableBeanFactory beanFactory, BeanDefinition definition) {
+        String factoryBeanName = definition.getFactoryBeanName();
+        if (factoryBeanName == null || !beanFactory.containsBeanDefinition(factoryBeanName)) {
+            return null;
+        }
+        return beanFactory.getBeanDefinition(factoryBeanName).getBeanClassName();
+    }
+
+    private static boolean matches(List<String> prefixes, String className) {
+        return className != null && prefixes.stream().anyMatch(className::startsWith);
+    }
+}
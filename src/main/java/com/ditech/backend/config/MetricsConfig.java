@@ -0,0 +1,70 @@
+package com.ditech.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Métricas de las capas internas de una petición, para separar el tiempo de http.server.requests:
+ * servicios (users.service, con @Timed en la clase), repositorios (spring.data.repository.invocations,
+ * de Spring Boot), Hibernate (hibernate.*), espera de conexión del pool (hikaricp.connections.acquire)
+ * y serialización de las respuestas en JSON, Smile o CBOR (users.json.write). Los buckets de cada histograma se fijan en application.yml.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Mide los métodos públicos de las clases anotadas con @Timed. Va por fuera de @Transactional,
+     * así que el tiempo incluye abrir y confirmar la transacción. El registro se resuelve en la primera
+     * llamada: crearlo aquí lo dejaría fuera de los MeterFilter (buckets) que Spring Boot le aplica.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor timedServiceAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                new AnnotationMatchingPointcut(Timed.class, true), new TimedMethodInterceptor(meterRegistry));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    /**
+     * Sustituye al conversor JSON de Spring Boot por uno que mide la serialización; usa el mismo
+     * ObjectMapper configurado por Spring Boot
+     */
+    @Bean
+    public TimedJsonHttpMessageConverter timedJsonHttpMessageConverter(ObjectMapper objectMapper,
+                                                                       MeterRegistry meterRegistry) {
+        return new TimedJsonHttpMessageConverter(objectMapper, meterRegistry);
+    }
+
+    /**
+     * Sustituye al conversor Smile que Spring MVC registra al encontrar jackson-dataformat-smile; el
+     * ObjectMapper sale del Jackson2ObjectMapperBuilder de Spring Boot, con la misma configuración que el JSON
+     */
+    @Bean
+    public TimedSmileHttpMessageConverter timedSmileHttpMessageConverter(Jackson2ObjectMapperBuilder builder,
+                                                                         MeterRegistry meterRegistry) {
+        return new TimedSmileHttpMessageConverter(builder.factory(new SmileFactory()).build(), meterRegistry);
+    }
+
+    /**
+     * Sustituye al conversor CBOR de Spring MVC, igual que el Smile
+     */
+    @Bean
+    public TimedCborHttpMessageConverter timedCborHttpMessageConverter(Jackson2ObjectMapperBuilder builder,
+                                                                       MeterRegistry meterRegistry) {
+        return new TimedCborHttpMessageConverter(builder.factory(new CBORFactory()).build(), meterRegistry);
+    }
+}
@@ -0,0 +1,98 @@
+package com.ditech.backend.config;
+
+import com.ditech.backend.datasource.GuardedDataSource;
+import com.ditech.backend.datasource.ReadWriteRoutingDataSource;
+import com.ditech.backend.datasource.ReadYourWritesFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réplicas de lectura: solo se activa si users.datasource.replicas.urls tiene alguna URL. Sustituye el
+ * pool de Spring Boot por un ReadWriteRoutingDataSource con el primario de spring.datasource.* y un pool
+ * por réplica (mismas credenciales), cada uno protegido con su GuardedDataSource.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "users.datasource.replicas", name = "urls")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReadWriteRoutingDataSource dataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            @Value("${users.datasource.replicas.urls}") List<String> replicaUrls,
+            @Value("${users.datasource.replicas.pool-size:10}") int replicaPoolSize,
+            @Value("${users.datasource.replicas.connection-timeout:2s}") Duration replicaConnectionTimeout,
+            @Value("${users.datasource.replicas.max-lag:5s}") Duration maxLag,
+            @Value("${users.datasource.replicas.lag-query:}") String lagQuery,
+            @Value("${users.datasource.replicas.health-check-interval:5s}") Duration healthCheckInterval,
+            @Value("${users.datasource.max-waiting:200}") int maxWaiting) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(replicaUrls.get(i).trim())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            String name = "replica-" + (i + 1);
+            replica.setPoolName(name);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setConnectionTimeout(replicaConnectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            replicas.put(name, new GuardedDataSource(replica, maxWaiting, name));
+        }
+
+        ReadWriteRoutingDataSource dataSource = new ReadWriteRoutingDataSource(
+                new GuardedDataSource(primary, maxWaiting), replicas, maxLag, lagQuery);
+        dataSource.startHealthChecks(healthCheckInterval);
+        return dataSource;
+    }
+
+    /**
+     * Publica las métricas de enrutamiento y de las réplicas. El bean dataSource no llega al registro como
+     * MeterBinder porque StatementCountConfig lo envuelve, así que se desenvuelve aquí
+     * @param dataSource DataSource de la aplicación
+     */
+    @Bean
+    public MeterBinder readReplicaMetrics(DataSource dataSource) {
+        return registry -> {
+            try {
+                dataSource.unwrap(ReadWriteRoutingDataSource.class).bindTo(registry);
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudo acceder al DataSource de enrutamiento", e);
+            }
+        };
+    }
+
+    /**
+     * Fija las lecturas de un cliente al primario durante sticky-window después de escribir
+     */
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(
+            @Value("${users.datasource.replicas.sticky-window:5s}") Duration stickyWindow) {
+        return new ReadYourWritesFilter(stickyWindow);
+    }
+}
@@ -0,0 +1,62 @@
+package com.ditech.backend.config;
+
+import com.ditech.backend.datasource.StatementCountFilter;
+import com.ditech.backend.datasource.StatementCountingDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Map;
+
+@Configuration
+public class StatementCountConfig {
+
+    /**
+     * Envuelve el DataSource de la aplicación en un StatementCountingDataSource; con réplicas se envuelve
+     * el DataSource de enrutamiento, así que se cuentan las sentencias del primario y de las réplicas
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !isCounting(dataSource)) {
+                    return new StatementCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static boolean isCounting(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(StatementCountingDataSource.class);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sentencias SQL por petición, con los presupuestos de users.statements.budget.endpoints
+     * @param budgetMode LOG o FAIL al superar un presupuesto
+     * @param debugHeader true para devolver la cabecera X-SQL-Statement-Count
+     */
+    @Bean
+    public StatementCountFilter statementCountFilter(
+            Environment environment,
+            @Value("${users.statements.budget.mode:LOG}") StatementCountFilter.BudgetMode budgetMode,
+            @Value("${users.statements.debug-header:false}") boolean debugHeader,
+            MeterRegistry meterRegistry) {
+        Map<String, Integer> budgets = Binder.get(environment)
+                .bind("users.statements.budget.endpoints", Bindable.mapOf(String.class, Integer.class))
+                .orElse(Map.of());
+        return new StatementCountFilter(budgets, budgetMode, debugHeader, meterRegistry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ditech.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Conversor CBOR (application/cbor, RFC 8949) que mide la serialización como
+ * TimedJsonHttpMessageConverter (users.json.write con format=cbor)
+ */
+public class TimedCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+    private final JacksonWriteTimers timers;
+
+    /**
+     * @param objectMapper ObjectMapper creado con una CBORFactory
+     */
+    public TimedCborHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.timers = new JacksonWriteTimers("cbor", meterRegistry);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        timers.record(object, () -> super.writeInternal(object, type, outputMessage));
+    }
+}
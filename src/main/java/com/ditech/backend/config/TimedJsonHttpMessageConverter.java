@@ -0,0 +1,31 @@
+package com.ditech.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Conversor JSON de Spring MVC que mide cuánto tarda Jackson en escribir cada respuesta
+ * (users.json.write con format=json, etiquetado con el tipo del cuerpo). La escritura va al buffer de la
+ * respuesta; solo los cuerpos que no caben en él incluyen también el envío por la red.
+ */
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final JacksonWriteTimers timers;
+
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.timers = new JacksonWriteTimers("json", meterRegistry);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        timers.record(object, () -> super.writeInternal(object, type, outputMessage));
+    }
+}
@@ -0,0 +1,33 @@
+package com.ditech.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Conversor Smile (application/x-jackson-smile, JSON binario de Jackson) que mide la serialización
+ * como TimedJsonHttpMessageConverter (users.json.write con format=smile)
+ */
+public class TimedSmileHttpMessageConverter extends MappingJackson2SmileHttpMessageConverter {
+
+    private final JacksonWriteTimers timers;
+
+    /**
+     * @param objectMapper ObjectMapper creado con una SmileFactory
+     */
+    public TimedSmileHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.timers = new JacksonWriteTimers("smile", meterRegistry);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        timers.record(object, () -> super.writeInternal(object, type, outputMessage));
+    }
+}
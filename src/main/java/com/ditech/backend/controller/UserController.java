@@ -1,13 +1,33 @@
 package com.ditech.backend.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.ditech.backend.dto.UserBatchCreateRequestDto;
+import com.ditech.backend.dto.UserBatchCreateResponseDto;
+import com.ditech.backend.dto.UserBulkDeleteRequestDto;
+import com.ditech.backend.dto.UserBulkDeleteResponseDto;
+import com.ditech.backend.dto.UserCountResponseDto;
 import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserFuzzySearchResponseDto;
+import com.ditech.backend.dto.UserLookupRequestDto;
+import com.ditech.backend.dto.UserLookupResponseDto;
+import com.ditech.backend.dto.UserPageResponseDto;
 import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.dto.UserSearchResponseDto;
+import com.ditech.backend.dto.UserWriteStatusDto;
+import com.ditech.backend.service.UserBatchService;
 import com.ditech.backend.service.UserService;
+import com.ditech.backend.service.UserWriteBehindService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,53 +36,231 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import jakarta.validation.Valid;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
 
 @RestController
 @RequestMapping("/users")
 @Tag(name = "Users", description = "API para gestión de usuarios")
 public class UserController {
     
+    /** Formato newline-delimited JSON: un objeto JSON por línea */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    
+    /** Cada cuántas filas se vacía el buffer de la respuesta durante la exportación */
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
+    
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private UserBatchService userBatchService;
+    
+    @Autowired
+    private UserWriteBehindService userWriteBehindService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
     /**
      * Crear un nuevo usuario
      */
     @PostMapping
-    @Operation(summary = "Crear usuario", description = "Crea un nuevo usuario en el sistema")
+    @Operation(summary = "Crear usuario",
+            description = "Crea un nuevo usuario en el sistema. Con users.write-behind.enabled=true el alta se encola, "
+                    + "se responde 202 con un ID de seguimiento y el usuario se escribe en segundo plano")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "201", description = "Usuario creado exitosamente"),
+        @ApiResponse(responseCode = "202", description = "Alta aceptada; su estado se consulta en GET /users/writes/{trackingId}"),
         @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+        @ApiResponse(responseCode = "409", description = "El nombre de usuario o el email ya existen"),
+        @ApiResponse(responseCode = "503", description = "La cola de altas asíncronas está llena"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<UserResponseDto> createUser(
+    public ResponseEntity<?> createUser(
             @Valid @RequestBody UserCreateRequestDto userCreateRequestDto) {
+        if (userWriteBehindService.isEnabled()) {
+            UserWriteStatusDto accepted = userWriteBehindService.submit(userCreateRequestDto);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/users/writes/" + accepted.getTrackingId()))
+                    .body(accepted);
+        }
         UserResponseDto createdUser = userService.createUser(userCreateRequestDto);
         return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
     }
     
     /**
-     * Obtener todos los usuarios
+     * Consultar el estado de un alta asíncrona
+     */
+    @GetMapping("/writes/{trackingId}")
+    @Operation(summary = "Estado de un alta asíncrona",
+            description = "Retorna el estado (PENDING, CREATED, CONFLICT o FAILED) de un alta aceptada con 202 y, una vez creada, el usuario")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Estado del alta"),
+        @ApiResponse(responseCode = "404", description = "ID de seguimiento desconocido o expirado"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<UserWriteStatusDto> getWriteStatus(
+            @Parameter(description = "ID de seguimiento devuelto al aceptar el alta", required = true)
+            @PathVariable String trackingId) {
+        return ResponseEntity.ok(userWriteBehindService.getStatus(trackingId));
+    }
+    
+    /**
+     * Crear usuarios en lote
+     */
+    @PostMapping("/batch")
+    @Operation(summary = "Crear usuarios en lote",
+            description = "Crea varios usuarios con inserciones JDBC por lotes e informa el resultado de cada elemento (CREATED o CONFLICT)")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote procesado; ver el estado de cada elemento"),
+        @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<UserBatchCreateResponseDto> createUsers(
+            @Valid @RequestBody UserBatchCreateRequestDto batchRequest) {
+        UserBatchCreateResponseDto result = userBatchService.createUsers(batchRequest.getUsers());
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Obtener usuarios paginados por keyset
      */
     @GetMapping
-    @Operation(summary = "Obtener todos los usuarios", description = "Retorna una lista de todos los usuarios")
+    @Operation(summary = "Obtener usuarios paginados",
+            description = "Retorna una página de usuarios ordenada por ID, opcionalmente solo los activos o los inactivos. "
+                    + "Para pedir la siguiente página se envía el nextCursor recibido en el parámetro after (con el mismo filtro active). "
+                    + "La respuesta lleva un ETag de la página completa; con If-None-Match se responde 304 si no ha cambiado")
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "Lista de usuarios obtenida exitosamente"),
+        @ApiResponse(responseCode = "200", description = "Página de usuarios obtenida exitosamente"),
+        @ApiResponse(responseCode = "304", description = "La página no ha cambiado desde el ETag indicado"),
+        @ApiResponse(responseCode = "400", description = "Cursor o límite inválido"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<List<UserResponseDto>> getAllUsers() {
-        List<UserResponseDto> users = userService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<UserPageResponseDto> getAllUsers(
+            @Parameter(description = "true para solo usuarios activos, false para solo inactivos; sin valor, todos")
+            @RequestParam(required = false) Boolean active,
+            @Parameter(description = "Cursor opaco devuelto como nextCursor en la página anterior")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Número máximo de usuarios por página (limitado en el servidor)")
+            @RequestParam(defaultValue = "${users.pagination.default-limit:20}") int limit) {
+        UserPageResponseDto page = userService.getAllUsers(active, after, limit);
+        // Con If-None-Match coincidente Spring responde 304 sin serializar el cuerpo. El ETag es el mismo en
+        // JSON, Smile y CBOR: Vary: Accept evita que una caché intermedia sirva un formato a quien pidió otro
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(UserETags.of(page))
+                .body(page);
+    }
+    
+    /**
+     * Contar usuarios, opcionalmente por el campo active
+     */
+    @GetMapping("/count")
+    @Operation(summary = "Contar usuarios",
+            description = "Retorna el número de usuarios activos, inactivos o totales. Se responde con contadores en memoria que se actualizan "
+                    + "con cada alta y baja y se reconcilian periódicamente con la base de datos, sin COUNT(*) por petición")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Número de usuarios obtenido exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Valor de active inválido"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<UserCountResponseDto> countUsers(
+            @Parameter(description = "true para contar usuarios activos, false para inactivos; sin valor, todos")
+            @RequestParam(required = false) Boolean active) {
+        return ResponseEntity.ok(userService.countUsers(active));
+    }
+    
+    /**
+     * Buscar usuarios por prefijo de username o email
+     */
+    @GetMapping("/search")
+    @Operation(summary = "Buscar usuarios por prefijo",
+            description = "Retorna hasta limit usuarios cuyo username o email empieza por el prefijo (sin distinguir mayúsculas), "
+                    + "ordenados por el valor coincidente. Se resuelve en un índice en memoria; complete=false indica que hay más coincidencias")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Búsqueda realizada; ver users y complete"),
+        @ApiResponse(responseCode = "400", description = "Prefijo o límite inválido"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<UserSearchResponseDto> searchUsers(
+            @Parameter(description = "Prefijo del username o del email", required = true)
+            @RequestParam(required = false) String prefix,
+            @Parameter(description = "Número máximo de usuarios (limitado en el servidor)")
+            @RequestParam(defaultValue = "${users.search.default-limit:10}") int limit) {
+        return ResponseEntity.ok(userService.searchUsers(prefix, limit));
+    }
+    
+    /**
+     * Buscar usuarios tolerando errores de escritura
+     */
+    @GetMapping("/search/fuzzy")
+    @Operation(summary = "Búsqueda aproximada de usuarios",
+            description = "Retorna hasta limit usuarios cuyo username o email se parece a la consulta aunque tenga errores o esté incompleta, "
+                    + "ordenados por similitud de trigramas. Se resuelve en un índice invertido en memoria")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Búsqueda realizada; ver users y complete"),
+        @ApiResponse(responseCode = "400", description = "Consulta o límite inválido"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<UserFuzzySearchResponseDto> fuzzySearchUsers(
+            @Parameter(description = "Nombre de usuario o email aproximado", required = true)
+            @RequestParam(required = false) String query,
+            @Parameter(description = "Número máximo de usuarios (limitado en el servidor)")
+            @RequestParam(defaultValue = "${users.search.default-limit:10}") int limit) {
+        return ResponseEntity.ok(userService.fuzzySearchUsers(query, limit));
+    }
+    
+    /**
+     * Exportar todos los usuarios en formato NDJSON
+     */
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Exportar usuarios",
+            description = "Exporta la tabla completa como NDJSON (un usuario por línea), escribiendo cada fila a medida que se lee de la base de datos")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Exportación en curso"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writerFor(UserResponseDto.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                long[] written = {0};
+                userService.exportUsers(user -> {
+                    try {
+                        writer.write(user);
+                        // La primera fila sale de inmediato; después se vacía por bloques
+                        if (written[0]++ % EXPORT_FLUSH_INTERVAL == 0) {
+                            writer.flush();
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                if (written[0] > 0) {
+                    writer.flush();
+                    outputStream.write('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
     }
     
     /**
      * Obtener un usuario por ID
      */
     @GetMapping("/{id}")
-    @Operation(summary = "Obtener usuario por ID", description = "Retorna un usuario específico por su ID")
+    @Operation(summary = "Obtener usuario por ID",
+            description = "Retorna un usuario específico por su ID con ETag y Last-Modified; con If-None-Match o If-Modified-Since se responde 304 si no ha cambiado")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Usuario encontrado exitosamente"),
+        @ApiResponse(responseCode = "304", description = "El usuario no ha cambiado desde la versión indicada"),
         @ApiResponse(responseCode = "404", description = "Usuario no encontrado"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
@@ -70,7 +268,32 @@ public class UserController {
             @Parameter(description = "ID del usuario a buscar", required = true)
             @PathVariable Long id) {
         UserResponseDto user = userService.getUserById(id);
-        return ResponseEntity.ok(user);
+        // El DTO sale de la caché; con un validador coincidente Spring responde 304 sin serializarlo
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(UserETags.of(user));
+        if (user.getUpdatedAt() != null) {
+            response.lastModified(UserETags.lastModified(user));
+        }
+        return response.body(user);
+    }
+    
+    /**
+     * Obtener varios usuarios por ID
+     */
+    @PostMapping("/lookup")
+    @Operation(summary = "Obtener varios usuarios por ID",
+            description = "Retorna los usuarios de la lista de IDs en el orden pedido, usando la caché y consultas IN por bloques para el resto. "
+                    + "Los IDs inexistentes se devuelven en missing sin hacer fallar la petición")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Consulta realizada; ver users y missing"),
+        @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<UserLookupResponseDto> getUsersByIds(
+            @Valid @RequestBody UserLookupRequestDto lookupRequest) {
+        return ResponseEntity.ok(userService.getUsersByIds(lookupRequest.getIds()));
     }
     
     /**
@@ -89,4 +312,23 @@ public class UserController {
         userService.deleteUser(id);
         return ResponseEntity.noContent().build();
     }
+    
+    /**
+     * Eliminar usuarios en lote
+     */
+    @PostMapping("/bulk-delete")
+    @Operation(summary = "Eliminar usuarios en lote",
+            description = "Elimina una lista de IDs o, con inactive=true, todos los usuarios inactivos, con sentencias DELETE por bloques")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Usuarios eliminados; se informa el número de filas borradas"),
+        @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<UserBulkDeleteResponseDto> deleteUsers(
+            @Valid @RequestBody UserBulkDeleteRequestDto bulkDeleteRequest) {
+        UserBulkDeleteResponseDto result = Boolean.TRUE.equals(bulkDeleteRequest.getInactive())
+                ? userBatchService.deleteInactiveUsers()
+                : userBatchService.deleteUsers(bulkDeleteRequest.getIds());
+        return ResponseEntity.ok(result);
+    }
 }
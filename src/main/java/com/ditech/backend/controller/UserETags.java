@@ -0,0 +1,70 @@
+package com.ditech.backend.controller;
+
+import com.ditech.backend.dto.UserPageResponseDto;
+import com.ditech.backend.dto.UserResponseDto;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Validadores HTTP (ETag y Last-Modified) de las respuestas de usuarios.
+ * Los ETag son débiles. El de un usuario combina su ID y su updated_at, que cambia con cada modificación. El de una
+ * página resume los IDs y versiones de todos sus elementos y el cursor siguiente, así que cambia en
+ * cuanto se crea, modifica o elimina un usuario de esa página.
+ */
+final class UserETags {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UserETags() {
+    }
+
+    /**
+     * ETag débil de un usuario: W/"id-versión". Como el de la página, identifica el contenido y no los bytes,
+     * así que vale para cualquier formato y compresión
+     */
+    static String of(UserResponseDto user) {
+        return "W/\"" + user.getId() + "-" + Long.toString(version(user.getUpdatedAt()), 36) + "\"";
+    }
+
+    /**
+     * ETag débil de una página de usuarios: identifica el contenido, no los bytes, que cambian con el formato
+     * (JSON, Smile, CBOR) y con la compresión. Tomcat no comprime las respuestas con ETag fuerte
+     */
+    static String of(UserPageResponseDto page) {
+        long hash = FNV_OFFSET_BASIS;
+        for (UserResponseDto user : page.getItems()) {
+            hash = mix(hash, user.getId());
+            hash = mix(hash, version(user.getUpdatedAt()));
+        }
+        hash = mix(hash, page.getItems().size());
+        hash = mix(hash, page.getNextCursor() == null ? 0 : page.getNextCursor().hashCode());
+        return "W/\"p-" + Long.toHexString(hash) + "\"";
+    }
+
+    /**
+     * Fecha de última modificación del usuario, o null si no se conoce
+     */
+    static Instant lastModified(UserResponseDto user) {
+        LocalDateTime updatedAt = user.getUpdatedAt();
+        // updated_at se guarda sin zona con la hora local de la JVM
+        return updatedAt == null ? null : updatedAt.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static long version(LocalDateTime updatedAt) {
+        if (updatedAt == null) {
+            return 0;
+        }
+        return updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + updatedAt.getNano() / 1_000;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
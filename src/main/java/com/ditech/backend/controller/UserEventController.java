@@ -0,0 +1,80 @@
+package com.ditech.backend.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.ditech.backend.dto.UserEventBatchDto;
+import com.ditech.backend.service.UserEventService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/users/events")
+@Tag(name = "User Events", description = "Flujo de altas y bajas de usuarios por offset")
+public class UserEventController {
+
+    /** Cabecera con el último id recibido que envía EventSource al reconectar */
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    @Autowired
+    private UserEventService userEventService;
+
+    /**
+     * Leer eventos a partir de un offset, opcionalmente esperando a que lleguen (long-poll)
+     */
+    @GetMapping
+    @Operation(summary = "Leer eventos de usuarios",
+            description = "Retorna hasta limit eventos (user-created, user-deleted) con offset mayor que after, en orden. "
+                    + "Sin eventos y con wait > 0 la respuesta espera hasta wait segundos a que se publique alguno. "
+                    + "Con limit=0 solo se informa el último offset (headOffset), punto de partida tras una exportación")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote de eventos; el siguiente se pide con after=lastOffset"),
+        @ApiResponse(responseCode = "400", description = "Parámetros inválidos o after posterior al último offset publicado"),
+        @ApiResponse(responseCode = "410", description = "Los eventos posteriores a after se han purgado; hay que resincronizar con GET /users/export"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletableFuture<UserEventBatchDto> getEvents(
+            @Parameter(description = "Último offset recibido; sin él se empieza por el evento más antiguo conservado")
+            @RequestParam(required = false) Long after,
+            @Parameter(description = "Número máximo de eventos (limitado en el servidor)")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "Segundos de espera si no hay eventos nuevos (limitado en el servidor)")
+            @RequestParam(required = false) Integer wait) {
+        return userEventService.poll(after, limit, wait);
+    }
+
+    /**
+     * Suscribirse a los eventos con Server-Sent Events
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Flujo de eventos de usuarios (SSE)",
+            description = "Envía como Server-Sent Events los eventos con offset mayor que after y después los nuevos según se publican. "
+                    + "El id de cada evento es su offset: al reconectar, la cabecera Last-Event-ID tiene prioridad sobre after. "
+                    + "Si la suscripción se queda atrás más que la retención recibe un evento offset-unavailable y se cierra")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Flujo abierto"),
+        @ApiResponse(responseCode = "400", description = "Offset inválido o posterior al último publicado"),
+        @ApiResponse(responseCode = "410", description = "Los eventos posteriores al offset se han purgado; hay que resincronizar con GET /users/export"),
+        @ApiResponse(responseCode = "503", description = "Se ha alcanzado el máximo de suscripciones"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public SseEmitter streamEvents(
+            @Parameter(description = "Último offset recibido; sin él se empieza por el evento más antiguo conservado")
+            @RequestParam(required = false) Long after,
+            @Parameter(description = "Último id recibido, enviado por EventSource al reconectar")
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId) {
+        return userEventService.subscribe(lastEventId != null ? lastEventId : after);
+    }
+}
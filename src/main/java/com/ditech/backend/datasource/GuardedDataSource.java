@@ -0,0 +1,124 @@
+package com.ditech.backend.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource que limita cuántos hilos pueden estar pidiendo una conexión al pool a la vez.
+ * Con hilos virtuales Tomcat ya no acota la concurrencia, así que sin este límite miles de
+ * peticiones se quedarían esperando dentro de Hikari hasta agotar su connection-timeout;
+ * por encima del límite se rechaza de inmediato con SQLTransientConnectionException.
+ * El permiso solo se retiene mientras se obtiene la conexión, no mientras se usa
+ */
+public class GuardedDataSource extends DelegatingDataSource implements MeterBinder {
+
+    /** SQLState de los rechazos: el servidor rechaza establecer la conexión */
+    public static final String REJECTED_SQL_STATE = "08004";
+
+    /** Valor de la etiqueta pool del DataSource de la aplicación (o del primario con réplicas) */
+    public static final String PRIMARY_POOL = "primary";
+
+    private final String pool;
+    private final int maxWaiting;
+    private final Semaphore permits;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param targetDataSource pool de conexiones real
+     * @param maxWaiting máximo de hilos obteniendo una conexión simultáneamente
+     */
+    public GuardedDataSource(DataSource targetDataSource, int maxWaiting) {
+        this(targetDataSource, maxWaiting, PRIMARY_POOL);
+    }
+
+    /**
+     * @param targetDataSource pool de conexiones real
+     * @param maxWaiting máximo de hilos obteniendo una conexión simultáneamente
+     * @param pool nombre del pool en la etiqueta pool de las métricas (por ejemplo, replica-1)
+     */
+    public GuardedDataSource(DataSource targetDataSource, int maxWaiting, String pool) {
+        super(targetDataSource);
+        if (maxWaiting < 1) {
+            throw new IllegalArgumentException("maxWaiting debe ser positivo: " + maxWaiting);
+        }
+        this.pool = pool;
+        this.maxWaiting = maxWaiting;
+        this.permits = new Semaphore(maxWaiting);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return super.getConnection();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Hilos que están obteniendo una conexión en este momento
+     */
+    public int waiting() {
+        return maxWaiting - permits.availablePermits();
+    }
+
+    /**
+     * Peticiones de conexión rechazadas por superar el límite
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Indica si la excepción es un rechazo por exceso de espera (y no un fallo de la base de datos)
+     */
+    public static boolean isRejection(SQLException ex) {
+        return ex instanceof SQLTransientConnectionException && REJECTED_SQL_STATE.equals(ex.getSQLState());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("users.datasource.guard.waiting", this, GuardedDataSource::waiting)
+                .description("Hilos esperando una conexión del pool")
+                .tag("pool", pool)
+                .register(registry);
+        Gauge.builder("users.datasource.guard.max.waiting", () -> maxWaiting)
+                .description("Máximo de hilos que pueden esperar una conexión")
+                .tag("pool", pool)
+                .register(registry);
+        FunctionCounter.builder("users.datasource.guard.rejected", this, GuardedDataSource::rejected)
+                .description("Peticiones de conexión rechazadas por exceso de espera")
+                .tag("pool", pool)
+                .register(registry);
+    }
+
+    private void acquire() throws SQLException {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new SQLTransientConnectionException(
+                    "Demasiadas peticiones esperando una conexión a la base de datos (máximo " + maxWaiting + ")",
+                    REJECTED_SQL_STATE);
+        }
+    }
+}
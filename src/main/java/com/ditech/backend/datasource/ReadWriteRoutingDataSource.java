@@ -0,0 +1,254 @@
+package com.ditech.backend.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource que envía las transacciones de solo lectura a las réplicas y el resto al primario.
+ * Las conexiones se obtienen de forma perezosa (LazyConnectionDataSourceProxy): la física se pide en la
+ * primera sentencia, cuando ya se sabe si la transacción es @Transactional(readOnly = true).
+ *
+ * Una lectura va a la siguiente réplica disponible (round robin). Una réplica deja de estar disponible
+ * si falla al dar una conexión o en la comprobación periódica, o si su retraso (lag-query) supera max-lag;
+ * vuelve en cuanto una comprobación la encuentra sana. Sin réplicas disponibles, o si la petición está
+ * fijada al primario por ReadYourWrites, la lectura va al primario. Los rechazos de GuardedDataSource
+ * no cuentan como caída: se propagan para responder 503.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final String lagQuery;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder stickyReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+    private ScheduledExecutorService healthChecker;
+
+    /**
+     * @param primary DataSource del primario (escrituras y lecturas sin réplica disponible)
+     * @param replicas DataSources de las réplicas por nombre
+     * @param maxLag retraso máximo tolerado para leer de una réplica
+     * @param lagQuery consulta que devuelve el retraso de la réplica en milisegundos, o null si no se mide
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                      Duration maxLag, String lagQuery) {
+        super(primary);
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos una réplica");
+        }
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagQuery = (lagQuery == null || lagQuery.isBlank()) ? null : lagQuery;
+        setReadOnlyDataSource(new ReplicaDataSource());
+    }
+
+    /**
+     * Comprobar las réplicas ahora y después cada interval
+     */
+    public void startHealthChecks(Duration interval) {
+        healthChecker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("replica-health-check").daemon().factory());
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Comprobar conexión y retraso de cada réplica
+     */
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    replica.markDown("la conexión no es válida");
+                } else {
+                    replica.markUp(lagQuery == null ? 0 : queryLag(connection));
+                }
+            } catch (SQLException ex) {
+                replica.markDown(ex.getMessage());
+            }
+        }
+    }
+
+    private long queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(lagQuery)) {
+            if (!result.next()) {
+                throw new SQLException("La consulta de retraso no devolvió filas: " + lagQuery);
+            }
+            return result.getLong(1);
+        }
+    }
+
+    /**
+     * Conexión para una transacción de solo lectura
+     */
+    Connection getReadOnlyConnection() throws SQLException {
+        if (ReadYourWrites.isPinnedToPrimary()) {
+            stickyReads.increment();
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.isAvailable(maxLagMillis)) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.reads.increment();
+                ReadYourWrites.recordReplicaRead();
+                return connection;
+            } catch (SQLException ex) {
+                if (GuardedDataSource.isRejection(ex)) {
+                    throw ex;
+                }
+                replica.markDown(ex.getMessage());
+            }
+        }
+        fallbackReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            FunctionCounter.builder("users.datasource.routing.reads", replica.reads, LongAdder::sum)
+                    .description("Conexiones de solo lectura por destino y motivo")
+                    .tag("target", replica.name)
+                    .tag("reason", "replica")
+                    .register(registry);
+            Gauge.builder("users.datasource.replica.available", replica, r -> r.isAvailable(maxLagMillis) ? 1 : 0)
+                    .description("1 si la réplica está sana y dentro del retraso tolerado")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            Gauge.builder("users.datasource.replica.lag", replica, r -> r.lagMillis)
+                    .description("Último retraso medido de la réplica")
+                    .tag("replica", replica.name)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            bindGuard(replica.dataSource, registry);
+        }
+        FunctionCounter.builder("users.datasource.routing.reads", stickyReads, LongAdder::sum)
+                .description("Conexiones de solo lectura por destino y motivo")
+                .tag("target", "primary")
+                .tag("reason", "sticky")
+                .register(registry);
+        FunctionCounter.builder("users.datasource.routing.reads", fallbackReads, LongAdder::sum)
+                .description("Conexiones de solo lectura por destino y motivo")
+                .tag("target", "primary")
+                .tag("reason", "fallback")
+                .register(registry);
+    }
+
+    /**
+     * Publica las métricas users.datasource.guard.* del pool de una réplica, con su nombre en la etiqueta pool.
+     * Las del primario las publica DataSourceGuardConfig
+     */
+    private static void bindGuard(DataSource dataSource, MeterRegistry registry) {
+        try {
+            if (dataSource.isWrapperFor(GuardedDataSource.class)) {
+                dataSource.unwrap(GuardedDataSource.class).bindTo(registry);
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("No se pudo acceder al DataSource protegido de la réplica", ex);
+        }
+    }
+
+    /**
+     * Detiene las comprobaciones y cierra los pools del primario y de las réplicas
+     */
+    @Override
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        replicas.forEach(replica -> closePool(replica.dataSource));
+        closePool(primary);
+    }
+
+    private static void closePool(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(AutoCloseable.class)) {
+                dataSource.unwrap(AutoCloseable.class).close();
+            }
+        } catch (Exception ex) {
+            log.warn("No se pudo cerrar el pool de conexiones", ex);
+        }
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final LongAdder reads = new LongAdder();
+        private volatile boolean up = true;
+        private volatile long lagMillis;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable(long maxLagMillis) {
+            return up && lagMillis <= maxLagMillis;
+        }
+
+        private void markUp(long lagMillis) {
+            this.lagMillis = lagMillis;
+            if (!up) {
+                up = true;
+                log.info("Réplica {} disponible de nuevo", name);
+            }
+        }
+
+        private void markDown(String reason) {
+            if (up) {
+                up = false;
+                log.warn("Réplica {} fuera de servicio, las lecturas van al primario: {}", name, reason);
+            }
+        }
+    }
+
+    /**
+     * DataSource de solo lectura que entrega LazyConnectionDataSourceProxy a las transacciones readOnly
+     */
+    private final class ReplicaDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return getReadOnlyConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Las réplicas usan las credenciales configuradas");
+        }
+    }
+}
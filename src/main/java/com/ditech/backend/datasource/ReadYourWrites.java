@@ -0,0 +1,105 @@
+package com.ditech.backend.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Lectura de las propias escrituras con réplicas: mientras dura una petición que ha creado o eliminado
+ * usuarios, o que llega con la cookie de ReadYourWritesFilter, las lecturas de solo lectura van al
+ * primario en lugar de a una réplica que quizá aún no tiene el cambio.
+ * Los servicios llaman a recordWrite después de confirmar cada escritura. Fuera de una petición
+ * HTTP (o sin réplicas configuradas) no hay ámbito abierto y las llamadas no tienen efecto.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Marca del hilo: alguna lectura de solo lectura se sirvió desde una réplica desde la última consulta
+     */
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * Registrar que la petición actual ha escrito en el primario
+     */
+    public static void recordWrite() {
+        Scope scope = CURRENT.get();
+        if (scope != null && !scope.written) {
+            scope.written = true;
+            scope.onFirstWrite.run();
+        }
+    }
+
+    /**
+     * Indica si las lecturas de la petición actual deben ir al primario
+     */
+    public static boolean isPinnedToPrimary() {
+        Scope scope = CURRENT.get();
+        return scope != null && (scope.sticky || scope.written);
+    }
+
+    /**
+     * Ejecutar una lectura en el primario, aunque la petición no esté fijada a él. Solo para lecturas:
+     * una escritura dentro de read no fija la cookie de la petición
+     * @param read lectura que se ejecuta en el hilo actual
+     * @return resultado de read
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        Scope previous = CURRENT.get();
+        CURRENT.set(new Scope(true, () -> { }));
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Indica si alguna lectura del hilo se sirvió desde una réplica desde la consulta anterior, y borra la marca.
+     * Un resultado vacío leído de una réplica puede deberse al retraso: antes de darlo por bueno (por ejemplo,
+     * en una caché negativa) hay que confirmarlo con onPrimary
+     */
+    public static boolean takeReplicaRead() {
+        boolean replicaRead = REPLICA_READ.get() != null;
+        REPLICA_READ.remove();
+        return replicaRead;
+    }
+
+    /**
+     * Registrar que ReadWriteRoutingDataSource ha entregado una conexión de una réplica al hilo actual
+     */
+    static void recordReplicaRead() {
+        REPLICA_READ.set(Boolean.TRUE);
+    }
+
+    /**
+     * Abrir el ámbito de una petición
+     * @param sticky true si el cliente escribió hace poco y debe leer del primario desde el principio
+     * @param onFirstWrite se ejecuta en la primera escritura de la petición (por ejemplo, para fijar la cookie)
+     */
+    static void open(boolean sticky, Runnable onFirstWrite) {
+        CURRENT.set(new Scope(sticky, onFirstWrite));
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    private static final class Scope {
+
+        private final boolean sticky;
+        private final Runnable onFirstWrite;
+        private boolean written;
+
+        private Scope(boolean sticky, Runnable onFirstWrite) {
+            this.sticky = sticky;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
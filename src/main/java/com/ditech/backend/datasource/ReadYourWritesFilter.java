@@ -0,0 +1,62 @@
+package com.ditech.backend.datasource;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Abre el ámbito de ReadYourWrites en cada petición. Cuando la petición escribe se añade la cookie
+ * users-read-primary con una vida de users.datasource.replicas.sticky-window; mientras el cliente la
+ * envíe, sus lecturas se sirven desde el primario. La ventana debe cubrir el retraso máximo de las réplicas.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "users-read-primary";
+
+    private final int stickySeconds;
+
+    /**
+     * @param stickyWindow tiempo que las lecturas de un cliente siguen en el primario tras escribir
+     */
+    public ReadYourWritesFilter(Duration stickyWindow) {
+        this.stickySeconds = (int) Math.max(1, (stickyWindow.toMillis() + 999) / 1000);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadYourWrites.open(hasStickyCookie(request), () -> response.addCookie(stickyCookie()));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.close();
+        }
+    }
+
+    private static boolean hasStickyCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Cookie stickyCookie() {
+        Cookie cookie = new Cookie(COOKIE_NAME, "1");
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(stickySeconds);
+        return cookie;
+    }
+}
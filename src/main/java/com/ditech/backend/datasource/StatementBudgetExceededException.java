@@ -0,0 +1,16 @@
+package com.ditech.backend.datasource;
+
+import java.sql.SQLException;
+
+/**
+ * Sentencia rechazada antes de llegar a la base de datos porque la petición supera su presupuesto
+ * (users.statements.budget.mode=FAIL). Spring y Hibernate la envuelven en su propia excepción;
+ * GlobalExceptionHandler la busca entre las causas para responder 500 sin tratarla como sobrecarga.
+ */
+public class StatementBudgetExceededException extends SQLException {
+
+    public StatementBudgetExceededException(int budget) {
+        super("La petición supera su presupuesto de " + budget + " sentencias SQL",
+                StatementCounter.BUDGET_EXCEEDED_SQL_STATE);
+    }
+}
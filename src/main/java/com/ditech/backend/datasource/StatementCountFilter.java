@@ -0,0 +1,172 @@
+package com.ditech.backend.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Cuenta las sentencias SQL de cada petición y las publica en users.jdbc.statements{method,uri}.
+ * Cada endpoint ("GET /users/{id}") puede tener un presupuesto: al superarlo se registra un aviso y
+ * users.jdbc.statements.over.budget, y en modo FAIL la sentencia que lo supera falla antes de ejecutarse
+ * (la transacción se deshace y la petición responde 500). Opcionalmente añade la cabecera
+ * X-SQL-Statement-Count justo antes de escribir la respuesta, cuando el controlador ya ha terminado.
+ */
+public class StatementCountFilter extends OncePerRequestFilter {
+
+    public static final String HEADER_NAME = "X-SQL-Statement-Count";
+
+    private static final Logger log = LoggerFactory.getLogger(StatementCountFilter.class);
+
+    /**
+     * Qué hacer cuando una petición supera el presupuesto de su endpoint
+     */
+    public enum BudgetMode {
+        /** Registrar un aviso y la métrica; la petición sigue */
+        LOG,
+        /** Además, rechazar la sentencia que supera el presupuesto */
+        FAIL
+    }
+
+    private final Map<String, Integer> budgets;
+    private final BudgetMode budgetMode;
+    private final boolean debugHeader;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param budgets sentencias máximas por endpoint ("MÉTODO patrón"); los endpoints sin entrada no tienen límite
+     * @param budgetMode qué hacer al superar el presupuesto
+     * @param debugHeader true para añadir la cabecera X-SQL-Statement-Count
+     */
+    public StatementCountFilter(Map<String, Integer> budgets, BudgetMode budgetMode, boolean debugHeader,
+                                MeterRegistry meterRegistry) {
+        budgets.forEach((endpoint, budget) -> {
+            if (budget < 0) {
+                throw new IllegalArgumentException("El presupuesto de " + endpoint + " no puede ser negativo: " + budget);
+            }
+        });
+        this.budgets = Map.copyOf(budgets);
+        this.budgetMode = budgetMode;
+        this.debugHeader = debugHeader;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        StatementCounter.open(budgetMode == BudgetMode.FAIL ? () -> budget(request) : null);
+        HttpServletResponse countedResponse = debugHeader ? new CountHeaderResponse(response) : response;
+        int count;
+        try {
+            chain.doFilter(request, countedResponse);
+        } finally {
+            count = StatementCounter.close();
+        }
+        if (countedResponse instanceof CountHeaderResponse headerResponse && !response.isCommitted()) {
+            // Respuestas sin cuerpo (204, 304): nada ha llegado a escribirse todavía
+            headerResponse.addCountHeader(count);
+        }
+        record(request, count);
+    }
+
+    private void record(HttpServletRequest request, int count) {
+        String uri = uri(request);
+        DistributionSummary.builder("users.jdbc.statements")
+                .description("Sentencias SQL ejecutadas por petición")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(count);
+        int budget = budget(request);
+        if (budget >= 0 && count > budget) {
+            Counter.builder("users.jdbc.statements.over.budget")
+                    .description("Peticiones que superan el presupuesto de sentencias SQL de su endpoint")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("{} {} ejecutó {} sentencias SQL (presupuesto {})", request.getMethod(), uri, count, budget);
+        }
+    }
+
+    /**
+     * Presupuesto del endpoint de la petición, -1 si no tiene
+     */
+    private int budget(HttpServletRequest request) {
+        return budgets.getOrDefault(request.getMethod() + " " + uri(request), -1);
+    }
+
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+
+    /**
+     * Añade la cabecera antes de que se escriba el cuerpo o se envíe un error, que es cuando la
+     * respuesta puede quedar confirmada y ya no admite cabeceras
+     */
+    private static final class CountHeaderResponse extends HttpServletResponseWrapper {
+
+        private boolean headerAdded;
+
+        private CountHeaderResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            addCountHeader(StatementCounter.current());
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            addCountHeader(StatementCounter.current());
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            addCountHeader(StatementCounter.current());
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            addCountHeader(StatementCounter.current());
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            addCountHeader(StatementCounter.current());
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            addCountHeader(StatementCounter.current());
+            super.sendRedirect(location);
+        }
+
+        private void addCountHeader(int count) {
+            if (!headerAdded) {
+                headerAdded = true;
+                setHeader(HEADER_NAME, Integer.toString(count));
+            }
+        }
+    }
+}
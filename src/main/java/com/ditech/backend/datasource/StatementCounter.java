@@ -0,0 +1,84 @@
+package com.ditech.backend.datasource;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Sentencias SQL ejecutadas por la petición actual. StatementCountFilter abre un ámbito por petición
+ * y StatementCountingDataSource suma una por cada execute/executeQuery/executeUpdate/executeBatch
+ * (un lote JDBC cuenta como una sola ida y vuelta). Fuera de un ámbito (tareas en segundo plano,
+ * arranque) no se cuenta nada.
+ */
+public final class StatementCounter {
+
+    /** SQLState de las sentencias rechazadas por superar el presupuesto de la petición */
+    public static final String BUDGET_EXCEEDED_SQL_STATE = "54000";
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private StatementCounter() {
+    }
+
+    /**
+     * Sentencias ejecutadas en el ámbito actual, 0 si no hay ninguno abierto
+     */
+    public static int current() {
+        Scope scope = CURRENT.get();
+        return scope == null ? 0 : scope.count;
+    }
+
+    static boolean isOpen() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Abrir el ámbito de una petición
+     * @param enforcedBudget presupuesto que, si se supera, hace fallar la sentencia en lugar de ejecutarla;
+     *                       se resuelve en la primera sentencia (cuando ya se conoce el endpoint) y devuelve
+     *                       un valor negativo si no hay límite. null para solo contar
+     */
+    static void open(IntSupplier enforcedBudget) {
+        CURRENT.set(new Scope(enforcedBudget));
+    }
+
+    /**
+     * Cerrar el ámbito actual
+     * @return sentencias ejecutadas en el ámbito
+     */
+    static int close() {
+        int count = current();
+        CURRENT.remove();
+        return count;
+    }
+
+    /**
+     * Registrar una ejecución; falla antes de llegar a la base de datos si supera el presupuesto
+     */
+    static void recordExecution() throws StatementBudgetExceededException {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return;
+        }
+        scope.count++;
+        if (scope.enforcedBudget != null) {
+            if (scope.budget == Scope.UNRESOLVED) {
+                scope.budget = scope.enforcedBudget.getAsInt();
+            }
+            if (scope.budget >= 0 && scope.count > scope.budget) {
+                throw new StatementBudgetExceededException(scope.budget);
+            }
+        }
+    }
+
+    private static final class Scope {
+
+        private static final int UNRESOLVED = Integer.MIN_VALUE;
+
+        private final IntSupplier enforcedBudget;
+        private int budget = UNRESOLVED;
+        private int count;
+
+        private Scope(IntSupplier enforcedBudget) {
+            this.enforcedBudget = enforcedBudget;
+        }
+    }
+}
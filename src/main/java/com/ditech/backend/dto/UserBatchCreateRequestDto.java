@@ -0,0 +1,18 @@
+package com.ditech.backend.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserBatchCreateRequestDto {
+    
+    public static final int MAX_USERS = 10000;
+    
+    @NotEmpty(message = "La lista de usuarios es obligatoria")
+    @Size(max = MAX_USERS, message = "El lote no puede superar los " + MAX_USERS + " usuarios")
+    private List<@Valid UserCreateRequestDto> users;
+}
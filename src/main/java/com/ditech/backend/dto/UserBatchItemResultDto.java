@@ -0,0 +1,30 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBatchItemResultDto {
+    
+    public enum Status {
+        CREATED,
+        CONFLICT
+    }
+    
+    /** Posición del usuario dentro de la lista recibida */
+    private int index;
+    private Status status;
+    private UserResponseDto user;
+    private String message;
+    
+    public static UserBatchItemResultDto created(int index, UserResponseDto user) {
+        return new UserBatchItemResultDto(index, Status.CREATED, user, null);
+    }
+    
+    public static UserBatchItemResultDto conflict(int index, String message) {
+        return new UserBatchItemResultDto(index, Status.CONFLICT, null, message);
+    }
+}
@@ -0,0 +1,30 @@
+package com.ditech.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserBulkDeleteRequestDto {
+    
+    public static final int MAX_IDS = 100000;
+    
+    @Size(max = MAX_IDS, message = "No se pueden eliminar más de " + MAX_IDS + " IDs por petición")
+    private List<@NotNull(message = "Los IDs no pueden ser nulos") Long> ids;
+    
+    /** true para eliminar todos los usuarios inactivos */
+    private Boolean inactive;
+    
+    @JsonIgnore
+    @AssertTrue(message = "Se debe indicar una lista de IDs o inactive=true, pero no ambos")
+    public boolean isSingleCriterion() {
+        boolean byIds = ids != null && !ids.isEmpty();
+        boolean byInactive = Boolean.TRUE.equals(inactive);
+        return byIds != byInactive;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBulkDeleteResponseDto {
+    
+    /** IDs recibidos (0 en la purga de inactivos) */
+    private int requested;
+    private int deleted;
+}
@@ -0,0 +1,16 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserCountResponseDto {
+    
+    /** Filtro aplicado; null cuando se cuentan todos los usuarios */
+    private Boolean active;
+    
+    private long count;
+}
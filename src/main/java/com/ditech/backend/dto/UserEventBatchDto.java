@@ -0,0 +1,24 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lote de eventos de GET /users/events
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserEventBatchDto {
+    
+    private List<UserEventDto> events;
+    
+    /** Offset que se envía en after para pedir el siguiente lote */
+    private long lastOffset;
+    
+    /** Último offset publicado al responder; lastOffset < headOffset indica que quedan eventos */
+    private long headOffset;
+}
@@ -0,0 +1,28 @@
+package com.ditech.backend.dto;
+
+import com.ditech.backend.model.UserEventType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento de cambio de un usuario. En las bajas solo se informan userId y active
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserEventDto {
+    
+    private Long offset;
+    private UserEventType type;
+    private Long userId;
+    private String username;
+    private String email;
+    private Boolean active;
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,19 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserFuzzySearchResponseDto {
+    
+    /** Usuarios más parecidos a la consulta, de mayor a menor similitud */
+    private List<UserSearchMatchDto> users;
+    
+    /** false si la búsqueda se cortó por tiempo o el índice aún se estaba cargando */
+    private boolean complete;
+}
@@ -0,0 +1,18 @@
+package com.ditech.backend.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserLookupRequestDto {
+    
+    public static final int MAX_IDS = 10000;
+    
+    @NotEmpty(message = "Se debe indicar al menos un ID")
+    @Size(max = MAX_IDS, message = "No se pueden consultar más de " + MAX_IDS + " IDs por petición")
+    private List<@NotNull(message = "Los IDs no pueden ser nulos") Long> ids;
+}
@@ -0,0 +1,19 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserLookupResponseDto {
+    
+    /** Usuarios encontrados, en el orden en que se pidieron (sin repetidos) */
+    private List<UserResponseDto> users;
+    
+    /** IDs pedidos que no existen, en el orden en que se pidieron */
+    private List<Long> missing;
+}
@@ -0,0 +1,17 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPageResponseDto {
+    
+    private List<UserResponseDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
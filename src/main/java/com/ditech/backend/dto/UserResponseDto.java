@@ -1,11 +1,41 @@
 package com.ditech.backend.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
 
 @Data
+@AllArgsConstructor
+@NoArgsConstructor
 public class UserResponseDto {
     
     private Long id;
     private String username;
     private String email;
-}
\ No newline at end of file
+    
+    /**
+     * Si el usuario está activo; se omite en las búsquedas por prefijo, que se resuelven en un
+     * índice en memoria que no lo guarda
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean active;
+    
+    /**
+     * Versión del usuario para las cabeceras ETag y Last-Modified; no forma parte del cuerpo JSON
+     */
+    @JsonIgnore
+    @Schema(hidden = true)
+    private LocalDateTime updatedAt;
+    
+    public UserResponseDto(Long id, String username, String email) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+    }
+}
@@ -0,0 +1,18 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSearchMatchDto {
+    
+    private Long id;
+    private String username;
+    private String email;
+    
+    /** Similitud de trigramas con la consulta (0..1) del campo que mejor coincide */
+    private double similarity;
+}
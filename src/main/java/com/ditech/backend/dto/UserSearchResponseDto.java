@@ -0,0 +1,22 @@
+package com.ditech.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSearchResponseDto {
+    
+    /** Usuarios cuyo username o email empieza por el prefijo, ordenados por el valor coincidente */
+    private List<UserResponseDto> users;
+    
+    /**
+     * false si hay más coincidencias que las devueltas o la búsqueda se cortó por tiempo;
+     * conviene afinar el prefijo
+     */
+    private boolean complete;
+}
@@ -0,0 +1,33 @@
+package com.ditech.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserWriteStatusDto {
+    
+    public enum Status {
+        /** En la cola, pendiente de escribir */
+        PENDING,
+        CREATED,
+        /** El username o el email ya existían al escribir */
+        CONFLICT,
+        /** La escritura falló por un error de la base de datos */
+        FAILED
+    }
+    
+    private String trackingId;
+    private Status status;
+    private UserResponseDto user;
+    private String message;
+    
+    public static UserWriteStatusDto pending(String trackingId) {
+        return new UserWriteStatusDto(trackingId, Status.PENDING, null, null);
+    }
+}
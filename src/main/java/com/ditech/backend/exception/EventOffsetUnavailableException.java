@@ -0,0 +1,12 @@
+package com.ditech.backend.exception;
+
+public class EventOffsetUnavailableException extends RuntimeException {
+    
+    /**
+     * Excepción para un offset del flujo de eventos cuyos eventos siguientes ya se han purgado; el consumidor
+     * debe resincronizar con GET /users/export
+     */
+    public EventOffsetUnavailableException(String message) {
+        super(message);
+    }
+}
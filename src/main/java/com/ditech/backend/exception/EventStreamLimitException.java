@@ -0,0 +1,11 @@
+package com.ditech.backend.exception;
+
+public class EventStreamLimitException extends RuntimeException {
+    
+    /**
+     * Excepción para las suscripciones al flujo de eventos rechazadas por superar users.events.stream.max-subscribers
+     */
+    public EventStreamLimitException(String message) {
+        super(message);
+    }
+}
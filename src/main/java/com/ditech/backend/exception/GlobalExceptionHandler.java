@@ -1,12 +1,23 @@
 package com.ditech.backend.exception;
 
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+import com.ditech.backend.admission.AdmissionControlFilter;
+import com.ditech.backend.datasource.StatementBudgetExceededException;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -27,12 +38,152 @@ public class GlobalExceptionHandler {
                 HttpStatus.NOT_FOUND.value(),
                 "Not Found",
                 ex.getMessage(),
-                request.getDescription(false).replace("uri=", "")
+                requestPath(request)
+        );
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
+    }
+    
+    /**
+     * Maneja IDs de seguimiento de altas asíncronas desconocidos o expirados
+     */
+    @ExceptionHandler(WriteStatusNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleWriteStatusNotFoundException(
+            WriteStatusNotFoundException ex, WebRequest request) {
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.NOT_FOUND.value(),
+                "Not Found",
+                ex.getMessage(),
+                requestPath(request)
         );
         
         return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
     }
     
+    /**
+     * Maneja conflictos de unicidad al crear usuarios
+     */
+    @ExceptionHandler(UserAlreadyExistsException.class)
+    public ResponseEntity<ErrorResponse> handleUserAlreadyExistsException(
+            UserAlreadyExistsException ex, WebRequest request) {
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                ex.getMessage(),
+                requestPath(request)
+        );
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+    
+    /**
+     * Maneja offsets del flujo de eventos ya purgados: el consumidor debe resincronizar.
+     * El tipo se fija a JSON porque los clientes SSE solo aceptan text/event-stream
+     */
+    @ExceptionHandler(EventOffsetUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleEventOffsetUnavailableException(
+            EventOffsetUnavailableException ex, WebRequest request) {
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.GONE.value(),
+                "Gone",
+                ex.getMessage(),
+                requestPath(request)
+        );
+        
+        return ResponseEntity.status(HttpStatus.GONE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(errorResponse);
+    }
+    
+    /**
+     * Maneja las suscripciones al flujo de eventos por encima del máximo; como las de offsets purgados,
+     * con el tipo fijado a JSON
+     */
+    @ExceptionHandler(EventStreamLimitException.class)
+    public ResponseEntity<ErrorResponse> handleEventStreamLimitException(
+            EventStreamLimitException ex, WebRequest request) {
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service Unavailable",
+                ex.getMessage(),
+                requestPath(request)
+        );
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(errorResponse);
+    }
+    
+    /**
+     * Maneja violaciones de restricciones de la base de datos (por ejemplo UNIQUE)
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleDataIntegrityViolationException(
+            DataIntegrityViolationException ex, WebRequest request) {
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.CONFLICT.value(),
+                "Conflict",
+                "Los datos entran en conflicto con un registro existente",
+                requestPath(request)
+        );
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.CONFLICT);
+    }
+    
+    /**
+     * Maneja la falta de conexiones a la base de datos (pool agotado o demasiados hilos esperando) y
+     * las esperas agotadas sobre una búsqueda en curso. Son señales de sobrecarga: el control de admisión
+     * baja el límite de concurrencia
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class,
+            LookupTimeoutException.class})
+    public ResponseEntity<ErrorResponse> handleConnectionUnavailableException(
+            Exception ex, WebRequest request) {
+        
+        // El SQLState del presupuesto (clase 54) se traduce como fallo de recurso, pero no es sobrecarga
+        if (exceedsStatementBudget(ex)) {
+            return statementBudgetExceeded(request);
+        }
+        markOverload(request);
+        return serviceUnavailable(request);
+    }
+    
+    /**
+     * Maneja las altas asíncronas con la cola llena. Es una capacidad propia de la aplicación y no
+     * una señal de que la base de datos esté saturada, así que no baja el límite de admisión
+     */
+    @ExceptionHandler(WriteQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleWriteQueueFullException(
+            WriteQueueFullException ex, WebRequest request) {
+        
+        return serviceUnavailable(request);
+    }
+    
+    private ResponseEntity<ErrorResponse> serviceUnavailable(WebRequest request) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service Unavailable",
+                "El servicio está saturado, inténtelo de nuevo más tarde",
+                requestPath(request)
+        );
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorResponse);
+    }
+    
     /**
      * Maneja errores de validación de campos
      */
@@ -50,7 +201,7 @@ public class GlobalExceptionHandler {
                 HttpStatus.BAD_REQUEST.value(),
                 "Validation Failed",
                 "Error en la validación de los datos de entrada",
-                request.getDescription(false).replace("uri=", ""),
+                requestPath(request),
                 details
         );
         
@@ -58,25 +209,31 @@ public class GlobalExceptionHandler {
     }
     
     /**
-     * Maneja excepciones generales no controladas
+     * Maneja excepciones generales no controladas; cuentan como fallo para el control de admisión
      */
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGlobalException(
             Exception ex, WebRequest request) {
         
+        // Las consultas de Hibernate la envuelven en una excepción sin categoría
+        if (exceedsStatementBudget(ex)) {
+            return statementBudgetExceeded(request);
+        }
+        markOverload(request);
         ErrorResponse errorResponse = new ErrorResponse(
                 LocalDateTime.now(),
                 HttpStatus.INTERNAL_SERVER_ERROR.value(),
                 "Internal Server Error",
                 "Ha ocurrido un error interno en el servidor",
-                request.getDescription(false).replace("uri=", "")
+                requestPath(request)
         );
         
         return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
     }
     
     /**
-     * Maneja excepciones de argumentos ilegales
+     * Maneja excepciones de argumentos ilegales. A los clientes SSE (un offset inválido en
+     * /users/events/stream) se les responde en JSON, como en los errores del flujo de eventos
      */
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArgumentException(
@@ -87,9 +244,77 @@ public class GlobalExceptionHandler {
                 HttpStatus.BAD_REQUEST.value(),
                 "Bad Request",
                 ex.getMessage(),
-                request.getDescription(false).replace("uri=", "")
+                requestPath(request)
+        );
+        
+        if (acceptsEventStream(request)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(errorResponse);
+        }
+        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+    }
+    
+    /**
+     * Maneja parámetros de la petición con un valor que no se puede convertir (p. ej. active=quizas)
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleMethodArgumentTypeMismatchException(
+            MethodArgumentTypeMismatchException ex, WebRequest request) {
+        
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.BAD_REQUEST.value(),
+                "Bad Request",
+                "Valor inválido para el parámetro " + ex.getName() + ": " + ex.getValue(),
+                requestPath(request)
         );
         
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
+    
+    /**
+     * Ruta de la petición para el cuerpo de error; en peticiones servlet se lee directamente
+     * la URI en lugar de construir y recortar la descripción "uri=..."
+     */
+    /**
+     * Sentencia rechazada por el presupuesto de la petición en modo FAIL: la transacción ya se ha
+     * deshecho y se responde 500, sin marcar sobrecarga porque la base de datos no llegó a recibirla
+     */
+    private ResponseEntity<ErrorResponse> statementBudgetExceeded(WebRequest request) {
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                "Internal Server Error",
+                "La petición supera su presupuesto de sentencias SQL",
+                requestPath(request)
+        );
+        
+        return new ResponseEntity<>(errorResponse, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+    
+    private static boolean exceedsStatementBudget(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof StatementBudgetExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static void markOverload(WebRequest request) {
+        request.setAttribute(AdmissionControlFilter.OVERLOAD_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+    }
+    
+    private static boolean acceptsEventStream(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+    }
+    
+    private String requestPath(WebRequest request) {
+        if (request instanceof ServletWebRequest servletWebRequest) {
+            return servletWebRequest.getRequest().getRequestURI();
+        }
+        return request.getDescription(false).replace("uri=", "");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.ditech.backend.exception;
+
+public class LookupTimeoutException extends RuntimeException {
+    
+    /**
+     * Excepción para las peticiones que esperaban una búsqueda en curso y agotaron el tiempo de espera
+     */
+    public LookupTimeoutException(String lookup, Object key) {
+        super("Tiempo de espera agotado esperando la búsqueda " + lookup + " de " + key);
+    }
+}
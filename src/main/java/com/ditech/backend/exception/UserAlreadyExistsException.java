@@ -0,0 +1,12 @@
+package com.ditech.backend.exception;
+
+public class UserAlreadyExistsException extends RuntimeException {
+    
+    /**
+     * Conflicto de unicidad (username o email). Es un resultado esperado de la validación,
+     * por lo que no captura la traza de la pila.
+     */
+    public UserAlreadyExistsException(String message) {
+        super(message, null, false, false);
+    }
+}
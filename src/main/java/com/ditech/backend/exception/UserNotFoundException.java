@@ -10,7 +10,11 @@ public class UserNotFoundException extends RuntimeException {
         super(message, cause);
     }
     
+    /**
+     * Excepción para el 404 de búsquedas por ID. Es un resultado esperado (IDs inexistentes
+     * consultados en masa), por lo que no captura la traza de la pila.
+     */
     public UserNotFoundException(Long userId) {
-        super("Usuario no encontrado con ID: " + userId);
+        super("Usuario no encontrado con ID: " + userId, null, false, false);
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.ditech.backend.exception;
+
+public class WriteQueueFullException extends RuntimeException {
+    
+    /**
+     * Excepción para las altas asíncronas rechazadas porque la cola de escritura está llena o detenida
+     */
+    public WriteQueueFullException(String message) {
+        super(message);
+    }
+}
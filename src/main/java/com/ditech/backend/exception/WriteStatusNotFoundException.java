@@ -0,0 +1,11 @@
+package com.ditech.backend.exception;
+
+public class WriteStatusNotFoundException extends RuntimeException {
+    
+    /**
+     * Excepción para los IDs de seguimiento desconocidos o cuyo estado ya ha expirado
+     */
+    public WriteStatusNotFoundException(String trackingId) {
+        super("Escritura no encontrada con ID de seguimiento: " + trackingId);
+    }
+}
@@ -0,0 +1,90 @@
+package com.ditech.backend.index;
+
+/**
+ * Mapa long → int no negativo con direccionamiento abierto (sondeo lineal) sobre arrays primitivos,
+ * sin objetos por entrada. No admite borrados: quien lo usa lo reconstruye al compactar.
+ * No es seguro para hilos.
+ */
+final class LongIntMap {
+
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    /** Valor + 1; 0 marca una posición libre */
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return Valor asociado a la clave, o -1 si no está
+     */
+    int get(long key) {
+        for (int i = index(key); values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i] - 1;
+            }
+        }
+        return -1;
+    }
+
+    void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("El valor no puede ser negativo: " + value);
+        }
+        int i = index(key);
+        while (values[i] != 0) {
+            if (keys[i] == key) {
+                values[i] = value + 1;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value + 1;
+        if (++size > MAX_LOAD * keys.length) {
+            resize();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long sizeInBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int j = index(oldKeys[i]);
+                while (values[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private int index(long key) {
+        // Finalizador de MurmurHash3: los IDs consecutivos quedan repartidos por la tabla
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
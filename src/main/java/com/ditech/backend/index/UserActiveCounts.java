@@ -0,0 +1,167 @@
+package com.ditech.backend.index;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ditech.backend.repository.ActiveCount;
+import com.ditech.backend.repository.UserRepository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Contadores en memoria de usuarios activos e inactivos para responder GET /users/count sin
+ * COUNT(*). Cada contador es una base, fijada por la última reconciliación, más los cambios
+ * registrados desde entonces por las altas y bajas confirmadas.
+ *
+ * La reconciliación cuenta la tabla agrupando por active cada reconcile-interval y recalcula la
+ * base restando los cambios ya registrados al empezar la consulta, de modo que los que llegan
+ * mientras se ejecuta no se pierden. Un alta o baja confirmada antes de la consulta pero registrada
+ * después se cuenta dos veces hasta la siguiente reconciliación, que corrige esa desviación y
+ * cualquier escritura hecha fuera de la aplicación. Se cuenta en el primario (transacción de
+ * escritura) para no heredar el retraso de las réplicas de lectura.
+ */
+@Component
+public class UserActiveCounts {
+
+    private static final Logger log = LoggerFactory.getLogger(UserActiveCounts.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate primaryTransaction;
+    private final Duration reconcileInterval;
+
+    private final LongAdder activeChanges = new LongAdder();
+    private final LongAdder inactiveChanges = new LongAdder();
+    private volatile long activeBase;
+    private volatile long inactiveBase;
+    private volatile boolean ready;
+
+    private final Timer reconciliations;
+    private final DistributionSummary drift;
+
+    private ScheduledExecutorService reconciler;
+
+    public UserActiveCounts(UserRepository userRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${users.count.reconcile-interval:60s}") Duration reconcileInterval,
+                            MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.reconcileInterval = reconcileInterval;
+
+        Gauge.builder("users.count", this, counts -> counts.current(true))
+                .description("Usuarios según los contadores en memoria")
+                .tag("active", "true")
+                .register(meterRegistry);
+        Gauge.builder("users.count", this, counts -> counts.current(false))
+                .description("Usuarios según los contadores en memoria")
+                .tag("active", "false")
+                .register(meterRegistry);
+        this.reconciliations = Timer.builder("users.count.reconciliation")
+                .description("Duración de las reconciliaciones de los contadores con la base de datos")
+                .register(meterRegistry);
+        this.drift = DistributionSummary.builder("users.count.reconciliation.drift")
+                .description("Usuarios de diferencia corregidos en cada reconciliación (activos más inactivos)")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        reconciler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("user-count-reconciler").daemon().factory());
+        reconciler.scheduleWithFixedDelay(this::reconcileQuietly, 0, reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+
+    /**
+     * Número de usuarios; antes de la primera reconciliación se cuenta en la base de datos
+     * @param active true o false para filtrar, null para contar todos
+     */
+    public long count(Boolean active) {
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    reconcile();
+                }
+            }
+        }
+        return active == null ? current(true) + current(false) : current(active);
+    }
+
+    /**
+     * Registrar un alta; debe llamarse después de confirmar la transacción
+     */
+    public void recordCreated(boolean active) {
+        (active ? activeChanges : inactiveChanges).increment();
+    }
+
+    /**
+     * Registrar bajas confirmadas de usuarios con el mismo valor de active
+     */
+    public void recordDeleted(boolean active, int removed) {
+        (active ? activeChanges : inactiveChanges).add(-removed);
+    }
+
+    /**
+     * Contar la tabla y fijar las bases de los contadores
+     */
+    synchronized void reconcile() {
+        reconciliations.record(() -> {
+            long activeBefore = activeChanges.sum();
+            long inactiveBefore = inactiveChanges.sum();
+            List<ActiveCount> counts = primaryTransaction.execute(status -> userRepository.countGroupedByActive());
+            long active = 0;
+            long inactive = 0;
+            for (ActiveCount count : counts) {
+                if (Boolean.TRUE.equals(count.active())) {
+                    active = count.count();
+                } else {
+                    inactive = count.count();
+                }
+            }
+            if (ready) {
+                drift.record(Math.abs(active - activeBase - activeBefore)
+                        + Math.abs(inactive - inactiveBase - inactiveBefore));
+            }
+            activeBase = active - activeBefore;
+            inactiveBase = inactive - inactiveBefore;
+            ready = true;
+        });
+    }
+
+    private long current(boolean active) {
+        return active ? activeBase + activeChanges.sum() : inactiveBase + inactiveChanges.sum();
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException ex) {
+            // Se conservan los contadores actuales y se reintenta en el siguiente intervalo
+            log.warn("No se pudieron reconciliar los contadores de usuarios: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.ditech.backend.index;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ditech.backend.dto.UserEventDto;
+import com.ditech.backend.model.UserEventType;
+import com.ditech.backend.outbox.UserEventLog;
+import com.ditech.backend.repository.UserEventRepository;
+import com.ditech.backend.repository.UserKeys;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Mantiene los índices de búsqueda (UserPrefixIndex y UserTrigramIndex) al día con las altas y bajas
+ * de todas las instancias. Los servicios actualizan los índices de su propia instancia al confirmar;
+ * las de las demás llegan por el flujo de eventos user_events, que un hilo sigue desde el último
+ * offset publicado antes de la carga inicial.
+ *
+ * Al arrancar lee ese offset en el primario y después carga los índices: todo evento con offset menor
+ * o igual se confirmó antes del recorrido y ya está en la tabla, y los posteriores se aplican en orden.
+ * add y remove ignoran los usuarios ya indexados o inexistentes, así que aplicar los eventos de esta
+ * misma instancia o los que el recorrido ya vio no cambia nada. El hilo espera a que avance el head
+ * de UserEventLog, que también recoge los offsets publicados por otras instancias.
+ */
+@Component
+public class UserIndexSync {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIndexSync.class);
+
+    /** Espera máxima entre lecturas aunque no avance el head */
+    private static final long MAX_WAIT_MILLIS = 5_000;
+
+    private final UserPrefixIndex prefixIndex;
+    private final UserTrigramIndex trigramIndex;
+    private final UserEventRepository userEventRepository;
+    private final UserEventLog userEventLog;
+    private final TransactionTemplate primaryTransaction;
+    private final int batchSize;
+
+    /** Último offset aplicado a los índices */
+    private volatile long applied;
+    private volatile boolean running;
+    private volatile CompletableFuture<Long> waiting;
+
+    public UserIndexSync(UserPrefixIndex prefixIndex,
+                         UserTrigramIndex trigramIndex,
+                         UserEventRepository userEventRepository,
+                         UserEventLog userEventLog,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${users.search.sync.batch-size:500}") int batchSize,
+                         MeterRegistry meterRegistry) {
+        this.prefixIndex = prefixIndex;
+        this.trigramIndex = trigramIndex;
+        this.userEventRepository = userEventRepository;
+        this.userEventLog = userEventLog;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+
+        Gauge.builder("users.search.index.sync.lag", this, sync -> Math.max(0, sync.userEventLog.head() - sync.applied))
+                .description("Eventos publicados que aún no se han aplicado a los índices de búsqueda")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        boolean follow = true;
+        try {
+            Long head = primaryTransaction.execute(status -> userEventRepository.findHeadOffset());
+            applied = head == null ? 0 : head;
+        } catch (RuntimeException ex) {
+            log.error("No se pudo leer el último offset; los índices no recibirán los cambios de otras instancias", ex);
+            follow = false;
+        }
+        prefixIndex.load();
+        trigramIndex.load();
+        if (follow) {
+            running = true;
+            Thread.ofPlatform().name("user-index-sync").daemon().start(this::run);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        CompletableFuture<Long> current = waiting;
+        if (current != null) {
+            current.complete(applied);
+        }
+    }
+
+    /**
+     * Aplicar a los índices un lote de eventos publicados después del último aplicado
+     * @return Eventos aplicados (batch-size si puede haber más)
+     */
+    int apply() {
+        long after = applied;
+        List<UserEventDto> events = primaryTransaction.execute(
+                status -> userEventRepository.findPublishedAfter(after, Limit.of(batchSize)));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        if (events.get(0).getOffset() > after + 1) {
+            log.warn("Eventos {} a {} purgados antes de aplicarse; los índices pueden no reflejar esos cambios",
+                    after + 1, events.get(0).getOffset() - 1);
+        }
+        // Un alta seguida de su baja en el mismo lote no se añade para no devolverla entre ambas
+        Set<Long> deleted = events.stream()
+                .filter(event -> event.getType() == UserEventType.DELETED)
+                .map(UserEventDto::getUserId)
+                .collect(Collectors.toSet());
+        for (UserEventDto event : events) {
+            if (event.getType() == UserEventType.DELETED) {
+                prefixIndex.remove(event.getUserId());
+                trigramIndex.remove(event.getUserId());
+            } else if (!deleted.contains(event.getUserId())) {
+                UserKeys keys = new UserKeys(event.getUserId(), event.getUsername(), event.getEmail());
+                prefixIndex.add(keys);
+                trigramIndex.add(keys);
+            }
+        }
+        applied = events.get(events.size() - 1).getOffset();
+        return events.size();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                while (running && apply() == batchSize) {
+                    // Quedan eventos pendientes
+                }
+            } catch (RuntimeException ex) {
+                // Se reintenta cuando avance el head o al agotar la espera; los eventos siguen en la tabla
+                log.warn("No se pudieron aplicar los eventos de usuarios a los índices: {}", ex.getMessage());
+            }
+            CompletableFuture<Long> advanced = userEventLog.onAdvance(applied);
+            waiting = advanced;
+            if (running) {
+                advanced.completeOnTimeout(applied, MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS).join();
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.ditech.backend.index;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ditech.backend.repository.UserKeys;
+import com.ditech.backend.repository.UserRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Índice ordenado en memoria de usernames y emails (en minúsculas) para la búsqueda por prefijo.
+ * Cada usuario aporta dos términos a una skip list ordenada; una búsqueda se posiciona en el
+ * primer término mayor o igual que el prefijo y avanza mientras los términos empiecen por él, así
+ * que el coste depende del número de resultados pedidos y no del tamaño de la tabla.
+ *
+ * Se carga al arrancar recorriendo la tabla y se mantiene con las altas y bajas confirmadas en
+ * esta instancia y con las de las demás, que llegan por el flujo de eventos (UserIndexSync). Las
+ * bajas que llegan durante la carga se recuerdan para que el recorrido no vuelva a añadir usuarios
+ * ya eliminados.
+ */
+@Component
+public class UserPrefixIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserPrefixIndex.class);
+
+    /** Cada cuántos términos recorridos se comprueba el tiempo límite de la búsqueda */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    /**
+     * Estimación de memoria por usuario (nodo del mapa por ID, Long, UserKeys y cabeceras de sus dos
+     * String) y por término (nodo e índices de la skip list y Term); los caracteres se suman aparte
+     */
+    private static final long USER_OVERHEAD_BYTES = 152;
+    private static final long TERM_OVERHEAD_BYTES = 64;
+
+    /** Resultado de una búsqueda: usuarios en orden del término coincidente */
+    public record SearchResult(List<UserKeys> users, boolean complete) {
+    }
+
+    /** Término indexado; el ID distingue términos iguales de usuarios distintos */
+    private record Term(String value, long id) implements Comparable<Term> {
+
+        @Override
+        public int compareTo(Term other) {
+            int byValue = value.compareTo(other.value);
+            return byValue != 0 ? byValue : Long.compare(id, other.id);
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate primaryTransaction;
+    private final long timeoutNanos;
+
+    private final NavigableSet<Term> terms = new ConcurrentSkipListSet<>();
+    private final Map<Long, UserKeys> users = new ConcurrentHashMap<>();
+    private final AtomicLong indexedChars = new AtomicLong();
+
+    private volatile boolean ready;
+    /** Bajas recibidas mientras se recorre la tabla; null fuera de la carga */
+    private volatile Set<Long> removedWhileLoading;
+
+    private final Timer completeSearches;
+    private final Timer partialSearches;
+
+    public UserPrefixIndex(UserRepository userRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${users.search.timeout:20ms}") Duration timeout,
+                           MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.timeoutNanos = timeout.toNanos();
+
+        this.completeSearches = Timer.builder("users.search.latency")
+                .description("Duración de las búsquedas por prefijo en el índice")
+                .tag("result", "complete")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.partialSearches = Timer.builder("users.search.latency")
+                .description("Duración de las búsquedas por prefijo en el índice")
+                .tag("result", "partial")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("users.search.index.users", users, Map::size)
+                .description("Usuarios en el índice de búsqueda por prefijo")
+                .register(meterRegistry);
+        Gauge.builder("users.search.index.memory", this, UserPrefixIndex::estimatedSizeInBytes)
+                .description("Memoria estimada del índice de búsqueda por prefijo")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Buscar usuarios cuyo username o email empieza por el prefijo (sin distinguir mayúsculas)
+     * @param prefix Prefijo no vacío
+     * @param limit Máximo de usuarios a devolver
+     * @return Usuarios ordenados por el término coincidente; complete es false si hay más
+     *         coincidencias que limit, si se agotó users.search.timeout o si el índice aún se carga
+     */
+    public SearchResult search(String prefix, int limit) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        String normalized = normalize(prefix);
+
+        LinkedHashSet<Long> ids = new LinkedHashSet<>();
+        boolean complete = ready;
+        int scanned = 0;
+        for (Term term : terms.tailSet(new Term(normalized, Long.MIN_VALUE))) {
+            if (!term.value().startsWith(normalized)) {
+                break;
+            }
+            if (ids.size() == limit) {
+                // Otra coincidencia de un usuario distinto: hay más resultados de los devueltos
+                if (!ids.contains(term.id())) {
+                    complete = false;
+                    break;
+                }
+            } else {
+                ids.add(term.id());
+            }
+            if (++scanned % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                complete = false;
+                break;
+            }
+        }
+
+        List<UserKeys> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            // Un usuario eliminado durante la búsqueda ya no está en el mapa
+            UserKeys user = users.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        (complete ? completeSearches : partialSearches).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new SearchResult(result, complete);
+    }
+
+    /**
+     * Añadir un usuario creado; debe llamarse después de confirmar la transacción
+     */
+    public void add(UserKeys user) {
+        if (users.putIfAbsent(user.id(), user) == null) {
+            terms.add(new Term(normalize(user.username()), user.id()));
+            terms.add(new Term(normalize(user.email()), user.id()));
+            indexedChars.addAndGet(user.username().length() + user.email().length());
+        }
+    }
+
+    /**
+     * Quitar un usuario eliminado; los IDs que no están en el índice se ignoran
+     */
+    public void remove(Long id) {
+        Set<Long> removedDuringLoad = removedWhileLoading;
+        if (removedDuringLoad != null) {
+            removedDuringLoad.add(id);
+        }
+        UserKeys user = users.remove(id);
+        if (user != null) {
+            terms.remove(new Term(normalize(user.username()), id));
+            terms.remove(new Term(normalize(user.email()), id));
+            indexedChars.addAndGet(-(user.username().length() + user.email().length()));
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Memoria aproximada del índice: sobrecoste fijo por usuario y por término más los caracteres
+     * indexados (las cadenas en minúsculas coinciden con las originales en el caso habitual)
+     */
+    public long estimatedSizeInBytes() {
+        return users.size() * USER_OVERHEAD_BYTES + 2L * users.size() * TERM_OVERHEAD_BYTES + indexedChars.get();
+    }
+
+    /**
+     * Recorrer la tabla en el primario (una réplica con retraso dejaría fuera las últimas altas);
+     * lo llama UserIndexSync al arrancar, antes de aplicar los eventos posteriores
+     */
+    public void load() {
+        Set<Long> removed = ConcurrentHashMap.newKeySet();
+        removedWhileLoading = removed;
+        try {
+            long start = System.nanoTime();
+            // Las altas confirmadas durante el recorrido llegan por add; add ignora los repetidos
+            primaryTransaction.executeWithoutResult(status -> {
+                try (Stream<UserKeys> keys = userRepository.streamAllKeys()) {
+                    keys.filter(key -> !removed.contains(key.id())).forEach(this::add);
+                }
+            });
+            removedWhileLoading = null;
+            // Una baja pudo confirmarse justo después de que el recorrido leyera su fila
+            removed.forEach(this::remove);
+            ready = true;
+            log.info("Índice de búsqueda por prefijo construido con {} usuarios en {} ms (~{} bytes)",
+                    users.size(), (System.nanoTime() - start) / 1_000_000, estimatedSizeInBytes());
+        } catch (RuntimeException ex) {
+            log.error("No se pudo construir el índice de búsqueda por prefijo; las búsquedas serán parciales", ex);
+        } finally {
+            removedWhileLoading = null;
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,682 @@
+package com.ditech.backend.index;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ditech.backend.repository.UserKeys;
+import com.ditech.backend.repository.UserRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Índice invertido de trigramas de usernames y emails para la búsqueda tolerante a errores.
+ * Cada usuario ocupa un hueco y cada uno de sus dos campos un ordinal (2 * hueco + campo); cada
+ * trigrama apunta a un int[] creciente con los ordinales que lo contienen. Los valores se pasan a
+ * minúsculas y se parten en palabras (letras y dígitos) rellenas como en pg_trgm: "  ana " da
+ * "  a", " an", "ana" y "na ". Del email solo se indexa la parte local: el dominio se repite en
+ * casi todos los usuarios, alargaría las listas más recorridas y penalizaría la similitud de
+ * quien busca "juan.perez" frente a "juan.perez@ejemplo.com".
+ *
+ * La similitud de un campo es la de Jaccard entre sus trigramas y los de la consulta, y la de un
+ * usuario la mejor de sus dos campos. Un campo solo alcanza min-similarity si comparte al menos
+ * ceil(min-similarity * |consulta|) trigramas, así que los candidatos salen de las listas más
+ * cortas (filtro de prefijo) y en las más largas solo se suman los candidatos ya vistos. Los
+ * contadores por ordinal son un short[] que se reutiliza entre búsquedas.
+ *
+ * Se carga al arrancar recorriendo la tabla y se mantiene con las altas y bajas confirmadas en
+ * esta instancia y con las de las demás, que llegan por el flujo de eventos (UserIndexSync). Las
+ * bajas solo vacían el hueco; cuando los huecos vacíos superan compaction-ratio se reconstruyen
+ * las listas en segundo plano sobre una copia, sin bloquear búsquedas ni escrituras. Las altas
+ * recibidas mientras tanto no aparecen en las búsquedas hasta que la copia sustituye al índice.
+ */
+@Component
+public class UserTrigramIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserTrigramIndex.class);
+
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int INITIAL_POSTING_CAPACITY = 4;
+    /** Bajas pendientes por debajo de las cuales no compensa compactar */
+    private static final int MIN_DELETES_TO_COMPACT = 1024;
+    /** Cada cuántos candidatos se comprueba el tiempo límite de la búsqueda */
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+    private static final Posting EMPTY = new Posting(0);
+
+    /**
+     * Estimación de memoria por lista (entrada del HashMap, Long, Posting y cabecera del array) y
+     * por usuario (UserKeys, Long y cabeceras de sus dos String); los caracteres se suman aparte
+     */
+    private static final long POSTING_OVERHEAD_BYTES = 88;
+    private static final long USER_OVERHEAD_BYTES = 88;
+
+    /** Usuario encontrado y su similitud con la consulta (0..1) */
+    public record Match(UserKeys user, double similarity) {
+    }
+
+    /** Resultado de una búsqueda: mejores coincidencias primero */
+    public record SearchResult(List<Match> matches, boolean complete) {
+    }
+
+    private record Candidate(int slot, long id, double similarity) {
+    }
+
+    /** Peor candidato primero: menor similitud y, a igualdad, mayor ID */
+    private static final Comparator<Candidate> WORST_FIRST = Comparator.comparingDouble(Candidate::similarity)
+            .thenComparing(Candidate::id, Comparator.reverseOrder());
+
+    /**
+     * Contadores de trigramas compartidos por ordinal y lista de ordinales tocados de una búsqueda.
+     * Se reutilizan entre búsquedas para no asignar un array del tamaño del índice en cada una;
+     * al devolverlos todos los contadores quedan a cero.
+     */
+    private static final class Scratch {
+        private final short[] counts;
+        private int[] ordinals = new int[1024];
+        private int touched;
+
+        Scratch(int ordinals) {
+            this.counts = new short[ordinals];
+        }
+
+        void touch(int ordinal) {
+            if (touched == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, touched * 2);
+            }
+            ordinals[touched++] = ordinal;
+        }
+
+        /**
+         * Quedarse con los ordinales que comparten al menos needed trigramas; el resto vuelve a cero
+         */
+        void retain(int needed) {
+            if (needed <= 1) {
+                return;
+            }
+            int kept = 0;
+            for (int c = 0; c < touched; c++) {
+                int ordinal = ordinals[c];
+                if (counts[ordinal] >= needed) {
+                    ordinals[kept++] = ordinal;
+                } else {
+                    counts[ordinal] = 0;
+                }
+            }
+            touched = kept;
+        }
+
+        void reset() {
+            for (int c = 0; c < touched; c++) {
+                counts[ordinals[c]] = 0;
+            }
+            touched = 0;
+        }
+    }
+
+    /** Ordinales que contienen un trigrama, en orden creciente */
+    private static final class Posting {
+        private int[] ordinals;
+        private int size;
+
+        Posting(int capacity) {
+            this.ordinals = new int[capacity];
+        }
+
+        /** @return Enteros añadidos a la capacidad */
+        int append(int ordinal) {
+            int grown = 0;
+            if (size == ordinals.length) {
+                int capacity = size + (size >> 1) + 1;
+                grown = capacity - size;
+                ordinals = Arrays.copyOf(ordinals, capacity);
+            }
+            ordinals[size++] = ordinal;
+            return grown;
+        }
+
+        boolean contains(int ordinal) {
+            return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+        }
+
+    }
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate primaryTransaction;
+    private final double minSimilarity;
+    private final double compactionRatio;
+    private final long timeoutNanos;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Protegidos por lock
+    private Map<Long, Posting> postings = new HashMap<>();
+    private LongIntMap slotsById = new LongIntMap(INITIAL_SLOTS);
+    private UserKeys[] users = new UserKeys[INITIAL_SLOTS];
+    private short[] gramCounts = new short[2 * INITIAL_SLOTS];
+    private int slots;
+    private int deletedUsers;
+    private long postingCapacity;
+    private long indexedChars;
+    private volatile int liveUsers;
+
+    private volatile boolean ready;
+    /** Bajas recibidas mientras se recorre la tabla; null fuera de la carga */
+    private volatile Set<Long> removedWhileLoading;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    /** Altas y bajas recibidas mientras se compacta, protegidas por lock; null fuera de la compactación */
+    private List<Runnable> changesWhileCompacting;
+    private final Queue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+
+    private final Timer completeSearches;
+    private final Timer partialSearches;
+
+    public UserTrigramIndex(UserRepository userRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${users.search.fuzzy.min-similarity:0.3}") double minSimilarity,
+                            @Value("${users.search.fuzzy.compaction-ratio:0.2}") double compactionRatio,
+                            @Value("${users.search.fuzzy.timeout:20ms}") Duration timeout,
+                            MeterRegistry meterRegistry) {
+        if (minSimilarity <= 0 || minSimilarity > 1) {
+            throw new IllegalArgumentException("users.search.fuzzy.min-similarity debe estar en (0, 1]");
+        }
+        this.userRepository = userRepository;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.minSimilarity = minSimilarity;
+        this.compactionRatio = compactionRatio;
+        this.timeoutNanos = timeout.toNanos();
+
+        this.completeSearches = Timer.builder("users.search.fuzzy.latency")
+                .description("Duración de las búsquedas aproximadas en el índice de trigramas")
+                .tag("result", "complete")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.partialSearches = Timer.builder("users.search.fuzzy.latency")
+                .description("Duración de las búsquedas aproximadas en el índice de trigramas")
+                .tag("result", "partial")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("users.search.fuzzy.index.users", this, i -> i.liveUsers)
+                .description("Usuarios en el índice de trigramas")
+                .register(meterRegistry);
+        Gauge.builder("users.search.fuzzy.index.memory", this, UserTrigramIndex::estimatedSizeInBytes)
+                .description("Memoria estimada del índice de trigramas")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Buscar los usuarios más parecidos a la consulta por username o email
+     * @param query Texto a buscar, con posibles errores o incompleto
+     * @param limit Máximo de usuarios a devolver
+     * @return Usuarios con similitud mínima users.search.fuzzy.min-similarity, de más a menos parecido;
+     *         complete es false si se agotó users.search.fuzzy.timeout o el índice aún se carga
+     */
+    public SearchResult search(String query, int limit) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutNanos;
+        long[] grams = trigrams(query);
+        boolean complete = ready;
+        List<Match> matches = new ArrayList<>();
+        if (grams.length > 0) {
+            lock.readLock().lock();
+            try {
+                complete &= collect(grams, limit, deadline, matches);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        (complete ? completeSearches : partialSearches).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new SearchResult(matches, complete);
+    }
+
+    /**
+     * Añadir un usuario creado; debe llamarse después de confirmar la transacción
+     */
+    public void add(UserKeys user) {
+        long[] usernameGrams = trigrams(user.username());
+        long[] emailGrams = trigrams(localPart(user.email()));
+        lock.writeLock().lock();
+        try {
+            if (changesWhileCompacting != null) {
+                // Las listas se están copiando: el alta se aplica sobre la copia compactada
+                changesWhileCompacting.add(() -> insert(user, usernameGrams, emailGrams));
+            } else {
+                insert(user, usernameGrams, emailGrams);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quitar un usuario eliminado; los IDs que no están en el índice se ignoran
+     */
+    public void remove(Long id) {
+        Set<Long> removedDuringLoad = removedWhileLoading;
+        if (removedDuringLoad != null) {
+            removedDuringLoad.add(id);
+        }
+        boolean compact = false;
+        lock.writeLock().lock();
+        try {
+            boolean found = discard(id, true);
+            if (changesWhileCompacting != null) {
+                // La copia puede haber leído el hueco antes de vaciarlo; si ya se ha descontado
+                // aquí, allí solo se vacía
+                changesWhileCompacting.add(() -> discard(id, !found));
+            } else {
+                compact = found && deletedUsers > Math.max(MIN_DELETES_TO_COMPACT, compactionRatio * liveUsers);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compact && compacting.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("trigram-index-compaction").start(this::compact);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Memoria aproximada: capacidad de las listas, tabla de trigramas, arrays por hueco, mapa de IDs,
+     * los usuarios indexados y los contadores reutilizables de las búsquedas
+     */
+    public long estimatedSizeInBytes() {
+        lock.readLock().lock();
+        try {
+            return postingCapacity * Integer.BYTES
+                    + postings.size() * POSTING_OVERHEAD_BYTES
+                    + (long) users.length * (4 + 2 * Short.BYTES)
+                    + slotsById.sizeInBytes()
+                    + liveUsers * USER_OVERHEAD_BYTES + indexedChars
+                    + (long) scratchPool.size() * gramCounts.length * Short.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reconstruir las listas sin los huecos de usuarios eliminados. Las listas siguen ordenadas
+     * porque los huecos vivos conservan su orden relativo.
+     */
+    void compact() {
+        completeCompaction(beginCompaction());
+    }
+
+    /**
+     * Fijar el estado a copiar. Hasta completeCompaction las altas no tocan las listas y se
+     * guardan para aplicarlas sobre la copia; las bajas vacían el hueco en el acto para que las
+     * búsquedas dejen de devolverlas y también se guardan.
+     */
+    Compaction beginCompaction() {
+        lock.writeLock().lock();
+        try {
+            compacting.set(true);
+            changesWhileCompacting = new ArrayList<>();
+            return new Compaction(postings, users, gramCounts, slots, deletedUsers);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Construir la copia compactada fuera del cerrojo, de modo que búsquedas, altas y bajas
+     * siguen mientras tanto, y sustituir el estado bajo el cerrojo de escritura aplicando los
+     * cambios recibidos durante la copia. Si la copia falla, los cambios se aplican al estado
+     * sin compactar.
+     */
+    void completeCompaction(Compaction compaction) {
+        long start = System.nanoTime();
+        Compacted compacted = null;
+        try {
+            compacted = compaction.build();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                List<Runnable> changes = changesWhileCompacting;
+                changesWhileCompacting = null;
+                if (compacted != null) {
+                    postings = compacted.postings();
+                    slotsById = compacted.slotsById();
+                    users = compacted.users();
+                    gramCounts = compacted.gramCounts();
+                    slots = compacted.slots();
+                    deletedUsers = 0;
+                    postingCapacity = compacted.postingCapacity();
+                }
+                changes.forEach(Runnable::run);
+            } finally {
+                lock.writeLock().unlock();
+                compacting.set(false);
+            }
+        }
+        log.info("Índice de trigramas compactado: {} bajas descartadas, {} usuarios en {} ms",
+                compaction.deletedUsers(), compacted.slots(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Estado fijado al empezar a compactar; las altas no lo modifican hasta completeCompaction */
+    record Compaction(Map<Long, Posting> postings, UserKeys[] users, short[] gramCounts, int slots,
+                      int deletedUsers) {
+
+        /**
+         * Las bajas concurrentes pueden vaciar huecos mientras se leen: cada hueco se lee una sola
+         * vez y el que se cuele se vacía al aplicar los cambios guardados
+         */
+        Compacted build() {
+            int[] remap = new int[slots];
+            int capacity = Math.max(INITIAL_SLOTS, slots - deletedUsers + ((slots - deletedUsers) >> 1));
+            UserKeys[] nextUsers = new UserKeys[capacity];
+            short[] nextGramCounts = new short[2 * capacity];
+            LongIntMap nextSlotsById = new LongIntMap(capacity);
+            int live = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                UserKeys user = users[slot];
+                if (user == null) {
+                    remap[slot] = -1;
+                    continue;
+                }
+                if (live == nextUsers.length) {
+                    nextUsers = Arrays.copyOf(nextUsers, live * 2);
+                    nextGramCounts = Arrays.copyOf(nextGramCounts, live * 4);
+                }
+                remap[slot] = live;
+                nextUsers[live] = user;
+                nextGramCounts[2 * live] = gramCounts[2 * slot];
+                nextGramCounts[2 * live + 1] = gramCounts[2 * slot + 1];
+                nextSlotsById.put(user.id(), live);
+                live++;
+            }
+            Map<Long, Posting> nextPostings = new HashMap<>();
+            long nextCapacity = 0;
+            for (Map.Entry<Long, Posting> entry : postings.entrySet()) {
+                Posting posting = entry.getValue();
+                Posting compacted = new Posting(posting.size);
+                for (int i = 0; i < posting.size; i++) {
+                    int ordinal = posting.ordinals[i];
+                    int next = remap[ordinal >> 1];
+                    if (next >= 0) {
+                        compacted.append(2 * next + (ordinal & 1));
+                    }
+                }
+                if (compacted.size > 0) {
+                    compacted.ordinals = Arrays.copyOf(compacted.ordinals, compacted.size);
+                    nextPostings.put(entry.getKey(), compacted);
+                    nextCapacity += compacted.size;
+                }
+            }
+            return new Compacted(nextPostings, nextSlotsById, nextUsers, nextGramCounts, live, nextCapacity);
+        }
+    }
+
+    private record Compacted(Map<Long, Posting> postings, LongIntMap slotsById, UserKeys[] users,
+                             short[] gramCounts, int slots, long postingCapacity) {
+    }
+
+    /** Debe llamarse con el cerrojo de escritura */
+    private void insert(UserKeys user, long[] usernameGrams, long[] emailGrams) {
+        if (slotsById.get(user.id()) >= 0) {
+            return;
+        }
+        int slot = slots++;
+        if (slot == users.length) {
+            users = Arrays.copyOf(users, slot * 2);
+            gramCounts = Arrays.copyOf(gramCounts, slot * 4);
+        }
+        users[slot] = user;
+        slotsById.put(user.id(), slot);
+        addPostings(2 * slot, usernameGrams);
+        addPostings(2 * slot + 1, emailGrams);
+        indexedChars += user.username().length() + user.email().length();
+        liveUsers++;
+    }
+
+    /**
+     * Vaciar el hueco del usuario; debe llamarse con el cerrojo de escritura
+     * @param count Descontar también el usuario y sus caracteres
+     * @return false si el usuario no estaba en el índice
+     */
+    private boolean discard(Long id, boolean count) {
+        int slot = slotsById.get(id);
+        if (slot < 0 || users[slot] == null) {
+            return false;
+        }
+        if (count) {
+            indexedChars -= users[slot].username().length() + users[slot].email().length();
+            liveUsers--;
+        }
+        users[slot] = null;
+        deletedUsers++;
+        return true;
+    }
+
+    /**
+     * Trigramas distintos del valor en minúsculas, ordenados; cada uno se codifica en un long con
+     * sus tres caracteres de 16 bits
+     */
+    static long[] trigrams(String value) {
+        String text = value.toLowerCase(Locale.ROOT);
+        // Una palabra de L caracteres aporta L + 1 trigramas
+        long[] grams = new long[2 * text.length()];
+        int count = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (!Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+                end++;
+            }
+            long window = pack(' ', ' ');
+            for (int k = i; k <= end; k++) {
+                char c = k < end ? text.charAt(k) : ' ';
+                window = ((window << 16) | c) & 0xFFFF_FFFF_FFFFL;
+                grams[count++] = window;
+            }
+            i = end;
+        }
+        Arrays.sort(grams, 0, count);
+        int distinct = 0;
+        for (int k = 0; k < count; k++) {
+            if (distinct == 0 || grams[k] != grams[distinct - 1]) {
+                grams[distinct++] = grams[k];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Parte del email anterior a la última arroba (el email completo si no la tiene)
+     */
+    static String localPart(String email) {
+        int at = email.lastIndexOf('@');
+        return at < 0 ? email : email.substring(0, at);
+    }
+
+    private static long pack(char first, char second) {
+        return ((long) first << 16) | second;
+    }
+
+    private boolean collect(long[] grams, int limit, long deadline, List<Match> matches) {
+        int minShared = Math.max(1, (int) Math.ceil(minSimilarity * grams.length - 1e-9));
+        Posting[] lists = new Posting[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.getOrDefault(grams[i], EMPTY);
+        }
+        Arrays.sort(lists, Comparator.comparingInt(posting -> posting.size));
+        // Un campo que no aparece en ninguna de las listas más cortas comparte como mucho
+        // minShared - 1 trigramas: solo esas listas generan candidatos
+        int generating = grams.length - minShared + 1;
+
+        Scratch scratch = acquireScratch();
+        short[] counts = scratch.counts;
+        boolean complete = true;
+        try {
+            for (int list = 0; list < generating && complete; list++) {
+                Posting posting = lists[list];
+                int[] ordinals = posting.ordinals;
+                for (int i = 0; i < posting.size; i++) {
+                    int ordinal = ordinals[i];
+                    if (counts[ordinal]++ == 0) {
+                        scratch.touch(ordinal);
+                    }
+                }
+                complete = System.nanoTime() - deadline <= 0;
+            }
+            // En las listas largas solo se suman los candidatos ya vistos: se recorre la lista o se
+            // busca cada candidato en ella, lo que cueste menos. Tras cada lista se descartan los
+            // que ya no pueden llegar a minShared con las que quedan, así que cada vez son menos
+            for (int list = generating; list < lists.length && complete; list++) {
+                Posting posting = lists[list];
+                int probeCost = scratch.touched * (32 - Integer.numberOfLeadingZeros(posting.size));
+                if (probeCost < posting.size) {
+                    for (int c = 0; c < scratch.touched; c++) {
+                        int ordinal = scratch.ordinals[c];
+                        if (posting.contains(ordinal)) {
+                            counts[ordinal]++;
+                        }
+                    }
+                } else {
+                    int[] ordinals = posting.ordinals;
+                    for (int i = 0; i < posting.size; i++) {
+                        int ordinal = ordinals[i];
+                        if (counts[ordinal] != 0) {
+                            counts[ordinal]++;
+                        }
+                    }
+                }
+                scratch.retain(minShared - (lists.length - 1 - list));
+                complete = System.nanoTime() - deadline <= 0;
+            }
+
+            PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, WORST_FIRST);
+            for (int c = 0; c < scratch.touched && complete; c++) {
+                int first = scratch.ordinals[c] & ~1;
+                int usernameShared = counts[first];
+                int emailShared = counts[first + 1];
+                // A cero: ya evaluado junto con el otro campo del mismo usuario
+                counts[first] = 0;
+                counts[first + 1] = 0;
+                if (Math.max(usernameShared, emailShared) < minShared) {
+                    continue;
+                }
+                // La similitud del usuario es la mejor de sus dos campos
+                double similarity = Math.max(similarity(grams.length, first, usernameShared),
+                        similarity(grams.length, first + 1, emailShared));
+                offer(best, first >> 1, similarity, limit);
+                if (c % DEADLINE_CHECK_INTERVAL == 0) {
+                    complete = System.nanoTime() - deadline <= 0;
+                }
+            }
+            List<Candidate> ranked = new ArrayList<>(best);
+            ranked.sort(WORST_FIRST.reversed());
+            for (Candidate candidate : ranked) {
+                matches.add(new Match(users[candidate.slot()], candidate.similarity()));
+            }
+        } finally {
+            releaseScratch(scratch);
+        }
+        return complete;
+    }
+
+    private double similarity(int queryGrams, int ordinal, int shared) {
+        return shared == 0 ? 0 : (double) shared / (queryGrams + gramCounts[ordinal] - shared);
+    }
+
+    private void offer(PriorityQueue<Candidate> best, int slot, double similarity, int limit) {
+        if (similarity < minSimilarity || users[slot] == null
+                || (best.size() == limit && similarity < best.peek().similarity())) {
+            return;
+        }
+        Candidate candidate = new Candidate(slot, users[slot].id(), similarity);
+        if (best.size() < limit) {
+            best.add(candidate);
+        } else if (WORST_FIRST.compare(candidate, best.peek()) > 0) {
+            best.poll();
+            best.add(candidate);
+        }
+    }
+
+    /**
+     * Llamar con el cerrojo de lectura: el tamaño de los contadores depende de los huecos actuales
+     */
+    private Scratch acquireScratch() {
+        Scratch scratch = scratchPool.poll();
+        while (scratch != null && scratch.counts.length < gramCounts.length) {
+            // Contadores de antes de crecer el índice: se descartan
+            scratch = scratchPool.poll();
+        }
+        return scratch != null ? scratch : new Scratch(gramCounts.length);
+    }
+
+    private void releaseScratch(Scratch scratch) {
+        scratch.reset();
+        scratchPool.offer(scratch);
+    }
+
+    private void addPostings(int ordinal, long[] grams) {
+        gramCounts[ordinal] = (short) Math.min(grams.length, Short.MAX_VALUE);
+        for (long gram : grams) {
+            Posting posting = postings.get(gram);
+            if (posting == null) {
+                posting = new Posting(INITIAL_POSTING_CAPACITY);
+                postings.put(gram, posting);
+                postingCapacity += INITIAL_POSTING_CAPACITY;
+            }
+            postingCapacity += posting.append(ordinal);
+        }
+    }
+
+    /**
+     * Recorrer la tabla en el primario (una réplica con retraso dejaría fuera las últimas altas);
+     * lo llama UserIndexSync al arrancar, antes de aplicar los eventos posteriores
+     */
+    public void load() {
+        Set<Long> removed = ConcurrentHashMap.newKeySet();
+        removedWhileLoading = removed;
+        try {
+            long start = System.nanoTime();
+            // Las altas confirmadas durante el recorrido llegan por add; add ignora los repetidos
+            primaryTransaction.executeWithoutResult(status -> {
+                try (Stream<UserKeys> keys = userRepository.streamAllKeys()) {
+                    keys.filter(key -> !removed.contains(key.id())).forEach(this::add);
+                }
+            });
+            removedWhileLoading = null;
+            // Una baja pudo confirmarse justo después de que el recorrido leyera su fila
+            removed.forEach(this::remove);
+            ready = true;
+            log.info("Índice de trigramas construido con {} usuarios en {} ms (~{} bytes)",
+                    liveUsers, (System.nanoTime() - start) / 1_000_000, estimatedSizeInBytes());
+        } catch (RuntimeException ex) {
+            log.error("No se pudo construir el índice de trigramas; las búsquedas aproximadas serán parciales", ex);
+        } finally {
+            removedWhileLoading = null;
+        }
+    }
+}
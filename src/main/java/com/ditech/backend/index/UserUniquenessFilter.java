@@ -0,0 +1,195 @@
+package com.ditech.backend.index;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ditech.backend.repository.UserKeys;
+import com.ditech.backend.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Filtro de Bloom con los usernames y emails existentes.
+ * Si el filtro responde que un valor no está, es seguro que no existe y el alta puede saltarse
+ * la consulta previa a la base de datos; si responde que podría estar, se consulta. La restricción
+ * UNIQUE de la tabla sigue siendo la garantía final, el filtro solo evita consultas.
+ *
+ * Se construye al arrancar recorriendo la tabla. Un filtro de Bloom no admite borrados: las bajas
+ * dejan bits obsoletos (más falsos positivos), así que se reconstruye en segundo plano cuando las bajas
+ * superan users.uniqueness-filter.rebuild-removal-ratio o las altas superan la capacidad prevista.
+ */
+@Component
+public class UserUniquenessFilter {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserUniquenessFilter.class);
+    
+    private static final String USERNAME_PREFIX = "u:";
+    private static final String EMAIL_PREFIX = "e:";
+    
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long expectedUsers;
+    private final double falsePositiveRate;
+    private final double rebuildRemovalRatio;
+    
+    private volatile BloomFilter filter;
+    /** Filtro en construcción; mientras existe, las altas se escriben también en él */
+    private volatile BloomFilter building;
+    private volatile long capacityUsers;
+    private volatile boolean ready;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong removals = new AtomicLong();
+    
+    private final Counter definitelyNew;
+    private final Counter maybePresent;
+    private final Counter falsePositives;
+    
+    public UserUniquenessFilter(UserRepository userRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${users.uniqueness-filter.expected-users:1000000}") long expectedUsers,
+                                @Value("${users.uniqueness-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                                @Value("${users.uniqueness-filter.rebuild-removal-ratio:0.2}") double rebuildRemovalRatio,
+                                MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildRemovalRatio = rebuildRemovalRatio;
+        this.capacityUsers = expectedUsers;
+        this.filter = new BloomFilter(2 * expectedUsers, falsePositiveRate);
+        
+        this.definitelyNew = Counter.builder("users.uniqueness.filter.checks")
+                .description("Comprobaciones de unicidad resueltas por el filtro")
+                .tag("result", "definitely_new")
+                .register(meterRegistry);
+        this.maybePresent = Counter.builder("users.uniqueness.filter.checks")
+                .description("Comprobaciones de unicidad resueltas por el filtro")
+                .tag("result", "maybe_present")
+                .register(meterRegistry);
+        this.falsePositives = Counter.builder("users.uniqueness.filter.false.positives")
+                .description("Valores que el filtro daba como posibles y la base de datos no tenía")
+                .register(meterRegistry);
+        Gauge.builder("users.uniqueness.filter.memory", this, f -> f.filter.sizeInBytes())
+                .description("Memoria ocupada por el filtro de Bloom")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("users.uniqueness.filter.expected.fpp", this, f -> f.filter.expectedFalsePositiveRate())
+                .description("Tasa de falsos positivos estimada con el llenado actual")
+                .register(meterRegistry);
+        Gauge.builder("users.uniqueness.filter.insertions", this, f -> f.filter.insertions())
+                .description("Valores insertados en el filtro")
+                .register(meterRegistry);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (rebuilding.compareAndSet(false, true)) {
+            rebuild();
+        }
+    }
+    
+    public boolean mightContainUsername(String username) {
+        return mightContain(USERNAME_PREFIX + username);
+    }
+    
+    public boolean mightContainEmail(String email) {
+        return mightContain(EMAIL_PREFIX + email);
+    }
+    
+    /**
+     * Registrar que una respuesta "podría estar" del filtro no se confirmó en la base de datos
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+    
+    /**
+     * Añadir un usuario creado; debe llamarse después de confirmar la transacción
+     */
+    public void add(String username, String email) {
+        // Primero el filtro en construcción y después el actual: así el alta no se pierde
+        // si la reconstrucción termina y los intercambia entre las dos escrituras
+        BloomFilter next = building;
+        if (next != null) {
+            putKeys(next, username, email);
+        }
+        BloomFilter current = filter;
+        putKeys(current, username, email);
+        if (current.insertions() > 2 * capacityUsers) {
+            rebuildAsync();
+        }
+    }
+    
+    /**
+     * Registrar bajas de usuarios (sus valores siguen en el filtro hasta la próxima reconstrucción)
+     * @param count Número de usuarios eliminados
+     */
+    public void recordRemovals(long count) {
+        if (removals.addAndGet(count) > rebuildRemovalRatio * Math.max(1, filter.insertions() / 2)) {
+            rebuildAsync();
+        }
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    private boolean mightContain(String key) {
+        // Hasta terminar la primera carga no se puede afirmar que un valor sea nuevo
+        boolean result = !ready || filter.mightContain(key);
+        (result ? maybePresent : definitelyNew).increment();
+        return result;
+    }
+    
+    private void rebuildAsync() {
+        if (rebuilding.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("uniqueness-filter-rebuild").start(this::rebuild);
+        }
+    }
+    
+    private void rebuild() {
+        try {
+            long start = System.nanoTime();
+            long users = userRepository.count();
+            long capacity = Math.max(expectedUsers, 2 * users);
+            BloomFilter next = new BloomFilter(2 * capacity, falsePositiveRate);
+            removals.set(0);
+            building = next;
+            // La consulta empieza después de publicar building: cada alta confirmada antes está en
+            // el recorrido y cada alta posterior se escribe en next desde add
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<UserKeys> keys = userRepository.streamAllKeys()) {
+                    keys.forEach(key -> putKeys(next, key.username(), key.email()));
+                }
+            });
+            capacityUsers = capacity;
+            filter = next;
+            ready = true;
+            log.info("Filtro de unicidad construido con {} usuarios en {} ms ({} bytes)",
+                    next.insertions() / 2, (System.nanoTime() - start) / 1_000_000, next.sizeInBytes());
+        } catch (RuntimeException ex) {
+            log.error("No se pudo construir el filtro de unicidad; se consultará la base de datos", ex);
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+    
+    private static void putKeys(BloomFilter target, String username, String email) {
+        target.put(USERNAME_PREFIX + username);
+        target.put(EMAIL_PREFIX + email);
+    }
+}
@@ -0,0 +1,46 @@
+package com.ditech.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento del outbox de usuarios. Los servicios lo insertan con INSERT ... SELECT en la transacción del
+ * cambio (UserEventRepository); la entidad solo se usa para asignar offsets y purgar.
+ */
+@Entity
+@Table(name = "user_events")
+@Getter
+@Setter
+public class UserEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /** Posición en el flujo de eventos; null hasta que el publicador la asigna */
+    @Column(name = "event_offset", unique = true)
+    private Long eventOffset;
+    
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(name = "event_type", nullable = false, length = 16)
+    private UserEventType type;
+    
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+    
+    /** Solo en las altas */
+    private String username;
+    
+    /** Solo en las altas */
+    private String email;
+    
+    private Boolean active;
+    
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,9 @@
+package com.ditech.backend.model;
+
+/**
+ * Tipo de un evento del outbox de usuarios
+ */
+public enum UserEventType {
+    CREATED,
+    DELETED
+}
@@ -0,0 +1,226 @@
+package com.ditech.backend.outbox;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ditech.backend.model.UserEvent;
+import com.ditech.backend.repository.UserEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Publicador del outbox de usuarios: asigna offsets consecutivos a los eventos confirmados, avisa a los
+ * consumidores que esperan eventos nuevos y purga los antiguos.
+ *
+ * Un único hilo toma los eventos sin offset por orden de id y les asigna head + 1, head + 2... Un evento
+ * con id menor cuya transacción se confirma más tarde recibe simplemente un offset mayor, así que los
+ * offsets crecen en el orden en que los eventos se hacen visibles y leer por offset no se salta ninguno.
+ * Los servicios despiertan al hilo tras confirmar un cambio (wakeUp); además publica cada
+ * publish-interval, lo que recoge los eventos escritos por otras instancias. Si dos instancias asignan el
+ * mismo offset, el índice único rechaza la segunda, que relee el último offset y lo reintenta.
+ *
+ * La purga borra cada prune-interval los eventos con más de retention, salvo el último publicado.
+ */
+@Component
+public class UserEventLog {
+
+    private static final Logger log = LoggerFactory.getLogger(UserEventLog.class);
+
+    private final UserEventRepository userEventRepository;
+    private final TransactionTemplate primaryTransaction;
+    private final int publishBatchSize;
+    private final long publishIntervalNanos;
+    private final Duration retention;
+    private final long pruneIntervalNanos;
+
+    private final Timer publishLag;
+    private final Counter pruned;
+
+    /** Último offset publicado */
+    private volatile long head;
+    /** Consumidores esperando a que avance head; cada uno se retira al completarse (o al agotar su espera) */
+    private final Set<CompletableFuture<Long>> waiters = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private volatile Thread publisher;
+
+    public UserEventLog(UserEventRepository userEventRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${users.events.publish-batch-size:500}") int publishBatchSize,
+                        @Value("${users.events.publish-interval:1s}") Duration publishInterval,
+                        @Value("${users.events.retention:7d}") Duration retention,
+                        @Value("${users.events.prune-interval:1h}") Duration pruneInterval,
+                        MeterRegistry meterRegistry) {
+        this.userEventRepository = userEventRepository;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.publishBatchSize = publishBatchSize;
+        this.publishIntervalNanos = publishInterval.toNanos();
+        this.retention = retention;
+        this.pruneIntervalNanos = pruneInterval.toNanos();
+
+        Gauge.builder("users.events.head", this, UserEventLog::head)
+                .description("Último offset publicado del flujo de eventos de usuarios")
+                .register(meterRegistry);
+        this.publishLag = Timer.builder("users.events.publish.lag")
+                .description("Tiempo desde que se escribe un evento hasta que recibe offset")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.pruned = Counter.builder("users.events.pruned")
+                .description("Eventos eliminados por la purga de retención")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refreshHead();
+        running = true;
+        publisher = Thread.ofPlatform().name("user-event-publisher").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Thread current = publisher;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * Último offset publicado
+     */
+    public long head() {
+        return head;
+    }
+
+    /**
+     * Avisar al publicador de que hay eventos nuevos; debe llamarse después de confirmar la transacción
+     */
+    public void wakeUp() {
+        Thread current = publisher;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * Futuro que se completa con el nuevo head cuando haya eventos publicados después de offset. El
+     * llamador puede completarlo él mismo (por ejemplo con completeOnTimeout) para dejar de esperar
+     */
+    public CompletableFuture<Long> onAdvance(long offset) {
+        CompletableFuture<Long> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        waiter.whenComplete((newHead, ex) -> waiters.remove(waiter));
+        // advance escribe head antes de recorrer waiters: si avanza mientras se registra, se ve aquí
+        long current = head;
+        if (current > offset) {
+            waiter.complete(current);
+        }
+        return waiter;
+    }
+
+    /**
+     * Releer el último offset de la base de datos, por si otra instancia ha publicado eventos
+     */
+    public long refreshHead() {
+        Long stored = primaryTransaction.execute(status -> userEventRepository.findHeadOffset());
+        advance(stored == null ? 0 : stored);
+        return head;
+    }
+
+    /**
+     * Asignar offset a un lote de eventos confirmados
+     * @return Eventos publicados (publish-batch-size si puede haber más pendientes)
+     */
+    int publish() {
+        long from = head;
+        List<UserEvent> published;
+        try {
+            published = primaryTransaction.execute(status -> {
+                List<UserEvent> pending = userEventRepository.findUnpublished(Limit.of(publishBatchSize));
+                long offset = from;
+                for (UserEvent event : pending) {
+                    event.setEventOffset(++offset);
+                }
+                // Los UPDATE se envían en lotes JDBC al confirmar
+                return pending;
+            });
+        } catch (DataIntegrityViolationException ex) {
+            // Otra instancia ha publicado esos offsets
+            log.debug("Offsets {} en adelante ya asignados; se relee el último", from + 1);
+            refreshHead();
+            return 0;
+        }
+        if (published.isEmpty()) {
+            refreshHead();
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (UserEvent event : published) {
+            publishLag.record(Duration.between(event.getOccurredAt(), now).abs());
+        }
+        advance(from + published.size());
+        return published.size();
+    }
+
+    /**
+     * Purgar los eventos publicados con más de retention, salvo el último
+     * @return Eventos eliminados
+     */
+    int prune() {
+        int removed = userEventRepository.deletePublishedBefore(LocalDateTime.now().minus(retention), head);
+        pruned.increment(removed);
+        return removed;
+    }
+
+    private synchronized void advance(long newHead) {
+        if (newHead <= head) {
+            return;
+        }
+        head = newHead;
+        for (CompletableFuture<Long> waiter : waiters) {
+            waiter.complete(newHead);
+        }
+    }
+
+    private void run() {
+        long nextPrune = System.nanoTime() + pruneIntervalNanos;
+        while (running) {
+            try {
+                while (running && publish() == publishBatchSize) {
+                    // Quedan eventos pendientes
+                }
+                if (System.nanoTime() - nextPrune >= 0) {
+                    nextPrune = System.nanoTime() + pruneIntervalNanos;
+                    prune();
+                }
+            } catch (RuntimeException ex) {
+                // Se reintenta en el siguiente intervalo; los eventos siguen en la tabla
+                log.warn("No se pudieron publicar los eventos de usuarios: {}", ex.getMessage());
+            }
+            // Un wakeUp durante la publicación deja el permiso y parkNanos vuelve al momento
+            LockSupport.parkNanos(this, publishIntervalNanos);
+        }
+    }
+}
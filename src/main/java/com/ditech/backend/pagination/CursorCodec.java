@@ -0,0 +1,47 @@
+package com.ditech.backend.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Codifica y decodifica los cursores opacos usados en la paginación por keyset.
+ * El cliente solo debe reenviar el valor recibido en nextCursor, sin interpretarlo.
+ */
+public final class CursorCodec {
+    
+    private static final String PREFIX = "id:";
+    
+    private CursorCodec() {
+    }
+    
+    /**
+     * Genera el cursor que apunta al último ID entregado
+     * @param lastId ID del último elemento de la página
+     * @return Cursor opaco
+     */
+    public static String encode(long lastId) {
+        byte[] raw = (PREFIX + lastId).getBytes(StandardCharsets.US_ASCII);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+    
+    /**
+     * Obtiene el ID a partir del cual continuar la paginación
+     * @param cursor Cursor opaco recibido del cliente
+     * @return Último ID entregado en la página anterior
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public static long decode(String cursor) {
+        long id;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            id = raw.startsWith(PREFIX) ? Long.parseLong(raw.substring(PREFIX.length())) : -1;
+        } catch (IllegalArgumentException ex) {
+            // Base64 mal formado o número no válido (NumberFormatException)
+            id = -1;
+        }
+        if (id < 0) {
+            throw new IllegalArgumentException("Cursor de paginación inválido: " + cursor);
+        }
+        return id;
+    }
+}
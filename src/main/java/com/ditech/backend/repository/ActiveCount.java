@@ -0,0 +1,7 @@
+package com.ditech.backend.repository;
+
+/**
+ * Número de usuarios con un valor de active, resultado de agrupar la tabla por esa columna.
+ */
+public record ActiveCount(Boolean active, Long count) {
+}
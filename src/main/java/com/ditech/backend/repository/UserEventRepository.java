@@ -0,0 +1,81 @@
+package com.ditech.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ditech.backend.dto.UserEventDto;
+import com.ditech.backend.model.UserEvent;
+
+/**
+ * Outbox de cambios de usuarios. Las escrituras son INSERT ... SELECT sobre users: una sentencia por
+ * bloque de usuarios, sin hidratar entidades, y exigen la transacción del cambio que registran.
+ */
+@Repository
+public interface UserEventRepository extends JpaRepository<UserEvent, Long> {
+
+    /**
+     * Eventos CREATED de usuarios ya insertados (y enviados con flush) en la transacción actual
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "insert into user_events (event_type, user_id, username, email, active, occurred_at)"
+            + " select 'CREATED', id, username, email, active, current_timestamp from users where id in :ids",
+            nativeQuery = true)
+    int insertCreatedEvents(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Eventos DELETED de los usuarios que existen entre los IDs; se ejecuta antes del DELETE, en la
+     * misma transacción y con las filas ya bloqueadas (UserRepository.lockByIdIn)
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "insert into user_events (event_type, user_id, active, occurred_at)"
+            + " select 'DELETED', id, active, current_timestamp from users where id in :ids",
+            nativeQuery = true)
+    int insertDeletedEvents(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Evento DELETED de un usuario ya eliminado en la transacción actual
+     */
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "insert into user_events (event_type, user_id, active, occurred_at)"
+            + " values ('DELETED', :userId, :active, current_timestamp)",
+            nativeQuery = true)
+    int insertDeletedEvent(@Param("userId") Long userId, @Param("active") boolean active);
+
+    /**
+     * Eventos publicados a partir de un offset, en orden, proyectados al DTO
+     */
+    @Query("select new com.ditech.backend.dto.UserEventDto(e.eventOffset, e.type, e.userId, e.username, e.email,"
+            + " e.active, e.occurredAt) from UserEvent e where e.eventOffset > :after order by e.eventOffset")
+    List<UserEventDto> findPublishedAfter(@Param("after") long after, Limit limit);
+
+    /**
+     * Eventos confirmados sin offset, por orden de inserción
+     */
+    @Query("select e from UserEvent e where e.eventOffset is null order by e.id")
+    List<UserEvent> findUnpublished(Limit limit);
+
+    @Query("select max(e.eventOffset) from UserEvent e")
+    Long findHeadOffset();
+
+    /**
+     * Purga los eventos publicados antes de cutoff con offset menor que belowOffset: se conserva
+     * siempre el último para no perder el offset tras un reinicio
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from UserEvent e where e.occurredAt < :cutoff and e.eventOffset < :belowOffset")
+    int deletePublishedBefore(@Param("cutoff") LocalDateTime cutoff, @Param("belowOffset") long belowOffset);
+}
@@ -0,0 +1,8 @@
+package com.ditech.backend.repository;
+
+/**
+ * Proyección con el ID y el active de un usuario, usada por las bajas en bloque para saber qué
+ * contador descontar por cada fila bloqueada.
+ */
+public record UserIdAndActive(Long id, Boolean active) {
+}
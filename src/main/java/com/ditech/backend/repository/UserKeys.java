@@ -0,0 +1,8 @@
+package com.ditech.backend.repository;
+
+/**
+ * Proyección con las claves de un usuario, usada para construir índices en memoria
+ * recorriendo la tabla sin cargar entidades.
+ */
+public record UserKeys(Long id, String username, String email) {
+}
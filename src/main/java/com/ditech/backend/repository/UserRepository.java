@@ -1,15 +1,139 @@
 package com.ditech.backend.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.ditech.backend.dto.UserResponseDto;
 import com.ditech.backend.model.User;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findById(Long id);
     List<User> findAll();
+    
+    /**
+     * Lectura por ID directamente al DTO: solo selecciona id, username, email y updated_at (para el
+     * ETag) y no registra ninguna entidad en el contexto de persistencia.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.ditech.backend.dto.UserResponseDto(u.id, u.username, u.email, u.active, u.updatedAt)"
+            + " from User u where u.id = :id")
+    Optional<UserResponseDto> findResponseById(@Param("id") Long id);
+    
+    /**
+     * Lectura de varios IDs con una única cláusula IN, proyectando al DTO. El orden del resultado
+     * no está definido; el llamador debe limitar el número de IDs por consulta.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.ditech.backend.dto.UserResponseDto(u.id, u.username, u.email, u.active, u.updatedAt)"
+            + " from User u where u.id in :ids")
+    List<UserResponseDto> findResponsesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Página por keyset sobre la clave primaria: usa el índice de id y no depende del offset,
+     * por lo que el coste es el mismo en la primera página que en la última.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.ditech.backend.dto.UserResponseDto(u.id, u.username, u.email, u.active, u.updatedAt)"
+            + " from User u where u.id > :afterId order by u.id")
+    List<UserResponseDto> findResponsePage(@Param("afterId") Long afterId, Limit limit);
+    
+    /**
+     * Página por keyset de los usuarios activos o inactivos: recorre idx_users_active (active, id)
+     * desde el último ID entregado, sin ordenar ni saltar filas.
+     */
+    @Transactional(readOnly = true)
+    @Query("select new com.ditech.backend.dto.UserResponseDto(u.id, u.username, u.email, u.active, u.updatedAt)"
+            + " from User u where u.active = :active and u.id > :afterId order by u.id")
+    List<UserResponseDto> findResponsePageByActive(@Param("active") boolean active, @Param("afterId") Long afterId,
+                                                   Limit limit);
+    
+    /**
+     * Recorre toda la tabla con un cursor JDBC de solo avance, proyectando cada fila al DTO
+     * (sin entidades gestionadas). Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @Query("select new com.ditech.backend.dto.UserResponseDto(u.id, u.username, u.email, u.active, u.updatedAt)"
+            + " from User u order by u.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<UserResponseDto> streamAllResponses();
+    
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+    
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+    
+    boolean existsByUsername(String username);
+    
+    boolean existsByEmail(String email);
+    
+    /**
+     * Recorre las claves de todos los usuarios con un cursor de solo avance (sin hidratar entidades).
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @Query("select new com.ditech.backend.repository.UserKeys(u.id, u.username, u.email) from User u")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<UserKeys> streamAllKeys();
+    
+    /**
+     * Número de usuarios activos e inactivos con un único recorrido de idx_users_active.
+     * Solo lo usa la reconciliación periódica de los contadores; las lecturas de /users/count no
+     * llegan a la base de datos.
+     */
+    @Query("select new com.ditech.backend.repository.ActiveCount(u.active, count(u)) from User u group by u.active")
+    List<ActiveCount> countGroupedByActive();
+    
+    /**
+     * Borrado en una sola sentencia, sin leer antes la entidad: la tabla delta OLD TABLE de H2 (el
+     * equivalente de DELETE ... RETURNING) devuelve el active de la fila eliminada, que indica al
+     * llamador qué contador descontar y va en el evento DELETED.
+     * @return active del usuario eliminado; vacío si no existía
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "select active from old table (delete from users where id = :id)", nativeQuery = true)
+    Optional<Boolean> deleteUserReturningActive(@Param("id") Long id);
+    
+    @Modifying
+    @Transactional
+    @Query("delete from User u where u.id in :ids and u.active = :active")
+    int deleteUsersByIdInAndActive(@Param("ids") Collection<Long> ids, @Param("active") boolean active);
+    
+    @Modifying
+    @Transactional
+    @Query("delete from User u where u.id in :ids")
+    int deleteUsersByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Bloquea (SELECT ... FOR UPDATE) los usuarios que existen entre los IDs y devuelve su active.
+     * Una baja concurrente de los mismos IDs espera a que termine la transacción actual y después
+     * ya no los encuentra, así que cada usuario se elimina (y registra su evento) una sola vez.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query("select new com.ditech.backend.repository.UserIdAndActive(u.id, u.active) from User u where u.id in :ids")
+    List<UserIdAndActive> lockByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * IDs de usuarios inactivos por keyset, para purgarlos por bloques sobre idx_users_active
+     */
+    @Transactional(readOnly = true)
+    @Query("select u.id from User u where u.active = false and u.id > :afterId order by u.id")
+    List<Long> findInactiveIds(@Param("afterId") Long afterId, Limit limit);
 }
@@ -0,0 +1,294 @@
+package com.ditech.backend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ditech.backend.cache.UserCache;
+import com.ditech.backend.datasource.ReadYourWrites;
+import com.ditech.backend.dto.UserBatchCreateResponseDto;
+import com.ditech.backend.dto.UserBatchItemResultDto;
+import com.ditech.backend.dto.UserBulkDeleteResponseDto;
+import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.index.UserActiveCounts;
+import com.ditech.backend.index.UserPrefixIndex;
+import com.ditech.backend.index.UserTrigramIndex;
+import com.ditech.backend.index.UserUniquenessFilter;
+import com.ditech.backend.mapper.UserMapper;
+import com.ditech.backend.model.User;
+import com.ditech.backend.outbox.UserEventLog;
+import com.ditech.backend.repository.UserEventRepository;
+import com.ditech.backend.repository.UserIdAndActive;
+import com.ditech.backend.repository.UserKeys;
+import com.ditech.backend.repository.UserRepository;
+
+import io.micrometer.core.annotation.Timed;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+@Service
+@Timed(value = "users.service", description = "Duración de los métodos de los servicios de usuarios")
+public class UserBatchService {
+    
+    /** Máximo de valores por cláusula IN al buscar duplicados en la base de datos */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Autowired
+    private UserEventRepository userEventRepository;
+    
+    @Autowired
+    private UserEventLog userEventLog;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private UserUniquenessFilter uniquenessFilter;
+    
+    @Autowired
+    private UserPrefixIndex prefixIndex;
+    
+    @Autowired
+    private UserTrigramIndex trigramIndex;
+    
+    @Autowired
+    private UserActiveCounts activeCounts;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Value("${users.batch.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${users.batch.delete-chunk-size:1000}")
+    private int deleteChunkSize;
+    
+    /**
+     * Crear usuarios en lote
+     * Los duplicados (contra la base de datos o dentro del propio lote) se detectan antes de insertar
+     * y se informan como CONFLICT; el resto se inserta en transacciones de users.batch.chunk-size filas
+     * usando lotes JDBC (hibernate.jdbc.batch_size).
+     * @param requests Usuarios a crear, ya validados
+     * @return Resultado por elemento, en el mismo orden que la entrada
+     */
+    public UserBatchCreateResponseDto createUsers(List<UserCreateRequestDto> requests) {
+        UserBatchItemResultDto[] results = new UserBatchItemResultDto[requests.size()];
+        
+        // Solo se consultan en la base de datos los valores que el filtro de unicidad no descarta
+        Set<String> existingUsernames = findExisting(
+                requests.stream().map(UserCreateRequestDto::getUsername)
+                        .filter(uniquenessFilter::mightContainUsername).toList(),
+                userRepository::findExistingUsernames);
+        Set<String> existingEmails = findExisting(
+                requests.stream().map(UserCreateRequestDto::getEmail)
+                        .filter(uniquenessFilter::mightContainEmail).toList(),
+                userRepository::findExistingEmails);
+        
+        Set<String> batchUsernames = new HashSet<>();
+        Set<String> batchEmails = new HashSet<>();
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            UserCreateRequestDto request = requests.get(i);
+            String conflict = findConflict(request, existingUsernames, existingEmails, batchUsernames, batchEmails);
+            if (conflict != null) {
+                results[i] = UserBatchItemResultDto.conflict(i, conflict);
+            } else {
+                batchUsernames.add(request.getUsername());
+                batchEmails.add(request.getEmail());
+                pending.add(i);
+            }
+        }
+        
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            List<Integer> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+            insertChunk(chunk, requests, results);
+        }
+        
+        int created = (int) Arrays.stream(results)
+                .filter(result -> result.getStatus() == UserBatchItemResultDto.Status.CREATED)
+                .count();
+        return new UserBatchCreateResponseDto(created, results.length - created, Arrays.asList(results));
+    }
+    
+    /**
+     * Eliminar un conjunto de usuarios por ID
+     * Cada bloque de users.batch.delete-chunk-size IDs se elimina en su transacción: un SELECT ... FOR UPDATE
+     * bloquea los usuarios que existen y devuelve su active (para saber qué contador descontar), después
+     * el INSERT ... SELECT de sus eventos DELETED y un DELETE ... WHERE id IN (...). Los IDs inexistentes,
+     * o eliminados antes por una baja concurrente, se ignoran y no generan evento.
+     * @param ids IDs a eliminar
+     * @return Número de IDs recibidos y de usuarios eliminados
+     */
+    public UserBulkDeleteResponseDto deleteUsers(List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        int deleted = 0;
+        for (int from = 0; from < distinct.size(); from += deleteChunkSize) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + deleteChunkSize, distinct.size()));
+            int[] removed = transactionTemplate.execute(status -> {
+                List<UserIdAndActive> locked = userRepository.lockByIdIn(chunk);
+                if (locked.isEmpty()) {
+                    return new int[] {0, 0};
+                }
+                List<Long> lockedIds = locked.stream().map(UserIdAndActive::id).toList();
+                userEventRepository.insertDeletedEvents(lockedIds);
+                userRepository.deleteUsersByIdIn(lockedIds);
+                int active = (int) locked.stream().filter(user -> Boolean.TRUE.equals(user.active())).count();
+                return new int[] {active, locked.size() - active};
+            });
+            int removedActive = removed[0];
+            int removedInactive = removed[1];
+            activeCounts.recordDeleted(true, removedActive);
+            activeCounts.recordDeleted(false, removedInactive);
+            registerDeleted(chunk, removedActive + removedInactive);
+            deleted += removedActive + removedInactive;
+        }
+        return new UserBulkDeleteResponseDto(ids.size(), deleted);
+    }
+    
+    /**
+     * Purgar todos los usuarios inactivos
+     * Recorre los IDs inactivos por keyset y borra cada bloque con un DELETE ... WHERE id IN (...),
+     * junto con sus eventos DELETED, de modo que se conocen los IDs para invalidar la caché y cada
+     * transacción es corta. Como en deleteUsers, las filas se bloquean antes de escribir los eventos.
+     * @return Número de usuarios eliminados
+     */
+    public UserBulkDeleteResponseDto deleteInactiveUsers() {
+        int deleted = 0;
+        long afterId = 0L;
+        List<Long> chunk;
+        do {
+            chunk = userRepository.findInactiveIds(afterId, Limit.of(deleteChunkSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            List<Long> ids = chunk;
+            int removed = transactionTemplate.execute(status -> {
+                List<Long> lockedIds = userRepository.lockByIdIn(ids).stream()
+                        .filter(user -> Boolean.FALSE.equals(user.active()))
+                        .map(UserIdAndActive::id)
+                        .toList();
+                if (lockedIds.isEmpty()) {
+                    return 0;
+                }
+                userEventRepository.insertDeletedEvents(lockedIds);
+                return userRepository.deleteUsersByIdInAndActive(lockedIds, false);
+            });
+            activeCounts.recordDeleted(false, removed);
+            registerDeleted(chunk, removed);
+            deleted += removed;
+            afterId = chunk.get(chunk.size() - 1);
+        } while (chunk.size() == deleteChunkSize);
+        return new UserBulkDeleteResponseDto(0, deleted);
+    }
+    
+    private void registerDeleted(List<Long> ids, int removed) {
+        // Se marcan todos los IDs del bloque: los que no existían tampoco existen ahora
+        ids.forEach(userCache::markDeleted);
+        uniquenessFilter.recordRemovals(removed);
+        ids.forEach(prefixIndex::remove);
+        ids.forEach(trigramIndex::remove);
+        ReadYourWrites.recordWrite();
+        userEventLog.wakeUp();
+    }
+    
+    private String findConflict(UserCreateRequestDto request,
+                                Set<String> existingUsernames, Set<String> existingEmails,
+                                Set<String> batchUsernames, Set<String> batchEmails) {
+        if (existingUsernames.contains(request.getUsername())) {
+            return "El nombre de usuario ya existe: " + request.getUsername();
+        }
+        if (existingEmails.contains(request.getEmail())) {
+            return "El email ya existe: " + request.getEmail();
+        }
+        if (batchUsernames.contains(request.getUsername())) {
+            return "Nombre de usuario repetido dentro del lote: " + request.getUsername();
+        }
+        if (batchEmails.contains(request.getEmail())) {
+            return "Email repetido dentro del lote: " + request.getEmail();
+        }
+        return null;
+    }
+    
+    private void insertChunk(List<Integer> chunk, List<UserCreateRequestDto> requests,
+                             UserBatchItemResultDto[] results) {
+        try {
+            List<UserResponseDto> created = transactionTemplate.execute(
+                    status -> persistAll(chunk.stream().map(requests::get).toList()));
+            registerCreated(created);
+            for (int k = 0; k < chunk.size(); k++) {
+                results[chunk.get(k)] = UserBatchItemResultDto.created(chunk.get(k), created.get(k));
+            }
+        } catch (DataIntegrityViolationException ex) {
+            // Otra petición insertó alguno de estos valores después de la comprobación previa:
+            // se reintenta fila a fila para aislar los conflictos sin perder el resto del bloque
+            for (Integer index : chunk) {
+                try {
+                    List<UserResponseDto> created = transactionTemplate.execute(
+                            status -> persistAll(List.of(requests.get(index))));
+                    registerCreated(created);
+                    results[index] = UserBatchItemResultDto.created(index, created.get(0));
+                } catch (DataIntegrityViolationException rowEx) {
+                    results[index] = UserBatchItemResultDto.conflict(index,
+                            "El nombre de usuario o el email ya existe");
+                }
+            }
+        }
+    }
+    
+    private void registerCreated(List<UserResponseDto> created) {
+        userCache.registerCreated(created.stream().map(UserResponseDto::getId).toList());
+        created.forEach(user -> uniquenessFilter.add(user.getUsername(), user.getEmail()));
+        for (UserResponseDto user : created) {
+            UserKeys keys = new UserKeys(user.getId(), user.getUsername(), user.getEmail());
+            prefixIndex.add(keys);
+            trigramIndex.add(keys);
+            activeCounts.recordCreated(user.getActive());
+        }
+        ReadYourWrites.recordWrite();
+        userEventLog.wakeUp();
+    }
+    
+    private List<UserResponseDto> persistAll(List<UserCreateRequestDto> requests) {
+        List<User> users = requests.stream().map(userMapper::toEntity).toList();
+        userRepository.saveAll(users);
+        // El flush envía los INSERT agrupados antes de copiarlos al outbox con un INSERT ... SELECT;
+        // clear libera las entidades del bloque
+        userRepository.flush();
+        userEventRepository.insertCreatedEvents(users.stream().map(User::getId).toList());
+        List<UserResponseDto> created = users.stream().map(userMapper::toResponseDto).toList();
+        entityManager.clear();
+        return created;
+    }
+    
+    private Set<String> findExisting(List<String> values, Function<Collection<String>, List<String>> query) {
+        List<String> distinct = new ArrayList<>(new HashSet<>(values));
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < distinct.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            existing.addAll(query.apply(distinct.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, distinct.size()))));
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,303 @@
+package com.ditech.backend.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.ditech.backend.dto.UserEventBatchDto;
+import com.ditech.backend.dto.UserEventDto;
+import com.ditech.backend.exception.EventOffsetUnavailableException;
+import com.ditech.backend.exception.EventStreamLimitException;
+import com.ditech.backend.model.UserEventType;
+import com.ditech.backend.outbox.UserEventLog;
+import com.ditech.backend.repository.UserEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Lectura del flujo de eventos de usuarios por offset: lotes (GET /users/events, con long-poll
+ * opcional) y Server-Sent Events (GET /users/events/stream).
+ *
+ * Cada consumidor lee de la tabla a su ritmo a partir de su último offset, sin colas en memoria: un
+ * suscriptor SSE lento bloquea solo su propio hilo virtual en el envío y no retiene eventos de los
+ * demás. Los lotes se leen del primario, que es donde se asignan los offsets; una réplica retrasada
+ * devolvería lotes vacíos por debajo de head.
+ */
+@Service
+public class UserEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserEventService.class);
+
+    /** Nombres de evento SSE */
+    static final String CREATED_EVENT = "user-created";
+    static final String DELETED_EVENT = "user-deleted";
+    static final String OFFSET_UNAVAILABLE_EVENT = "offset-unavailable";
+
+    private final UserEventRepository userEventRepository;
+    private final UserEventLog userEventLog;
+    private final TransactionTemplate primaryTransaction;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final Duration maxWait;
+    private final int maxSubscribers;
+    private final Duration heartbeat;
+    private final Duration streamTimeout;
+
+    /** Hilos virtuales de las suscripciones SSE y de las respuestas de long-poll */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private final Counter deliveredSse;
+    private final Counter deliveredPoll;
+
+    public UserEventService(UserEventRepository userEventRepository,
+                            UserEventLog userEventLog,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${users.events.default-limit:100}") int defaultLimit,
+                            @Value("${users.events.max-limit:500}") int maxLimit,
+                            @Value("${users.events.poll.max-wait:30s}") Duration maxWait,
+                            @Value("${users.events.stream.max-subscribers:100}") int maxSubscribers,
+                            @Value("${users.events.stream.heartbeat:15s}") Duration heartbeat,
+                            @Value("${users.events.stream.timeout:30m}") Duration streamTimeout,
+                            MeterRegistry meterRegistry) {
+        this.userEventRepository = userEventRepository;
+        this.userEventLog = userEventLog;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.maxWait = maxWait;
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeat = heartbeat;
+        this.streamTimeout = streamTimeout;
+
+        Gauge.builder("users.events.subscribers", subscribers, AtomicInteger::get)
+                .description("Suscripciones SSE abiertas al flujo de eventos de usuarios")
+                .register(meterRegistry);
+        this.deliveredSse = delivered("sse", meterRegistry);
+        this.deliveredPoll = delivered("poll", meterRegistry);
+    }
+
+    private static Counter delivered(String transport, MeterRegistry meterRegistry) {
+        return Counter.builder("users.events.delivered")
+                .description("Eventos de usuarios entregados a los consumidores")
+                .tag("transport", transport)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Leer los eventos publicados después de un offset
+     * @param after Último offset recibido, o null para empezar por el evento más antiguo conservado
+     * @param limit Eventos máximos; null para users.events.default-limit, se recorta a users.events.max-limit.
+     *              Con 0 solo se informa el último offset publicado
+     * @return Lote de eventos; sin eventos, lastOffset es after (o el último publicado si after es null)
+     * @throws IllegalArgumentException si after o limit son negativos, o after es posterior al último offset publicado
+     * @throws EventOffsetUnavailableException si los eventos siguientes a after ya se han purgado
+     */
+    public UserEventBatchDto read(Long after, Integer limit) {
+        if (after != null && after < 0) {
+            throw new IllegalArgumentException("El parámetro after no puede ser negativo");
+        }
+        int size = limit == null ? defaultLimit : limit;
+        if (size < 0) {
+            throw new IllegalArgumentException("El parámetro limit no puede ser negativo");
+        }
+        size = Math.min(size, maxLimit);
+
+        long head = userEventLog.head();
+        if (after != null && after > head) {
+            // Puede haberlo publicado otra instancia
+            head = userEventLog.refreshHead();
+            if (after > head) {
+                throw new IllegalArgumentException(
+                        "El offset " + after + " es posterior al último publicado (" + head + ")");
+            }
+        }
+        long from = after == null ? 0 : after;
+        int pageSize = size;
+        List<UserEventDto> events = pageSize == 0 || (after != null && after == head)
+                ? List.of()
+                : primaryTransaction.execute(status -> userEventRepository.findPublishedAfter(from, Limit.of(pageSize)));
+        if (after != null && !events.isEmpty() && events.get(0).getOffset() != after + 1) {
+            throw new EventOffsetUnavailableException("Los eventos posteriores al offset " + after
+                    + " se han purgado; el más antiguo conservado es " + events.get(0).getOffset());
+        }
+        long lastOffset = events.isEmpty()
+                ? (after == null ? head : after)
+                : events.get(events.size() - 1).getOffset();
+        return new UserEventBatchDto(events, lastOffset, Math.max(head, lastOffset));
+    }
+
+    /**
+     * Leer los eventos publicados después de un offset esperando hasta wait segundos si no hay ninguno
+     * (long-poll); la espera no ocupa ningún hilo
+     * @param wait Segundos de espera; null o 0 para responder de inmediato, se recorta a users.events.poll.max-wait
+     * @throws IllegalArgumentException si after, limit o wait son negativos
+     */
+    public CompletableFuture<UserEventBatchDto> poll(Long after, Integer limit, Integer wait) {
+        if (wait != null && wait < 0) {
+            throw new IllegalArgumentException("El parámetro wait no puede ser negativo");
+        }
+        UserEventBatchDto batch = read(after, limit);
+        long waitMillis = wait == null ? 0 : Math.min(TimeUnit.SECONDS.toMillis(wait), maxWait.toMillis());
+        if (!batch.getEvents().isEmpty() || waitMillis == 0 || (limit != null && limit == 0)) {
+            deliveredPoll.increment(batch.getEvents().size());
+            return CompletableFuture.completedFuture(batch);
+        }
+        long from = batch.getLastOffset();
+        return userEventLog.onAdvance(from)
+                .completeOnTimeout(from, waitMillis, TimeUnit.MILLISECONDS)
+                .thenApplyAsync(head -> {
+                    UserEventBatchDto next = read(from, limit);
+                    deliveredPoll.increment(next.getEvents().size());
+                    return next;
+                }, executor);
+    }
+
+    /**
+     * Suscribirse al flujo de eventos con Server-Sent Events a partir de un offset. Cada evento lleva como
+     * id su offset, de modo que el cliente reconecta con Last-Event-ID sin perder ni repetir eventos
+     * @param after Último offset recibido, o null para empezar por el evento más antiguo conservado
+     * @throws EventStreamLimitException si se ha alcanzado users.events.stream.max-subscribers
+     * @throws EventOffsetUnavailableException si los eventos siguientes a after ya se han purgado
+     */
+    public SseEmitter subscribe(Long after) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new EventStreamLimitException("Se ha alcanzado el máximo de suscripciones al flujo de eventos");
+        }
+        try {
+            // El primer lote se lee antes de abrir el flujo para responder 410 o 400 con un error normal
+            UserEventBatchDto first = read(after, maxLimit);
+            SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+            Subscription subscription = new Subscription();
+            emitter.onCompletion(subscription::close);
+            emitter.onError(ex -> subscription.close());
+            emitter.onTimeout(emitter::complete);
+            executor.execute(() -> stream(emitter, subscription, first));
+            return emitter;
+        } catch (RuntimeException ex) {
+            subscribers.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Bucle de una suscripción: envía cada lote en una única escritura, bloqueándose si el cliente no lee,
+     * y sin eventos espera a que avance head o envía un latido
+     */
+    private void stream(SseEmitter emitter, Subscription subscription, UserEventBatchDto first) {
+        try {
+            UserEventBatchDto batch = first;
+            while (!subscription.closed) {
+                if (!batch.getEvents().isEmpty()) {
+                    emitter.send(frames(batch.getEvents()));
+                    deliveredSse.increment(batch.getEvents().size());
+                } else if (!subscription.await(userEventLog.onAdvance(batch.getLastOffset()), heartbeat)) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+                if (!subscription.closed) {
+                    batch = read(batch.getLastOffset(), maxLimit);
+                }
+            }
+        } catch (EventOffsetUnavailableException ex) {
+            // La suscripción se quedó atrás más que la retención
+            try {
+                emitter.send(SseEmitter.event().name(OFFSET_UNAVAILABLE_EVENT).data(ex.getMessage()));
+                emitter.complete();
+            } catch (IOException | IllegalStateException sendEx) {
+                log.debug("No se pudo avisar a la suscripción del offset purgado: {}", sendEx.getMessage());
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // Cliente desconectado o conexión ya completada
+            log.debug("Suscripción al flujo de eventos cerrada: {}", ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        } catch (RuntimeException ex) {
+            log.warn("Error en una suscripción al flujo de eventos: {}", ex.getMessage());
+            emitter.completeWithError(ex);
+        } finally {
+            subscribers.decrementAndGet();
+        }
+    }
+
+    private static Set<DataWithMediaType> frames(List<UserEventDto> events) {
+        Set<DataWithMediaType> frames = new LinkedHashSet<>();
+        for (UserEventDto event : events) {
+            frames.addAll(SseEmitter.event()
+                    .id(String.valueOf(event.getOffset()))
+                    .name(event.getType() == UserEventType.CREATED ? CREATED_EVENT : DELETED_EVENT)
+                    .data(event, MediaType.APPLICATION_JSON)
+                    .build());
+        }
+        return frames;
+    }
+
+    /**
+     * Estado de una suscripción SSE compartido entre su hilo y las retrollamadas del emisor
+     */
+    private static final class Subscription {
+
+        private volatile boolean closed;
+        private volatile CompletableFuture<Long> waiting;
+
+        /**
+         * @return false si se agota timeout sin que avance head
+         */
+        boolean await(CompletableFuture<Long> advanced, Duration timeout) throws InterruptedException {
+            waiting = advanced;
+            if (closed) {
+                advanced.complete(-1L);
+            }
+            try {
+                advanced.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException ex) {
+                return false;
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            } finally {
+                // Deja de esperar en UserEventLog
+                advanced.complete(-1L);
+            }
+        }
+
+        void close() {
+            closed = true;
+            CompletableFuture<Long> current = waiting;
+            if (current != null) {
+                current.complete(-1L);
+            }
+        }
+    }
+}
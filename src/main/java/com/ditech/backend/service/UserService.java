@@ -1,59 +1,334 @@
 package com.ditech.backend.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.ditech.backend.cache.SingleFlight;
+import com.ditech.backend.cache.UserCache;
+import com.ditech.backend.datasource.ReadYourWrites;
+import com.ditech.backend.dto.UserCountResponseDto;
 import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserLookupResponseDto;
+import com.ditech.backend.dto.UserPageResponseDto;
+import com.ditech.backend.dto.UserFuzzySearchResponseDto;
 import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.dto.UserSearchMatchDto;
+import com.ditech.backend.dto.UserSearchResponseDto;
+import com.ditech.backend.exception.LookupTimeoutException;
+import com.ditech.backend.exception.UserAlreadyExistsException;
 import com.ditech.backend.exception.UserNotFoundException;
+import com.ditech.backend.index.UserActiveCounts;
+import com.ditech.backend.index.UserPrefixIndex;
+import com.ditech.backend.index.UserTrigramIndex;
+import com.ditech.backend.index.UserUniquenessFilter;
 import com.ditech.backend.mapper.UserMapper;
 import com.ditech.backend.model.User;
+import com.ditech.backend.outbox.UserEventLog;
+import com.ditech.backend.pagination.CursorCodec;
+import com.ditech.backend.repository.UserEventRepository;
+import com.ditech.backend.repository.UserKeys;
 import com.ditech.backend.repository.UserRepository;
 
+import io.micrometer.core.annotation.Timed;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed(value = "users.service", description = "Duración de los métodos de los servicios de usuarios")
 public class UserService {
     
+    /** Nombre de las búsquedas por ID en SingleFlight */
+    static final String LOOKUP_BY_ID = "user-by-id";
+    
+    /** Máximo de IDs por cláusula IN en las lecturas de varios usuarios */
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserEventRepository userEventRepository;
+    
+    @Autowired
+    private UserEventLog userEventLog;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
     @Autowired
     private UserMapper userMapper;
     
+    @Autowired
+    private UserCache userCache;
+    
+    @Autowired
+    private UserUniquenessFilter uniquenessFilter;
+    
+    @Autowired
+    private UserPrefixIndex prefixIndex;
+    
+    @Autowired
+    private UserTrigramIndex trigramIndex;
+    
+    @Autowired
+    private UserActiveCounts activeCounts;
+    
+    @Autowired
+    private SingleFlight singleFlight;
+    
+    @Value("${users.pagination.max-limit:100}")
+    private int maxPageSize;
+    
+    @Value("${users.search.max-limit:50}")
+    private int maxSearchLimit;
+    
+    @Value("${users.search.max-query-length:100}")
+    private int maxQueryLength;
+    
     /**
      * Crear un nuevo usuario
      * @param userCreateRequestDto Datos del usuario a crear
      * @return DTO del usuario creado
+     * @throws UserAlreadyExistsException si el username o el email ya existen
      */
     public UserResponseDto createUser(UserCreateRequestDto userCreateRequestDto) {
+        checkUniqueness(userCreateRequestDto);
         User user = userMapper.toEntity(userCreateRequestDto);
-        User savedUser = userRepository.save(user);
+        User savedUser;
+        try {
+            // El evento CREATED se copia de la fila recién insertada en la misma transacción
+            savedUser = transactionTemplate.execute(status -> {
+                User saved = userRepository.save(user);
+                userRepository.flush();
+                userEventRepository.insertCreatedEvents(List.of(saved.getId()));
+                return saved;
+            });
+        } catch (DataIntegrityViolationException ex) {
+            // Otra petición insertó el mismo valor entre la comprobación y el INSERT
+            throw new UserAlreadyExistsException("El nombre de usuario o el email ya existe");
+        }
+        userCache.registerCreated(savedUser.getId());
+        uniquenessFilter.add(savedUser.getUsername(), savedUser.getEmail());
+        UserKeys keys = new UserKeys(savedUser.getId(), savedUser.getUsername(), savedUser.getEmail());
+        prefixIndex.add(keys);
+        trigramIndex.add(keys);
+        activeCounts.recordCreated(savedUser.getActive());
+        ReadYourWrites.recordWrite();
+        userEventLog.wakeUp();
         return userMapper.toResponseDto(savedUser);
     }
     
     /**
-     * Obtener todos los usuarios
-     * @return Lista de DTOs de usuarios
+     * Solo consulta la base de datos para los valores que el filtro de unicidad no descarta
+     * @throws UserAlreadyExistsException si el username o el email ya existen
+     */
+    void checkUniqueness(UserCreateRequestDto userCreateRequestDto) {
+        String username = userCreateRequestDto.getUsername();
+        if (uniquenessFilter.mightContainUsername(username)) {
+            if (userRepository.existsByUsername(username)) {
+                throw new UserAlreadyExistsException("El nombre de usuario ya existe: " + username);
+            }
+            uniquenessFilter.recordFalsePositive();
+        }
+        String email = userCreateRequestDto.getEmail();
+        if (uniquenessFilter.mightContainEmail(email)) {
+            if (userRepository.existsByEmail(email)) {
+                throw new UserAlreadyExistsException("El email ya existe: " + email);
+            }
+            uniquenessFilter.recordFalsePositive();
+        }
+    }
+    
+    /**
+     * Obtener una página de usuarios ordenada por ID (paginación por keyset), opcionalmente solo
+     * los activos o los inactivos
+     * @param active true o false para filtrar por el campo active, null para todos
+     * @param cursor Cursor opaco de la página anterior, o null para la primera página
+     * @param limit Tamaño de página solicitado; se recorta a users.pagination.max-limit
+     * @return Página de usuarios con el cursor de la siguiente página
+     * @throws IllegalArgumentException si el cursor o el límite no son válidos
+     */
+    @Transactional(readOnly = true)
+    public UserPageResponseDto getAllUsers(Boolean active, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("El parámetro limit debe ser mayor que 0");
+        }
+        int pageSize = Math.min(limit, maxPageSize);
+        long afterId = (cursor == null || cursor.isBlank()) ? 0L : CursorCodec.decode(cursor);
+        
+        // Se pide un registro extra para saber si existe una página siguiente sin hacer COUNT(*)
+        List<UserResponseDto> users = active == null
+                ? userRepository.findResponsePage(afterId, Limit.of(pageSize + 1))
+                : userRepository.findResponsePageByActive(active, afterId, Limit.of(pageSize + 1));
+        boolean hasMore = users.size() > pageSize;
+        List<UserResponseDto> items = hasMore ? users.subList(0, pageSize) : users;
+        String nextCursor = hasMore ? CursorCodec.encode(items.get(items.size() - 1).getId()) : null;
+        return new UserPageResponseDto(items, nextCursor, hasMore);
+    }
+    
+    /**
+     * Contar usuarios con los contadores en memoria (sin COUNT(*) sobre la tabla)
+     * @param active true o false para contar solo activos o inactivos, null para todos
+     * @return Filtro aplicado y número de usuarios
+     */
+    public UserCountResponseDto countUsers(Boolean active) {
+        return new UserCountResponseDto(active, activeCounts.count(active));
+    }
+    
+    /**
+     * Buscar usuarios por prefijo de username o email en el índice en memoria (sin consultar la base de datos)
+     * @param prefix Prefijo a buscar, sin distinguir mayúsculas
+     * @param limit Máximo de usuarios solicitado; se recorta a users.search.max-limit
+     * @return Usuarios coincidentes ordenados por el valor que coincide
+     * @throws IllegalArgumentException si el prefijo está vacío o es demasiado largo, o el límite no es válido
      */
-    public List<UserResponseDto> getAllUsers() {
-        List<User> users = userRepository.findAll();
-        return users.stream()
-                .map(userMapper::toResponseDto)
-                .collect(Collectors.toList());
+    public UserSearchResponseDto searchUsers(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new IllegalArgumentException("El parámetro prefix es obligatorio");
+        }
+        if (prefix.length() > maxQueryLength) {
+            throw new IllegalArgumentException("El parámetro prefix no puede superar " + maxQueryLength + " caracteres");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("El parámetro limit debe ser mayor que 0");
+        }
+        UserPrefixIndex.SearchResult result = prefixIndex.search(prefix, Math.min(limit, maxSearchLimit));
+        List<UserResponseDto> users = result.users().stream()
+                .map(user -> new UserResponseDto(user.id(), user.username(), user.email()))
+                .toList();
+        return new UserSearchResponseDto(users, result.complete());
     }
     
     /**
-     * Obtener un usuario por ID
+     * Buscar usuarios con nombre o email parecido a la consulta (tolerante a errores de escritura)
+     * en el índice de trigramas en memoria
+     * @param query Texto a buscar, sin distinguir mayúsculas
+     * @param limit Máximo de usuarios solicitado; se recorta a users.search.max-limit
+     * @return Usuarios más parecidos primero, con su similitud
+     * @throws IllegalArgumentException si la consulta está vacía o es demasiado larga, o el límite no es válido
+     */
+    public UserFuzzySearchResponseDto fuzzySearchUsers(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("El parámetro query es obligatorio");
+        }
+        if (query.length() > maxQueryLength) {
+            throw new IllegalArgumentException("El parámetro query no puede superar " + maxQueryLength + " caracteres");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("El parámetro limit debe ser mayor que 0");
+        }
+        UserTrigramIndex.SearchResult result = trigramIndex.search(query, Math.min(limit, maxSearchLimit));
+        List<UserSearchMatchDto> users = result.matches().stream()
+                .map(match -> new UserSearchMatchDto(match.user().id(), match.user().username(),
+                        match.user().email(), match.similarity()))
+                .toList();
+        return new UserFuzzySearchResponseDto(users, result.complete());
+    }
+    
+    /**
+     * Exportar todos los usuarios en orden de ID, entregándolos uno a uno a medida que se leen
+     * @param sink Consumidor que recibe cada usuario (por ejemplo, el que escribe la respuesta)
+     * @return Número de usuarios exportados
+     */
+    @Transactional(readOnly = true)
+    public long exportUsers(Consumer<UserResponseDto> sink) {
+        long exported = 0;
+        // La consulta proyecta directamente al DTO, así que no hay entidades que retener ni desvincular
+        try (Stream<UserResponseDto> users = userRepository.streamAllResponses()) {
+            Iterator<UserResponseDto> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                sink.accept(iterator.next());
+                exported++;
+            }
+        }
+        return exported;
+    }
+    
+    /**
+     * Obtener un usuario por ID (consulta primero la caché en memoria)
      * @param id ID del usuario
      * @return DTO del usuario encontrado
      * @throws UserNotFoundException si no se encuentra el usuario
+     * @throws LookupTimeoutException si otra petición está cargando el mismo ID y no termina a tiempo
      */
     public UserResponseDto getUserById(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new UserNotFoundException(id));
-        return userMapper.toResponseDto(user);
+        // Sin transacción a este nivel: un acierto de caché no debe abrir una conexión.
+        // La consulta de proyección es de solo lectura en el repositorio.
+        UserResponseDto cached = userCache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        // Ante un fallo de caché, las peticiones concurrentes del mismo ID comparten una sola carga
+        return singleFlight.execute(LOOKUP_BY_ID, id, key -> userCache.get(key, this::loadUserById));
+    }
+    
+    private UserResponseDto loadUserById(Long id) {
+        ReadYourWrites.takeReplicaRead();
+        Optional<UserResponseDto> user = userRepository.findResponseById(id);
+        // Una réplica con retraso puede no tener aún un usuario recién creado: el fallo se confirma en el
+        // primario antes de que la caché lo registre como inexistente
+        if (user.isEmpty() && ReadYourWrites.takeReplicaRead()) {
+            user = ReadYourWrites.onPrimary(() -> userRepository.findResponseById(id));
+        }
+        return user.orElseThrow(() -> new UserNotFoundException(id));
+    }
+    
+    /**
+     * Obtener varios usuarios por ID. Los que están en caché no se consultan; el resto se lee con
+     * consultas IN por bloques. Los IDs inexistentes se informan sin hacer fallar la petición.
+     * @param ids IDs de los usuarios (puede haber repetidos)
+     * @return Usuarios encontrados e IDs inexistentes, ambos en el orden de la petición
+     */
+    public UserLookupResponseDto getUsersByIds(List<Long> ids) {
+        // Igual que getUserById: sin transacción, cada bloque IN es una consulta de solo lectura
+        LinkedHashSet<Long> distinct = new LinkedHashSet<>(ids);
+        Map<Long, UserResponseDto> found = userCache.getAll(distinct, this::loadUsersByIds);
+        List<UserResponseDto> users = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinct) {
+            UserResponseDto user = found.get(id);
+            if (user != null) {
+                users.add(user);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new UserLookupResponseDto(users, missing);
+    }
+    
+    private Map<Long, UserResponseDto> loadUsersByIds(Collection<Long> ids) {
+        ReadYourWrites.takeReplicaRead();
+        Map<Long, UserResponseDto> loaded = new HashMap<>();
+        loadChunks(ids, loaded);
+        // Igual que loadUserById: los IDs que no devolvió una réplica se confirman en el primario
+        if (loaded.size() < ids.size() && ReadYourWrites.takeReplicaRead()) {
+            List<Long> absent = ids.stream().filter(id -> !loaded.containsKey(id)).toList();
+            ReadYourWrites.onPrimary(() -> loadChunks(absent, loaded));
+        }
+        return loaded;
+    }
+    
+    private Map<Long, UserResponseDto> loadChunks(Collection<Long> ids, Map<Long, UserResponseDto> loaded) {
+        List<Long> pending = new ArrayList<>(ids);
+        for (int from = 0; from < pending.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = pending.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, pending.size()));
+            userRepository.findResponsesByIdIn(chunk).forEach(user -> loaded.put(user.getId(), user));
+        }
+        return loaded;
     }
     
     /**
@@ -62,8 +337,20 @@ public class UserService {
      * @throws UserNotFoundException si no se encuentra el usuario
      */
     public void deleteUser(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new UserNotFoundException(id));
-        userRepository.delete(user);
+        // Un único DELETE que devuelve el active de la fila eliminada: indica si existía y qué contador
+        // descontar sin leer antes la fila. El evento DELETED se inserta en la misma transacción
+        boolean active = transactionTemplate.execute(status -> {
+            boolean removedActive = userRepository.deleteUserReturningActive(id)
+                    .orElseThrow(() -> new UserNotFoundException(id));
+            userEventRepository.insertDeletedEvent(id, removedActive);
+            return removedActive;
+        });
+        activeCounts.recordDeleted(active, 1);
+        userCache.markDeleted(id);
+        uniquenessFilter.recordRemovals(1);
+        prefixIndex.remove(id);
+        trigramIndex.remove(id);
+        ReadYourWrites.recordWrite();
+        userEventLog.wakeUp();
     }
 }
@@ -0,0 +1,321 @@
+package com.ditech.backend.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import com.ditech.backend.dto.UserBatchCreateResponseDto;
+import com.ditech.backend.dto.UserBatchItemResultDto;
+import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserWriteStatusDto;
+import com.ditech.backend.exception.UserAlreadyExistsException;
+import com.ditech.backend.exception.WriteQueueFullException;
+import com.ditech.backend.exception.WriteStatusNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Altas asíncronas (write-behind) para POST /users cuando users.write-behind.enabled=true.
+ * Cada alta se valida, reserva su username y email en memoria y queda en una cola acotada sin
+ * bloqueos; la petición recibe un ID de seguimiento sin esperar a la base de datos. Un único hilo
+ * escritor vacía la cola en lotes de hasta users.write-behind.batch-size altas (group commit), que
+ * inserta UserBatchService. Con la cola llena se responde 503. Al detener la aplicación se dejan de
+ * aceptar altas y se escribe todo lo pendiente antes de cerrar el pool de conexiones.
+ *
+ * El estado de cada alta (PENDING, CREATED, CONFLICT o FAILED) se conserva durante
+ * users.write-behind.status-ttl. Un usuario aceptado no es visible en GET /users/{id} hasta que su
+ * lote se confirma.
+ */
+@Service
+public class UserWriteBehindService implements SmartLifecycle {
+    
+    private static final Logger log = LoggerFactory.getLogger(UserWriteBehindService.class);
+    
+    /**
+     * Arranca antes y se detiene después que el servidor web (fase menor), de modo que al vaciar
+     * la cola ya no pueden llegar altas nuevas
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    
+    private final UserService userService;
+    private final UserBatchService userBatchService;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Duration shutdownTimeout;
+    
+    private final Queue<PendingCreate> queue = new ConcurrentLinkedQueue<>();
+    
+    /** Huecos reservados por altas aceptadas y aún no tomadas por el escritor; acota la cola con CAS */
+    private final AtomicInteger depth = new AtomicInteger();
+    
+    /**
+     * Altas ya encoladas (se incrementa después de offer) y aún no tomadas; el escritor decide con
+     * este contador cuándo esperar y cuándo está lleno el lote, así que nunca cuenta un alta que aún
+     * no puede sacar de la cola. Puede quedar negativo un instante si el escritor toma un alta antes
+     * de que submit la cuente
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    private final Set<String> reservedUsernames = ConcurrentHashMap.newKeySet();
+    private final Set<String> reservedEmails = ConcurrentHashMap.newKeySet();
+    
+    private final Cache<String, UserWriteStatusDto> statuses;
+    
+    private final Counter rejected;
+    private final DistributionSummary batchSizes;
+    private final Timer commitLatency;
+    private final Timer writeLag;
+    
+    private volatile boolean running;
+    private volatile Thread writer;
+    
+    public UserWriteBehindService(UserService userService,
+                                  UserBatchService userBatchService,
+                                  @Value("${users.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${users.write-behind.queue-capacity:10000}") int capacity,
+                                  @Value("${users.write-behind.batch-size:500}") int batchSize,
+                                  @Value("${users.write-behind.linger:5ms}") Duration linger,
+                                  @Value("${users.write-behind.status-maximum-size:100000}") long statusMaximumSize,
+                                  @Value("${users.write-behind.status-ttl:10m}") Duration statusTtl,
+                                  @Value("${users.write-behind.shutdown-timeout:30s}") Duration shutdownTimeout,
+                                  MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.userBatchService = userBatchService;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.lingerNanos = linger.toNanos();
+        this.shutdownTimeout = shutdownTimeout;
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(statusMaximumSize)
+                .expireAfterWrite(statusTtl)
+                .build();
+        Gauge.builder("users.writebehind.queue.depth", depth, AtomicInteger::get)
+                .description("Altas aceptadas pendientes de escribir")
+                .register(meterRegistry);
+        Gauge.builder("users.writebehind.queue.capacity", this, s -> s.capacity)
+                .description("Capacidad de la cola de altas asíncronas")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("users.writebehind.rejected")
+                .description("Altas asíncronas rechazadas con 503 por la cola llena o detenida")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("users.writebehind.batch.size")
+                .description("Altas escritas por lote")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.commitLatency = Timer.builder("users.writebehind.commit")
+                .description("Duración de la escritura y confirmación de cada lote")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.writeLag = Timer.builder("users.writebehind.lag")
+                .description("Tiempo desde que se acepta un alta hasta que se confirma")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Aceptar un alta para escribirla en segundo plano
+     * @param request Usuario a crear, ya validado
+     * @return Estado PENDING con el ID de seguimiento
+     * @throws UserAlreadyExistsException si el username o el email ya existen o están reservados por otra alta pendiente
+     * @throws WriteQueueFullException si la cola está llena o detenida
+     */
+    public UserWriteStatusDto submit(UserCreateRequestDto request) {
+        reserve(request);
+        try {
+            userService.checkUniqueness(request);
+            if (!tryReserve()) {
+                rejected.increment();
+                throw new WriteQueueFullException("La cola de escritura está llena (máximo " + capacity + " altas pendientes)");
+            }
+            // Comprobación posterior a la reserva: o el escritor ve esta alta o la petición ve la parada
+            if (!running) {
+                depth.decrementAndGet();
+                rejected.increment();
+                throw new WriteQueueFullException("La cola de escritura está detenida");
+            }
+        } catch (RuntimeException ex) {
+            release(request);
+            throw ex;
+        }
+        
+        String trackingId = UUID.randomUUID().toString();
+        UserWriteStatusDto status = UserWriteStatusDto.pending(trackingId);
+        statuses.put(trackingId, status);
+        queue.offer(new PendingCreate(trackingId, request, System.nanoTime()));
+        // Se cuenta después de encolar y se decide con el valor anterior y no releyendo queued: si dos altas
+        // incrementan a la vez, las dos leerían 2 y ninguna despertaría a un escritor parado con la cola vacía
+        int previous = queued.getAndIncrement();
+        if (previous == 0 || previous + 1 == batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return status;
+    }
+    
+    /**
+     * Obtener el estado de un alta asíncrona
+     * @param trackingId ID de seguimiento devuelto al aceptarla
+     * @return Estado actual del alta
+     * @throws WriteStatusNotFoundException si el ID no existe o su estado ha expirado
+     */
+    public UserWriteStatusDto getStatus(String trackingId) {
+        UserWriteStatusDto status = statuses.getIfPresent(trackingId);
+        if (status == null) {
+            throw new WriteStatusNotFoundException(trackingId);
+        }
+        return status;
+    }
+    
+    private void reserve(UserCreateRequestDto request) {
+        if (!reservedUsernames.add(request.getUsername())) {
+            throw new UserAlreadyExistsException("El nombre de usuario ya existe: " + request.getUsername());
+        }
+        if (!reservedEmails.add(request.getEmail())) {
+            reservedUsernames.remove(request.getUsername());
+            throw new UserAlreadyExistsException("El email ya existe: " + request.getEmail());
+        }
+    }
+    
+    private void release(UserCreateRequestDto request) {
+        reservedUsernames.remove(request.getUsername());
+        reservedEmails.remove(request.getEmail());
+    }
+    
+    /**
+     * Reservar un hueco en la cola
+     * @return false si la cola está llena
+     */
+    private boolean tryReserve() {
+        int current;
+        do {
+            current = depth.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!depth.compareAndSet(current, current + 1));
+        return true;
+    }
+    
+    private void drain() {
+        List<PendingCreate> batch = new ArrayList<>(batchSize);
+        // Al detenerse se sigue mientras queden reservas: una alta que vio running puede estar aún encolándose
+        while (running || depth.get() > 0) {
+            if (running && queued.get() <= 0) {
+                // Sin altas pendientes se espera a que submit despierte al escritor
+                LockSupport.park(this);
+                continue;
+            }
+            // Group commit: desde la primera alta se espera hasta linger a que el lote se llene. parkNanos puede
+            // volver antes de tiempo (un unpark anterior al park o un despertar espurio), así que se repite
+            long deadline = System.nanoTime() + lingerNanos;
+            long remaining;
+            while (running && queued.get() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            PendingCreate next;
+            while (batch.size() < batchSize && (next = queue.poll()) != null) {
+                batch.add(next);
+            }
+            if (!batch.isEmpty()) {
+                queued.addAndGet(-batch.size());
+                depth.addAndGet(-batch.size());
+                write(batch);
+                batch.clear();
+            } else if (!running) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+    
+    private void write(List<PendingCreate> batch) {
+        long start = System.nanoTime();
+        try {
+            // Con batch-size <= users.batch.chunk-size el lote se confirma en una sola transacción
+            UserBatchCreateResponseDto result = userBatchService.createUsers(
+                    batch.stream().map(PendingCreate::request).toList());
+            long committed = System.nanoTime();
+            commitLatency.record(committed - start, TimeUnit.NANOSECONDS);
+            for (UserBatchItemResultDto item : result.getResults()) {
+                PendingCreate pending = batch.get(item.getIndex());
+                boolean created = item.getStatus() == UserBatchItemResultDto.Status.CREATED;
+                statuses.put(pending.trackingId(), new UserWriteStatusDto(pending.trackingId(),
+                        created ? UserWriteStatusDto.Status.CREATED : UserWriteStatusDto.Status.CONFLICT,
+                        item.getUser(), item.getMessage()));
+                writeLag.record(committed - pending.acceptedAt(), TimeUnit.NANOSECONDS);
+            }
+        } catch (RuntimeException ex) {
+            log.error("No se pudo escribir un lote de {} altas asíncronas", batch.size(), ex);
+            batch.forEach(pending -> statuses.put(pending.trackingId(), new UserWriteStatusDto(pending.trackingId(),
+                    UserWriteStatusDto.Status.FAILED, null, "Error al escribir el usuario")));
+        } finally {
+            batchSizes.record(batch.size());
+            batch.forEach(pending -> release(pending.request()));
+        }
+    }
+    
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform().name("user-write-behind").daemon().start(this::drain);
+    }
+    
+    @Override
+    public void stop() {
+        Thread current = writer;
+        running = false;
+        if (current == null) {
+            return;
+        }
+        LockSupport.unpark(current);
+        try {
+            if (!current.join(shutdownTimeout)) {
+                log.warn("Quedan {} altas asíncronas sin escribir al detener la aplicación", depth.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+    
+    private record PendingCreate(String trackingId, UserCreateRequestDto request, long acceptedAt) {
+    }
+}
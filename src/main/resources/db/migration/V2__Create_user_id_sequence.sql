@@ -0,0 +1,12 @@
+-- Secuencia para asignar IDs de usuario por bloques.
+-- Con IDENTITY Hibernate necesita un INSERT por fila para conocer el ID y no puede agrupar
+-- inserciones en lotes JDBC. Con una secuencia de incremento 50 (optimizador pooled) se reservan
+-- 50 IDs por consulta y los INSERT se envían en lote.
+CREATE SEQUENCE users_seq START WITH 1 INCREMENT BY 50;
+
+-- Continuar por encima de los IDs ya existentes
+ALTER SEQUENCE users_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM users);
+
+-- Las inserciones que no pasen por Hibernate también toman el ID de la secuencia
+ALTER TABLE users ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE users ALTER COLUMN id SET DEFAULT NEXT VALUE FOR users_seq;
@@ -0,0 +1,5 @@
+-- Índice compuesto (active, id) para paginar por keyset los usuarios activos o inactivos:
+-- WHERE active = ? AND id > ? ORDER BY id se resuelve recorriendo el índice en orden, sin
+-- ordenar ni descartar filas, y GROUP BY active para reconciliar los contadores no lee la tabla.
+DROP INDEX idx_users_active;
+CREATE INDEX idx_users_active ON users(active, id);
@@ -0,0 +1,20 @@
+-- Outbox de cambios de usuarios. Cada alta o baja escribe su evento en la misma transacción que el
+-- cambio. El offset no es el id: lo asigna después un único publicador, por orden de confirmación, de
+-- modo que un consumidor que lee WHERE event_offset > ? nunca se salta un evento confirmado más tarde
+-- con un id menor. Los eventos aún sin offset tienen event_offset NULL.
+CREATE TABLE user_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_offset BIGINT,
+    event_type VARCHAR(16) NOT NULL,
+    user_id BIGINT NOT NULL,
+    username VARCHAR(255),
+    email VARCHAR(255),
+    active BOOLEAN,
+    occurred_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Lectura de los consumidores por offset; UNIQUE impide que dos instancias asignen el mismo
+CREATE UNIQUE INDEX idx_user_events_offset ON user_events(event_offset);
+
+-- Purga por antigüedad
+CREATE INDEX idx_user_events_occurred_at ON user_events(occurred_at);
@@ -0,0 +1,130 @@
+package com.ditech.backend.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void tryAcquire_ShouldRejectAboveLimit_UntilReleased() {
+        // Given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 1.5, 0.2, 0.9, WINDOW, 10, clock::get);
+
+        // When & Then
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release();
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.inflight());
+    }
+
+    @Test
+    void release_ShouldLowerLimit_WhenLatencyRisesAboveTolerance() {
+        // Given - un minuto usando el límite entero con una latencia estable de 10 ms
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 10, 1000, 1.5, 0.2, 0.9, WINDOW, 10, clock::get);
+        runWindows(limit, 60, 10, 100);
+        int steady = limit.limit();
+
+        // When - la base de datos se ralentiza y la latencia se multiplica por 5
+        for (int w = 0; w < 15; w++) {
+            runWindows(limit, 1, 50, limit.limit());
+        }
+
+        // Then - el límite baja mientras la media larga de la latencia se adapta a la nueva situación
+        assertTrue(steady > 100);
+        assertTrue(limit.limit() < steady / 2, "límite " + limit.limit() + " tras estable " + steady);
+        assertTrue(limit.limit() >= 10);
+    }
+
+    @Test
+    void release_ShouldProbeUpwards_WhileLatencyIsStableAndLimitIsUsed() {
+        // Given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 10, 1000, 1.5, 0.2, 0.9, WINDOW, 10, clock::get);
+
+        // When
+        runWindows(limit, 5, 10, 100);
+
+        // Then - cada ventana suma una fracción de √límite
+        assertTrue(limit.limit() > 100);
+    }
+
+    @Test
+    void release_ShouldKeepLimit_WhenApplicationDoesNotUseIt() {
+        // Given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 10, 1000, 1.5, 0.2, 0.9, WINDOW, 10, clock::get);
+
+        // When - como mucho 5 peticiones en vuelo, aunque la latencia cambie
+        runWindows(limit, 3, 10, 5);
+        runWindows(limit, 3, 100, 5);
+
+        // Then
+        assertEquals(100, limit.limit());
+    }
+
+    @Test
+    void releaseDropped_ShouldBackOffOncePerWindow_WhenRequestsFail() {
+        // Given - límite estable en 100
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 10, 1000, 1.5, 0.2, 0.5, WINDOW, 10, clock::get);
+
+        // When - una ventana entera de timeouts, sin ninguna muestra de latencia
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire();
+            limit.releaseDropped();
+        }
+        clock.addAndGet(WINDOW);
+        limit.tryAcquire();
+        limit.releaseDropped();
+
+        // Then - la ventana se cierra con el último fallo y el límite baja a la mitad una sola vez
+        assertEquals(50, limit.limit());
+        assertEquals(0, limit.inflight());
+    }
+
+    @Test
+    void releaseDropped_ShouldNotGoBelowMinLimit() {
+        // Given
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 10, 1000, 1.5, 0.2, 0.5, WINDOW, 1, clock::get);
+
+        // When
+        for (int w = 0; w < 5; w++) {
+            clock.addAndGet(WINDOW);
+            limit.tryAcquire();
+            limit.releaseDropped();
+        }
+
+        // Then
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    void constructor_ShouldRejectInvalidLimits() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimit(5, 10, 100, 1.5, 0.2, 0.9, WINDOW, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimit(50, 10, 100, 0.9, 0.2, 0.9, WINDOW, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimit(50, 10, 100, 1.5, 0.2, 0, WINDOW, 10));
+    }
+
+    /**
+     * Completa ventanas de 20 peticiones con la latencia y el máximo en vuelo indicados
+     */
+    private void runWindows(AdaptiveConcurrencyLimit limit, int windows, long rttMillis, int inflight) {
+        for (int w = 0; w < windows; w++) {
+            for (int i = 0; i < 20; i++) {
+                limit.tryAcquire();
+                limit.release(TimeUnit.MILLISECONDS.toNanos(rttMillis), inflight);
+            }
+            clock.addAndGet(WINDOW);
+        }
+    }
+}
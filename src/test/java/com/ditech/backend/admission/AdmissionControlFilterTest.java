@@ -0,0 +1,175 @@
+package com.ditech.backend.admission;
+
+import com.ditech.backend.admission.AdmissionControlFilter.EndpointClass;
+import com.ditech.backend.exception.ErrorResponse;
+import com.ditech.backend.exception.EventStreamLimitException;
+import com.ditech.backend.exception.GlobalExceptionHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AdaptiveConcurrencyLimit readLimit;
+    private AdaptiveConcurrencyLimit writeLimit;
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        readLimit = new AdaptiveConcurrencyLimit(1, 1, 10, 1.5, 0.2, 0.9, TimeUnit.SECONDS.toNanos(1), 10);
+        writeLimit = new AdaptiveConcurrencyLimit(1, 1, 10, 1.5, 0.2, 0.9, TimeUnit.SECONDS.toNanos(1), 10);
+        filter = new AdmissionControlFilter(Map.of(EndpointClass.READ, readLimit, EndpointClass.WRITE, writeLimit),
+                Duration.ofMillis(1500), new ObjectMapper().registerModule(new JavaTimeModule()), meterRegistry);
+    }
+
+    @Test
+    void doFilter_ShouldRejectWith503AndRetryAfter_WhenLimitIsFull() throws Exception {
+        // Given - el único hueco de lectura está ocupado
+        assertTrue(readLimit.tryAcquire());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        filter.doFilter(new MockHttpServletRequest("GET", "/users/1"), response, chain);
+
+        // Then
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+        assertEquals("2", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("El servicio está saturado"));
+        assertNull(chain.getRequest());
+        assertEquals(1.0, meterRegistry.get("users.admission.rejected").tag("class", "read").counter().count());
+        assertEquals(0.0, meterRegistry.get("users.admission.rejected").tag("class", "write").counter().count());
+    }
+
+    @Test
+    void doFilter_ShouldAdmitWrites_WhenOnlyReadLimitIsFull() throws Exception {
+        // Given
+        assertTrue(readLimit.tryAcquire());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        filter.doFilter(new MockHttpServletRequest("POST", "/users"), response, chain);
+
+        // Then - cada clase tiene su propio límite y el hueco se libera al terminar
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertEquals(0, writeLimit.inflight());
+    }
+
+    @Test
+    void doFilter_ShouldAlwaysAdmitActuator() throws Exception {
+        // Given
+        assertTrue(readLimit.tryAcquire());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // When
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), response, chain);
+
+        // Then
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertEquals(1, readLimit.inflight());
+    }
+
+    @Test
+    void doFilter_ShouldReleaseSlot_WhenChainThrows() {
+        // Given
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                throw new IllegalStateException("fallo");
+            }
+        };
+
+        // When & Then
+        assertThrows(IllegalStateException.class,
+                () -> filter.doFilter(new MockHttpServletRequest("GET", "/users"), new MockHttpServletResponse(), chain));
+        assertEquals(0, readLimit.inflight());
+    }
+
+    @Test
+    void doFilter_ShouldLowerLimit_WhenDatabaseIsUnavailable() throws Exception {
+        // Given - ventanas de una sola petición para que cada respuesta cierre la suya
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10, 1.5, 0.2, 0.5, 0, 1);
+        filter = filter(limit);
+
+        // When - la base de datos no da conexión a tiempo
+        filter.doFilter(new MockHttpServletRequest("GET", "/users/1"), new MockHttpServletResponse(),
+                handling(new CannotCreateTransactionException("Connection is not available, request timed out")));
+
+        // Then
+        assertEquals(4, limit.limit());
+        assertEquals(0, limit.inflight());
+    }
+
+    @Test
+    void doFilter_ShouldKeepLimit_WhenSubscriptionsAreRejectedByCapacity() throws Exception {
+        // Given - el máximo de suscriptores SSE está lleno y los clientes EventSource reconectan sin parar
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 10, 1.5, 0.2, 0.5, 0, 1);
+        filter = filter(limit);
+        MockFilterChain rejecting = handling(new EventStreamLimitException("Se ha alcanzado el máximo de suscripciones"));
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/users/events/stream"), response, rejecting);
+            assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, response.getStatus());
+        }
+
+        // Then - los 503 por capacidad propia no bajan el límite de lecturas
+        assertEquals(8, limit.limit());
+        assertEquals(0, limit.inflight());
+    }
+
+    /**
+     * Cadena que lanza la excepción y la resuelve con GlobalExceptionHandler, como DispatcherServlet
+     */
+    private static MockFilterChain handling(RuntimeException ex) {
+        GlobalExceptionHandler handler = new GlobalExceptionHandler();
+        return new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                ServletWebRequest webRequest = new ServletWebRequest((HttpServletRequest) request);
+                ResponseEntity<ErrorResponse> entity = ex instanceof EventStreamLimitException limitException
+                        ? handler.handleEventStreamLimitException(limitException, webRequest)
+                        : handler.handleConnectionUnavailableException(ex, webRequest);
+                ((HttpServletResponse) response).setStatus(entity.getStatusCode().value());
+            }
+        };
+    }
+
+    private AdmissionControlFilter filter(AdaptiveConcurrencyLimit readLimit) {
+        return new AdmissionControlFilter(Map.of(EndpointClass.READ, readLimit, EndpointClass.WRITE, writeLimit),
+                Duration.ofMillis(1500), new ObjectMapper().registerModule(new JavaTimeModule()), meterRegistry);
+    }
+
+    @Test
+    void classify_ShouldTreatLookupAsRead() {
+        assertEquals(EndpointClass.READ, AdmissionControlFilter.classify(new MockHttpServletRequest("GET", "/users")));
+        assertEquals(EndpointClass.READ, AdmissionControlFilter.classify(new MockHttpServletRequest("POST", "/users/lookup")));
+        assertEquals(EndpointClass.WRITE, AdmissionControlFilter.classify(new MockHttpServletRequest("POST", "/users")));
+        assertEquals(EndpointClass.WRITE, AdmissionControlFilter.classify(new MockHttpServletRequest("DELETE", "/users/1")));
+    }
+}
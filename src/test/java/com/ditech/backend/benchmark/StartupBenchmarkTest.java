@@ -0,0 +1,153 @@
+package com.ditech.backend.benchmark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tiempo hasta la primera petición correcta (GET /users?limit=1 con 200) arrancando el jar empaquetado
+ * en un proceso nuevo, en cada modo disponible:
+ * - default: java -jar
+ * - startup: perfil startup (springdoc y consola H2 en su primer uso, sin validación de Hibernate)
+ * - aot: jar extraído con Spring AOT y perfil startup (requiere mvn -Pfast-startup package)
+ * - aot+cds: lo anterior más el archivo CDS del arranque de entrenamiento
+ * Cada arranque se mide desde que se lanza el proceso; también se muestra el "Started ... in" de Spring Boot.
+ * No se ejecuta con mvn test; se lanza después de empaquetar con:
+ * mvn test -Dtest=StartupBenchmarkTest -Dbenchmark=true [-Dbenchmark.startup.runs=5]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StartupBenchmarkTest {
+
+    private static final int RUNS = Integer.getInteger("benchmark.startup.runs", 5);
+    private static final Duration TIMEOUT = Duration.ofSeconds(Integer.getInteger("benchmark.startup.timeout", 120));
+    private static final Path JAR = Path.of(System.getProperty("benchmark.startup.jar", "target/backend-0.0.1-SNAPSHOT.jar"));
+    private static final Path FAST_STARTUP_DIR = Path.of(System.getProperty("benchmark.startup.fast-startup-dir", "target/fast-startup"));
+    private static final Pattern STARTED = Pattern.compile("Started \\S+ in ([0-9.]+) seconds");
+
+    @Test
+    void compareStartupModes_TimeToFirstSuccessfulRequest() throws Exception {
+        assertTrue(Files.exists(JAR), "No existe " + JAR + ": ejecutar antes mvn package");
+        Path fastStartupJar = FAST_STARTUP_DIR.resolve(JAR.getFileName());
+
+        List<Mode> modes = new ArrayList<>();
+        modes.add(new Mode("default", JAR, List.of()));
+        modes.add(new Mode("startup", JAR, List.of("-Dspring.profiles.active=startup")));
+        if (Files.exists(fastStartupJar)) {
+            modes.add(new Mode("aot", fastStartupJar,
+                    List.of("-Dspring.aot.enabled=true", "-Dspring.profiles.active=startup")));
+        }
+        if (Files.exists(FAST_STARTUP_DIR.resolve("application.jsa"))) {
+            modes.add(new Mode("aot+cds", fastStartupJar, List.of("-XX:SharedArchiveFile=application.jsa",
+                    "-Dspring.aot.enabled=true", "-Dspring.profiles.active=startup")));
+        }
+
+        List<Result> results = new ArrayList<>();
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build()) {
+            for (Mode mode : modes) {
+                results.add(run(client, mode));
+            }
+        }
+
+        System.out.println();
+        System.out.printf("Tiempo hasta la primera petición correcta, %d arranques por modo%n", RUNS);
+        System.out.printf("%-9s %12s %12s %12s %16s%n", "modo", "min ms", "mediana ms", "max ms", "started med ms");
+        results.forEach(Result::print);
+
+        assertFalse(results.isEmpty());
+    }
+
+    private Result run(HttpClient client, Mode mode) throws Exception {
+        long[] firstRequest = new long[RUNS];
+        long[] started = new long[RUNS];
+        Path logs = Files.createDirectories(Path.of("target", "startup-benchmark"));
+        for (int i = 0; i < RUNS; i++) {
+            int port = freePort();
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(mode.jvmArgs());
+            command.addAll(List.of("-jar", mode.jar().getFileName().toString(), "--server.port=" + port));
+            Path log = logs.resolve(mode.name().replace('+', '-') + "-" + i + ".log");
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .directory(mode.jar().toAbsolutePath().getParent().toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(log.toFile())
+                    .start();
+            try {
+                awaitFirstSuccessfulRequest(client, port, process);
+                firstRequest[i] = System.nanoTime() - start;
+            } finally {
+                process.destroy();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+            Matcher matcher = STARTED.matcher(Files.readString(log));
+            started[i] = matcher.find() ? (long) (Double.parseDouble(matcher.group(1)) * 1e9) : -1;
+        }
+        return new Result(mode.name(), firstRequest, started);
+    }
+
+    private void awaitFirstSuccessfulRequest(HttpClient client, int port, Process process) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users?limit=1"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("La aplicación terminó al arrancar con código " + process.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Todavía no escucha en el puerto
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException("Sin respuesta correcta en " + TIMEOUT);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private record Mode(String name, Path jar, List<String> jvmArgs) {
+    }
+
+    private record Result(String mode, long[] firstRequest, long[] started) {
+
+        void print() {
+            long[] sorted = firstRequest.clone();
+            Arrays.sort(sorted);
+            long[] sortedStarted = started.clone();
+            Arrays.sort(sortedStarted);
+            System.out.printf("%-9s %12.0f %12.0f %12.0f %16.0f%n", mode, sorted[0] / 1e6,
+                    sorted[sorted.length / 2] / 1e6, sorted[sorted.length - 1] / 1e6,
+                    sortedStarted[sortedStarted.length / 2] / 1e6);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.ditech.backend.benchmark;
+
+import com.ditech.backend.BackendUserServiceApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara GET /users/{id} con hilos de plataforma y con hilos virtuales. Arranca la aplicación
+ * dos veces (una por modo) sobre bases H2 separadas, siembra usuarios y lanza peticiones con
+ * muchos clientes concurrentes. La caché de usuarios se desactiva para que cada petición
+ * llegue a JDBC, que es donde se bloquean los hilos, y el control de admisión, para que ninguna
+ * petición se rechace con 503 y se mida el modo de hilos y no el límite de concurrencia.
+ * No se ejecuta con mvn test; se lanza con:
+ * mvn test -Dtest=ThreadModeBenchmarkTest -Dbenchmark=true [-Dbenchmark.concurrency=1000]
+ * [-Dbenchmark.requests=50000] [-Dbenchmark.users=1000]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ThreadModeBenchmarkTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 1000);
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 50_000);
+    private static final int USERS = Integer.getInteger("benchmark.users", 1000);
+    private static final int WARMUP_REQUESTS = Math.max(REQUESTS / 10, 1000);
+
+    @Test
+    void compareThreadModes_OnGetUserById() throws Exception {
+        Result platform = run("platform", false);
+        Result virtual = run("virtual", true);
+
+        System.out.println();
+        System.out.printf("GET /users/{id}: %d peticiones, %d clientes concurrentes, %d usuarios%n",
+                REQUESTS, CONCURRENCY, USERS);
+        System.out.printf("%-9s %10s %9s %9s %9s %9s  %s%n",
+                "modo", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "estados");
+        platform.print();
+        virtual.print();
+
+        assertTrue(platform.statuses.containsKey(200) && virtual.statuses.containsKey(200));
+    }
+
+    private Result run(String mode, boolean virtualThreads) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(BackendUserServiceApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark-" + mode,
+                        "--spring.jpa.show-sql=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--users.cache.maximum-size=0",
+                        "--users.cache.missing-maximum-size=0",
+                        "--users.admission.enabled=false",
+                        "--logging.level.root=WARN");
+        try (HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build()) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port;
+            seed(client, baseUrl);
+            load(client, baseUrl, WARMUP_REQUESTS);
+            return load(client, baseUrl, REQUESTS).named(mode);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void seed(HttpClient client, String baseUrl) throws Exception {
+        StringBuilder body = new StringBuilder("{\"users\":[");
+        for (int i = 0; i < USERS; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"username\":\"bench").append(i)
+                    .append("\",\"email\":\"bench").append(i).append("@ejemplo.com\",\"active\":true}");
+        }
+        body.append("]}");
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/users/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertTrue(response.statusCode() == 200, "Siembra fallida: " + response.statusCode());
+    }
+
+    private Result load(HttpClient client, String baseUrl, int requests) throws Exception {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < CONCURRENCY; c++) {
+                clients.submit(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        long id = ThreadLocalRandom.current().nextLong(1, USERS + 1);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/users/" + id))
+                                .timeout(Duration.ofSeconds(60))
+                                .GET()
+                                .build();
+                        long sent = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        latencies[i] = System.nanoTime() - sent;
+                        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                    }
+                    return null;
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return new Result(null, requests * 1e9 / elapsed, latencies, counts);
+    }
+
+    private record Result(String mode, double throughput, long[] sortedLatencies, Map<Integer, Long> statuses) {
+
+        Result named(String mode) {
+            return new Result(mode, throughput, sortedLatencies, statuses);
+        }
+
+        double percentileMillis(double percentile) {
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+
+        void print() {
+            System.out.printf("%-9s %10.0f %9.2f %9.2f %9.2f %9.2f  %s%n", mode, throughput,
+                    percentileMillis(0.5), percentileMillis(0.99), percentileMillis(0.999),
+                    percentileMillis(1.0), statuses);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.ditech.backend.cache;
+
+import com.ditech.backend.exception.LookupTimeoutException;
+import com.ditech.backend.exception.UserNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SingleFlight singleFlight;
+    private AtomicInteger loads;
+    private CountDownLatch release;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        singleFlight = new SingleFlight(Duration.ofSeconds(5), meterRegistry);
+        loads = new AtomicInteger();
+        release = new CountDownLatch(1);
+    }
+
+    @Test
+    void execute_ShouldShareOneLoad_WhenSameKeyIsRequestedConcurrently() throws Exception {
+        // Given - la carga no termina hasta que todas las peticiones se han unido
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CALLERS)) {
+            // When
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("user-by-id", 1L, this::blockingLoad)));
+            }
+            awaitCalls(CALLERS);
+            release.countDown();
+
+            // Then
+            for (Future<String> result : results) {
+                assertEquals("usuario1", result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1.0, count("executed"));
+        assertEquals(CALLERS - 1.0, count("coalesced"));
+    }
+
+    @Test
+    void execute_ShouldShareException_WhenLoadFails() throws Exception {
+        // Given
+        UserNotFoundException failure = new UserNotFoundException(9L);
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            // When
+            Future<Object> leader = executor.submit(() -> singleFlight.execute("user-by-id", 9L, id -> {
+                awaitRelease();
+                throw failure;
+            }));
+            awaitCalls(1);
+            Future<Object> follower = executor.submit(() -> singleFlight.execute("user-by-id", 9L, id -> {
+                throw new AssertionError("La segunda petición no debe cargar");
+            }));
+            awaitCalls(2);
+            release.countDown();
+
+            // Then - ambas reciben la misma excepción
+            ExecutionException leaderError = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            ExecutionException followerError = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertSame(failure, leaderError.getCause());
+            assertSame(failure, followerError.getCause());
+        }
+    }
+
+    @Test
+    void execute_ShouldTimeOutWaiter_WhenLoadTakesTooLong() throws Exception {
+        // Given
+        singleFlight = new SingleFlight(Duration.ofMillis(50), meterRegistry);
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("user-by-id", 1L, this::blockingLoad));
+            awaitCalls(1);
+
+            // When & Then - la espera se corta, pero la carga original termina
+            assertThrows(LookupTimeoutException.class,
+                    () -> singleFlight.execute("user-by-id", 1L, this::blockingLoad));
+            release.countDown();
+            assertEquals("usuario1", leader.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1.0, count("timed_out"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void execute_ShouldLoadAgain_WhenPreviousLoadFinished() {
+        // Given
+        release.countDown();
+
+        // When
+        singleFlight.execute("user-by-id", 1L, this::blockingLoad);
+        singleFlight.execute("user-by-id", 1L, this::blockingLoad);
+
+        // Then - solo se agrupan las cargas en curso; no se guardan resultados
+        assertEquals(2, loads.get());
+        assertEquals(0.0, count("coalesced"));
+    }
+
+    @Test
+    void execute_ShouldNotShareLoads_WhenLookupNamesDiffer() {
+        // Given
+        release.countDown();
+
+        // When
+        String byId = singleFlight.execute("user-by-id", 1L, key -> "id" + key);
+        String byUsername = singleFlight.execute("user-by-username", 1L, key -> "username" + key);
+
+        // Then
+        assertEquals("id1", byId);
+        assertEquals("username1", byUsername);
+    }
+
+    private String blockingLoad(Long id) {
+        loads.incrementAndGet();
+        awaitRelease();
+        return "usuario" + id;
+    }
+
+    private void awaitRelease() {
+        try {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Espera a que el número de llamadas ejecutadas más agrupadas llegue al indicado */
+    private void awaitCalls(int calls) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count("executed") + count("coalesced") < calls) {
+            assertTrue(System.nanoTime() < deadline, "Las llamadas no llegaron a tiempo");
+            Thread.sleep(5);
+        }
+    }
+
+    private double count(String result) {
+        return meterRegistry.find("users.singleflight.calls").tag("result", result).counters().stream()
+                .mapToDouble(c -> c.count())
+                .sum();
+    }
+}
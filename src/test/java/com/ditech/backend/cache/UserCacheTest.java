@@ -0,0 +1,175 @@
+package com.ditech.backend.cache;
+
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.exception.UserNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserCache userCache;
+    private AtomicInteger loads;
+    private Function<Long, UserResponseDto> loader;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(100, Duration.ofMinutes(5), 100, Duration.ofMinutes(1), meterRegistry);
+        loads = new AtomicInteger();
+        loader = id -> {
+            loads.incrementAndGet();
+            UserResponseDto dto = new UserResponseDto();
+            dto.setId(id);
+            dto.setUsername("usuario" + id);
+            dto.setEmail("usuario" + id + "@ejemplo.com");
+            return dto;
+        };
+    }
+
+    @Test
+    void get_ShouldLoadOnlyOnce_WhenKeyIsRequestedTwice() {
+        UserResponseDto first = userCache.get(1L, loader);
+        UserResponseDto second = userCache.get(1L, loader);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void evict_ShouldForceReload_WhenUserWasCached() {
+        userCache.get(1L, loader);
+
+        userCache.evict(1L);
+
+        assertNull(userCache.getIfPresent(1L));
+        userCache.get(1L, loader);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_ShouldNotCacheFailures_WhenLoaderThrows() {
+        assertThrows(UserNotFoundException.class, () -> userCache.get(9L, id -> {
+            throw new UserNotFoundException(id);
+        }));
+
+        assertNull(userCache.getIfPresent(9L));
+    }
+
+    @Test
+    void get_ShouldAnswerFromNegativeCache_WhenIdWasMissing() {
+        AtomicInteger misses = new AtomicInteger();
+        Function<Long, UserResponseDto> notFound = id -> {
+            misses.incrementAndGet();
+            throw new UserNotFoundException(id);
+        };
+
+        assertThrows(UserNotFoundException.class, () -> userCache.get(9L, notFound));
+        assertThrows(UserNotFoundException.class, () -> userCache.get(9L, notFound));
+
+        assertEquals(1, misses.get());
+    }
+
+    @Test
+    void registerCreated_ShouldClearNegativeEntry_WhenIdIsInserted() {
+        assertThrows(UserNotFoundException.class, () -> userCache.get(9L, id -> {
+            throw new UserNotFoundException(id);
+        }));
+
+        userCache.registerCreated(9L);
+
+        assertEquals(9L, userCache.get(9L, loader).getId());
+    }
+
+    @Test
+    void get_ShouldNotMarkMissing_WhenInsertCommitsDuringLookup() {
+        // La búsqueda no encuentra el ID, pero mientras tanto se confirma su inserción
+        assertThrows(UserNotFoundException.class, () -> userCache.get(9L, id -> {
+            userCache.registerCreated(id);
+            throw new UserNotFoundException(id);
+        }));
+
+        assertEquals(9L, userCache.get(9L, loader).getId());
+    }
+
+    @Test
+    void markDeleted_ShouldEvictAndRememberMissing_WhenUserIsDeleted() {
+        userCache.get(1L, loader);
+
+        userCache.markDeleted(1L);
+
+        assertNull(userCache.getIfPresent(1L));
+        assertThrows(UserNotFoundException.class, () -> userCache.get(1L, loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getAll_ShouldLoadOnlyUncachedIds_WhenSomeAreCached() {
+        userCache.get(1L, loader);
+        AtomicInteger bulkLoads = new AtomicInteger();
+
+        Map<Long, UserResponseDto> found = userCache.getAll(List.of(1L, 2L, 3L), ids -> {
+            bulkLoads.incrementAndGet();
+            assertEquals(List.of(2L, 3L), List.copyOf(ids));
+            return loadAll(ids);
+        });
+
+        assertEquals(3, found.size());
+        assertEquals(1, bulkLoads.get());
+        assertNotNull(userCache.getIfPresent(2L));
+        assertNotNull(userCache.getIfPresent(3L));
+    }
+
+    @Test
+    void getAll_ShouldRememberMissing_WhenLoaderDoesNotReturnId() {
+        AtomicInteger bulkLoads = new AtomicInteger();
+        Function<Collection<Long>, Map<Long, UserResponseDto>> onlyFirst = ids -> {
+            bulkLoads.incrementAndGet();
+            return loadAll(ids.stream().filter(id -> id == 1L).toList());
+        };
+
+        userCache.getAll(List.of(1L, 9L), onlyFirst);
+        Map<Long, UserResponseDto> found = userCache.getAll(List.of(1L, 9L), onlyFirst);
+
+        assertEquals(Map.of(1L, found.get(1L)), found);
+        assertEquals(1, bulkLoads.get());
+        assertThrows(UserNotFoundException.class, () -> userCache.get(9L, loader));
+    }
+
+    @Test
+    void getAll_ShouldNotCacheResult_WhenUserIsDeletedDuringLoad() {
+        // La consulta lee el usuario, pero antes de guardarlo en caché se elimina
+        Map<Long, UserResponseDto> found = userCache.getAll(List.of(1L), ids -> {
+            Map<Long, UserResponseDto> loaded = loadAll(ids);
+            userCache.markDeleted(1L);
+            return loaded;
+        });
+
+        assertEquals(1, found.size());
+        assertNull(userCache.getIfPresent(1L));
+    }
+
+    @Test
+    void userNotFoundException_ShouldNotCaptureStackTrace_WhenCreatedForId() {
+        assertEquals(0, new UserNotFoundException(1L).getStackTrace().length);
+    }
+
+    private Map<Long, UserResponseDto> loadAll(Collection<Long> ids) {
+        return ids.stream().collect(Collectors.toMap(Function.identity(), loader));
+    }
+}
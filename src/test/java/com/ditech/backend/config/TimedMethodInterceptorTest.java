@@ -0,0 +1,71 @@
+package com.ditech.backend.config;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimedMethodInterceptorTest {
+
+    @Timed("test.service")
+    static class SampleService {
+
+        String greet(String name) {
+            return "hola " + name;
+        }
+
+        void fail() {
+            throw new IllegalStateException("fallo");
+        }
+    }
+
+    private SimpleMeterRegistry meterRegistry;
+    private SampleService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry));
+        ProxyFactory proxyFactory = new ProxyFactory(new SampleService());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvisor(new DefaultPointcutAdvisor(new AnnotationMatchingPointcut(Timed.class, true),
+                new TimedMethodInterceptor(beanFactory.getBeanProvider(MeterRegistry.class))));
+        service = (SampleService) proxyFactory.getProxy();
+    }
+
+    @Test
+    void invoke_ShouldRecordEachCallOnTheSameTimer_TaggedLikeTimedAspect() {
+        // When
+        service.greet("ana");
+        service.greet("bob");
+
+        // Then
+        Timer timer = meterRegistry.get("test.service")
+                .tag("class", SampleService.class.getName())
+                .tag("method", "greet")
+                .tag("exception", "none")
+                .timer();
+        assertEquals(2, timer.count());
+        assertEquals(1, meterRegistry.find("test.service").timers().size());
+    }
+
+    @Test
+    void invoke_ShouldTagExceptionAndRethrow_WhenMethodFails() {
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> service.fail());
+        assertEquals(1, meterRegistry.get("test.service")
+                .tag("method", "fail")
+                .tag("exception", "IllegalStateException")
+                .timer().count());
+    }
+}
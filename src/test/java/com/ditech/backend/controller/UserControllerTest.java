@@ -1,8 +1,27 @@
 package com.ditech.backend.controller;
 
+import com.ditech.backend.dto.UserBatchCreateRequestDto;
+import com.ditech.backend.dto.UserBatchCreateResponseDto;
+import com.ditech.backend.dto.UserBatchItemResultDto;
+import com.ditech.backend.dto.UserBulkDeleteRequestDto;
+import com.ditech.backend.dto.UserBulkDeleteResponseDto;
+import com.ditech.backend.dto.UserCountResponseDto;
 import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserFuzzySearchResponseDto;
+import com.ditech.backend.dto.UserLookupResponseDto;
+import com.ditech.backend.dto.UserPageResponseDto;
 import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.dto.UserSearchMatchDto;
+import com.ditech.backend.dto.UserSearchResponseDto;
+import com.ditech.backend.dto.UserWriteStatusDto;
+import com.ditech.backend.exception.LookupTimeoutException;
+import com.ditech.backend.exception.UserAlreadyExistsException;
+import com.ditech.backend.exception.UserNotFoundException;
+import com.ditech.backend.exception.WriteQueueFullException;
+import com.ditech.backend.exception.WriteStatusNotFoundException;
+import com.ditech.backend.service.UserBatchService;
 import com.ditech.backend.service.UserService;
+import com.ditech.backend.service.UserWriteBehindService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,14 +29,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.function.Consumer;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -32,6 +61,12 @@ class UserControllerTest {
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserBatchService userBatchService;
+
+    @MockBean
+    private UserWriteBehindService userWriteBehindService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -66,48 +101,200 @@ class UserControllerTest {
     }
 
     @Test
-    void getAllUsers_ShouldReturnListOfUsers_WhenServiceReturnsUsers() throws Exception {
+    void getAllUsers_ShouldReturnPageOfUsers_WhenServiceReturnsUsers() throws Exception {
         // Given
-        when(userService.getAllUsers()).thenReturn(mockUsersList);
+        UserPageResponseDto page = new UserPageResponseDto(mockUsersList, "aWQ6Mg", true);
+        when(userService.getAllUsers(null, null, 20)).thenReturn(page);
 
         // When & Then
         mockMvc.perform(get("/users")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$.length()").value(2))
-                .andExpect(jsonPath("$[0].id").value(1))
-                .andExpect(jsonPath("$[0].username").value("usuario1"))
-                .andExpect(jsonPath("$[0].email").value("usuario1@ejemplo.com"))
-                .andExpect(jsonPath("$[1].id").value(2))
-                .andExpect(jsonPath("$[1].username").value("usuario2"))
-                .andExpect(jsonPath("$[1].email").value("usuario2@ejemplo.com"));
-
-        // Verificar que se llamó al servicio
-        verify(userService, times(1)).getAllUsers();
+                .andExpect(jsonPath("$.items").isArray())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.items[0].username").value("usuario1"))
+                .andExpect(jsonPath("$.items[0].email").value("usuario1@ejemplo.com"))
+                .andExpect(jsonPath("$.items[1].id").value(2))
+                .andExpect(jsonPath("$.items[1].username").value("usuario2"))
+                .andExpect(jsonPath("$.items[1].email").value("usuario2@ejemplo.com"))
+                .andExpect(jsonPath("$.nextCursor").value("aWQ6Mg"))
+                .andExpect(jsonPath("$.hasMore").value(true));
+
+        // Verificar que se llamó al servicio con el límite por defecto
+        verify(userService, times(1)).getAllUsers(null, null, 20);
         verifyNoMoreInteractions(userService);
     }
 
     @Test
-    void getAllUsers_ShouldReturnEmptyList_WhenServiceReturnsEmptyList() throws Exception {
+    void getAllUsers_ShouldReturnEmptyPage_WhenServiceReturnsEmptyList() throws Exception {
         // Given
-        List<UserResponseDto> emptyList = Arrays.asList();
-        when(userService.getAllUsers()).thenReturn(emptyList);
+        UserPageResponseDto emptyPage = new UserPageResponseDto(Arrays.asList(), null, false);
+        when(userService.getAllUsers(null, null, 20)).thenReturn(emptyPage);
 
         // When & Then
         mockMvc.perform(get("/users")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$.length()").value(0));
+                .andExpect(jsonPath("$.items").isArray())
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andExpect(jsonPath("$.hasMore").value(false));
 
         // Verificar interacciones con el servicio
-        verify(userService, times(1)).getAllUsers();
+        verify(userService, times(1)).getAllUsers(null, null, 20);
+        verifyNoMoreInteractions(userService);
+    }
+
+    @Test
+    void getAllUsers_ShouldPassCursorAndLimit_WhenProvided() throws Exception {
+        // Given
+        UserPageResponseDto page = new UserPageResponseDto(mockUsersList, null, false);
+        when(userService.getAllUsers(null, "aWQ6MTA", 5)).thenReturn(page);
+
+        // When & Then
+        mockMvc.perform(get("/users")
+                .param("after", "aWQ6MTA")
+                .param("limit", "5")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        verify(userService, times(1)).getAllUsers(null, "aWQ6MTA", 5);
+        verifyNoMoreInteractions(userService);
+    }
+
+    @Test
+    void getAllUsers_ShouldReturnNotModified_WhenPageETagMatches() throws Exception {
+        // Given
+        UserPageResponseDto page = new UserPageResponseDto(mockUsersList, "aWQ6Mg", true);
+        when(userService.getAllUsers(null, null, 20)).thenReturn(page);
+        String etag = mockMvc.perform(get("/users"))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // When & Then
+        mockMvc.perform(get("/users").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getAllUsers_ShouldChangeETag_WhenPageContentChanges() throws Exception {
+        // Given
+        when(userService.getAllUsers(null, null, 20))
+                .thenReturn(new UserPageResponseDto(mockUsersList, "aWQ6Mg", true))
+                .thenReturn(new UserPageResponseDto(mockUsersList.subList(0, 1), null, false));
+        String before = mockMvc.perform(get("/users")).andReturn().getResponse().getHeader("ETag");
+
+        // When & Then: un usuario eliminado de la página invalida el ETag anterior
+        mockMvc.perform(get("/users").header("If-None-Match", before))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1));
+    }
+
+    @Test
+    void getAllUsers_ShouldReturnBadRequest_WhenCursorIsInvalid() throws Exception {
+        // Given
+        when(userService.getAllUsers(null, "basura", 20))
+                .thenThrow(new IllegalArgumentException("Cursor de paginación inválido: basura"));
+
+        // When & Then
+        mockMvc.perform(get("/users")
+                .param("after", "basura")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Cursor de paginación inválido: basura"));
+    }
+
+    @Test
+    void getAllUsers_ShouldFilterByActive_WhenActiveProvided() throws Exception {
+        // Given
+        UserResponseDto inactive = new UserResponseDto(4L, "usuario4", "usuario4@ejemplo.com");
+        inactive.setActive(false);
+        when(userService.getAllUsers(false, null, 20))
+                .thenReturn(new UserPageResponseDto(List.of(inactive), null, false));
+
+        // When & Then
+        mockMvc.perform(get("/users").param("active", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(4))
+                .andExpect(jsonPath("$.items[0].active").value(false));
+
+        verify(userService, times(1)).getAllUsers(false, null, 20);
+    }
+
+    @Test
+    void getAllUsers_ShouldReturnBadRequest_WhenActiveIsNotBoolean() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/users").param("active", "quizas"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Valor inválido para el parámetro active: quizas"));
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void countUsers_ShouldReturnCount_WithAndWithoutActiveFilter() throws Exception {
+        // Given
+        when(userService.countUsers(true)).thenReturn(new UserCountResponseDto(true, 7));
+        when(userService.countUsers(null)).thenReturn(new UserCountResponseDto(null, 9));
+
+        // When & Then
+        mockMvc.perform(get("/users/count").param("active", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active").value(true))
+                .andExpect(jsonPath("$.count").value(7));
+        mockMvc.perform(get("/users/count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(9));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportUsers_ShouldStreamNdjson_WhenUsersExist() throws Exception {
+        // Given
+        when(userService.exportUsers(any())).thenAnswer(inv -> {
+            Consumer<UserResponseDto> sink = inv.getArgument(0);
+            mockUsersList.forEach(sink);
+            return (long) mockUsersList.size();
+        });
+
+        // When
+        MvcResult mvcResult = mockMvc.perform(get("/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(
+                        "{\"id\":1,\"username\":\"usuario1\",\"email\":\"usuario1@ejemplo.com\"}\n"
+                        + "{\"id\":2,\"username\":\"usuario2\",\"email\":\"usuario2@ejemplo.com\"}\n"));
+
+        verify(userService, times(1)).exportUsers(any(Consumer.class));
         verifyNoMoreInteractions(userService);
     }
 
+    @Test
+    void exportUsers_ShouldReturnEmptyBody_WhenNoUsers() throws Exception {
+        // Given
+        when(userService.exportUsers(any())).thenReturn(0L);
+
+        // When
+        MvcResult mvcResult = mockMvc.perform(get("/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+
     @Test
     void createUser_ShouldReturnCreatedUser_WhenValidDataProvided() throws Exception {
         // Given
@@ -128,6 +315,117 @@ class UserControllerTest {
         verifyNoMoreInteractions(userService);
     }
 
+    @Test
+    void createUser_ShouldReadAndWriteSmile_WhenClientNegotiatesSmile() throws Exception {
+        // Given
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+        when(userService.createUser(any(UserCreateRequestDto.class))).thenReturn(mockUserResponse);
+
+        // When
+        MvcResult result = mockMvc.perform(post("/users")
+                .contentType(smile)
+                .accept(smile)
+                .content(smileMapper.writeValueAsBytes(mockCreateRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(smile))
+                .andReturn();
+
+        // Then
+        UserResponseDto created = smileMapper.readValue(result.getResponse().getContentAsByteArray(), UserResponseDto.class);
+        assertEquals("testuser", created.getUsername());
+        verify(userService).createUser(argThat(request -> "test@ejemplo.com".equals(request.getEmail())));
+    }
+
+    @Test
+    void getAllUsers_ShouldReturnCbor_WhenAcceptIsCbor() throws Exception {
+        // Given
+        when(userService.getAllUsers(null, null, 20)).thenReturn(new UserPageResponseDto(mockUsersList, "aWQ6Mg", true));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/users").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn();
+
+        // Then
+        UserPageResponseDto page = Jackson2ObjectMapperBuilder.cbor().build()
+                .readValue(result.getResponse().getContentAsByteArray(), UserPageResponseDto.class);
+        assertEquals(2, page.getItems().size());
+        assertEquals("usuario2", page.getItems().get(1).getUsername());
+        assertEquals("aWQ6Mg", page.getNextCursor());
+    }
+
+    @Test
+    void getUserById_ShouldReturnNotAcceptable_WhenFormatIsNotSupported() throws Exception {
+        // Given
+        when(userService.getUserById(1L)).thenReturn(mockUserResponse);
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L).accept(MediaType.parseMediaType("application/x-protobuf")))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void createUser_ShouldReturnAccepted_WhenWriteBehindIsEnabled() throws Exception {
+        // Given
+        when(userWriteBehindService.isEnabled()).thenReturn(true);
+        when(userWriteBehindService.submit(any(UserCreateRequestDto.class)))
+                .thenReturn(UserWriteStatusDto.pending("abc-123"));
+
+        // When & Then
+        mockMvc.perform(post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(mockCreateRequest)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/users/writes/abc-123"))
+                .andExpect(jsonPath("$.trackingId").value("abc-123"))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void createUser_ShouldReturnServiceUnavailable_WhenWriteQueueIsFull() throws Exception {
+        // Given
+        when(userWriteBehindService.isEnabled()).thenReturn(true);
+        when(userWriteBehindService.submit(any(UserCreateRequestDto.class)))
+                .thenThrow(new WriteQueueFullException("La cola de escritura está llena"));
+
+        // When & Then
+        mockMvc.perform(post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(mockCreateRequest)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void getWriteStatus_ShouldReturnStatus_WhenTrackingIdExists() throws Exception {
+        // Given
+        when(userWriteBehindService.getStatus("abc-123")).thenReturn(new UserWriteStatusDto(
+                "abc-123", UserWriteStatusDto.Status.CREATED, mockUserResponse, null));
+
+        // When & Then
+        mockMvc.perform(get("/users/writes/{trackingId}", "abc-123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CREATED"))
+                .andExpect(jsonPath("$.user.id").value(1))
+                .andExpect(jsonPath("$.message").doesNotExist());
+    }
+
+    @Test
+    void getWriteStatus_ShouldReturnNotFound_WhenTrackingIdIsUnknown() throws Exception {
+        // Given
+        when(userWriteBehindService.getStatus("desconocido"))
+                .thenThrow(new WriteStatusNotFoundException("desconocido"));
+
+        // When & Then
+        mockMvc.perform(get("/users/writes/{trackingId}", "desconocido"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void createUser_ShouldCallServiceCreateUser_WhenValidRequestReceived() throws Exception {
         // Given
@@ -193,6 +491,183 @@ class UserControllerTest {
         verify(userService, never()).createUser(any(UserCreateRequestDto.class));
     }
     
+    @Test
+    void createUser_ShouldReturnConflict_WhenUsernameAlreadyExists() throws Exception {
+        // Given
+        when(userService.createUser(any(UserCreateRequestDto.class)))
+                .thenThrow(new UserAlreadyExistsException("El nombre de usuario ya existe: testuser"));
+
+        // When & Then
+        mockMvc.perform(post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(mockCreateRequest)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.status").value(409))
+                .andExpect(jsonPath("$.message").value("El nombre de usuario ya existe: testuser"));
+    }
+
+    @Test
+    void createUsers_ShouldReturnPerItemResults_WhenBatchIsValid() throws Exception {
+        // Given
+        UserBatchCreateRequestDto batchRequest = new UserBatchCreateRequestDto();
+        batchRequest.setUsers(List.of(mockCreateRequest, mockCreateRequest));
+        UserBatchCreateResponseDto batchResponse = new UserBatchCreateResponseDto(1, 1, List.of(
+                UserBatchItemResultDto.created(0, mockUserResponse),
+                UserBatchItemResultDto.conflict(1, "Nombre de usuario repetido dentro del lote: testuser")));
+        when(userBatchService.createUsers(anyList())).thenReturn(batchResponse);
+
+        // When & Then
+        mockMvc.perform(post("/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batchRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.conflicts").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[0].user.id").value(1))
+                .andExpect(jsonPath("$.results[1].status").value("CONFLICT"))
+                .andExpect(jsonPath("$.results[1].index").value(1));
+
+        verify(userBatchService, times(1)).createUsers(anyList());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void createUsers_ShouldReturnBadRequest_WhenAnyItemIsInvalid() throws Exception {
+        // Given - el segundo elemento tiene un email inválido
+        UserCreateRequestDto invalid = new UserCreateRequestDto();
+        invalid.setUsername("otro");
+        invalid.setEmail("no-es-email");
+        invalid.setActive(true);
+        UserBatchCreateRequestDto batchRequest = new UserBatchCreateRequestDto();
+        batchRequest.setUsers(List.of(mockCreateRequest, invalid));
+
+        // When & Then
+        mockMvc.perform(post("/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batchRequest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.details[0]").value(startsWith("users[1].email")));
+
+        verify(userBatchService, never()).createUsers(anyList());
+    }
+
+    @Test
+    void getUserById_ShouldReturnUser_WhenUserExists() throws Exception {
+        // Given
+        when(userService.getUserById(1L)).thenReturn(mockUserResponse);
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.username").value("testuser"));
+
+        verify(userService, times(1)).getUserById(1L);
+        verifyNoMoreInteractions(userService);
+    }
+
+    @Test
+    void getUserById_ShouldReturnNotFound_WhenUserDoesNotExist() throws Exception {
+        // Given
+        when(userService.getUserById(999L)).thenThrow(new UserNotFoundException(999L));
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 999L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404))
+                .andExpect(jsonPath("$.message").value("Usuario no encontrado con ID: 999"))
+                .andExpect(jsonPath("$.path").value("/users/999"));
+    }
+
+    @Test
+    void getUserById_ShouldReturnValidators_WhenUserHasVersion() throws Exception {
+        // Given
+        mockUserResponse.setUpdatedAt(LocalDateTime.of(2024, 1, 20, 10, 30, 0, 123_456_000));
+        when(userService.getUserById(1L)).thenReturn(mockUserResponse);
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", startsWith("W/\"1-")))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(jsonPath("$.updatedAt").doesNotExist());
+    }
+
+    @Test
+    void getUserById_ShouldReturnNotModified_WhenIfNoneMatchMatchesCurrentVersion() throws Exception {
+        // Given
+        mockUserResponse.setUpdatedAt(LocalDateTime.of(2024, 1, 20, 10, 30));
+        when(userService.getUserById(1L)).thenReturn(mockUserResponse);
+        String etag = mockMvc.perform(get("/users/{id}", 1L))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getUserById_ShouldReturnNotModified_WhenNotModifiedSinceLastModified() throws Exception {
+        // Given
+        mockUserResponse.setUpdatedAt(LocalDateTime.of(2024, 1, 20, 10, 30));
+        when(userService.getUserById(1L)).thenReturn(mockUserResponse);
+        String lastModified = mockMvc.perform(get("/users/{id}", 1L))
+                .andReturn().getResponse().getHeader("Last-Modified");
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L).header("If-Modified-Since", lastModified))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getUserById_ShouldReturnUser_WhenIfNoneMatchIsStale() throws Exception {
+        // Given: el cliente tiene una versión anterior del usuario
+        mockUserResponse.setUpdatedAt(LocalDateTime.of(2024, 1, 20, 10, 30));
+        when(userService.getUserById(1L)).thenReturn(mockUserResponse);
+        String staleEtag = mockMvc.perform(get("/users/{id}", 1L))
+                .andReturn().getResponse().getHeader("ETag");
+        mockUserResponse.setUpdatedAt(LocalDateTime.of(2024, 1, 21, 8, 0));
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L).header("If-None-Match", staleEtag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    void getUserById_ShouldReturnServiceUnavailable_WhenNoConnectionIsAvailable() throws Exception {
+        // Given
+        when(userService.getUserById(1L)).thenThrow(
+                new CannotCreateTransactionException("Could not open JPA EntityManager for transaction"));
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.status").value(503))
+                .andExpect(jsonPath("$.path").value("/users/1"));
+    }
+
+    @Test
+    void getUserById_ShouldReturnServiceUnavailable_WhenCoalescedLookupTimesOut() throws Exception {
+        // Given
+        when(userService.getUserById(1L)).thenThrow(new LookupTimeoutException("user-by-id", 1L));
+
+        // When & Then
+        mockMvc.perform(get("/users/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
     @Test
     void deleteUser_ShouldReturnNoContent_WhenUserExists() throws Exception {
         // Given
@@ -224,4 +699,124 @@ class UserControllerTest {
         verify(userService, times(1)).deleteUser(userId);
         verifyNoMoreInteractions(userService);
     }
-}
\ No newline at end of file
+
+    @Test
+    void deleteUsers_ShouldDeleteListedIds_WhenIdsProvided() throws Exception {
+        // Given
+        UserBulkDeleteRequestDto bulkRequest = new UserBulkDeleteRequestDto();
+        bulkRequest.setIds(List.of(1L, 2L, 3L));
+        when(userBatchService.deleteUsers(List.of(1L, 2L, 3L))).thenReturn(new UserBulkDeleteResponseDto(3, 2));
+
+        // When & Then
+        mockMvc.perform(post("/users/bulk-delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(bulkRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requested").value(3))
+                .andExpect(jsonPath("$.deleted").value(2));
+
+        verify(userBatchService, times(1)).deleteUsers(List.of(1L, 2L, 3L));
+        verifyNoMoreInteractions(userBatchService);
+    }
+
+    @Test
+    void deleteUsers_ShouldPurgeInactiveUsers_WhenInactiveIsTrue() throws Exception {
+        // Given
+        when(userBatchService.deleteInactiveUsers()).thenReturn(new UserBulkDeleteResponseDto(0, 42));
+
+        // When & Then
+        mockMvc.perform(post("/users/bulk-delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"inactive\": true}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(42));
+
+        verify(userBatchService, times(1)).deleteInactiveUsers();
+        verifyNoMoreInteractions(userBatchService);
+    }
+
+    @Test
+    void deleteUsers_ShouldReturnBadRequest_WhenBothOrNoCriteriaProvided() throws Exception {
+        mockMvc.perform(post("/users/bulk-delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": [1], \"inactive\": true}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/users/bulk-delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userBatchService);
+    }
+
+    @Test
+    void getUsersByIds_ShouldReturnUsersInOrderAndMissingIds() throws Exception {
+        // Given
+        UserResponseDto third = new UserResponseDto(3L, "usuario3", "usuario3@ejemplo.com");
+        UserResponseDto first = new UserResponseDto(1L, "usuario1", "usuario1@ejemplo.com");
+        when(userService.getUsersByIds(List.of(3L, 2L, 1L)))
+                .thenReturn(new UserLookupResponseDto(List.of(third, first), List.of(2L)));
+
+        // When & Then
+        mockMvc.perform(post("/users/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": [3, 2, 1]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].id").value(3))
+                .andExpect(jsonPath("$.users[1].id").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(2));
+
+        verify(userService, times(1)).getUsersByIds(List.of(3L, 2L, 1L));
+    }
+
+    @Test
+    void getUsersByIds_ShouldReturnBadRequest_WhenIdsAreEmpty() throws Exception {
+        mockMvc.perform(post("/users/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\": []}"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void searchUsers_ShouldReturnMatches_WhenPrefixProvided() throws Exception {
+        // Given
+        UserResponseDto alice = new UserResponseDto(7L, "alice", "alice@ejemplo.com");
+        when(userService.searchUsers("ali", 5)).thenReturn(new UserSearchResponseDto(List.of(alice), true));
+
+        // When & Then
+        mockMvc.perform(get("/users/search").param("prefix", "ali").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].username").value("alice"))
+                .andExpect(jsonPath("$.complete").value(true));
+
+        verify(userService, times(1)).searchUsers("ali", 5);
+    }
+
+    @Test
+    void searchUsers_ShouldReturnBadRequest_WhenPrefixIsMissing() throws Exception {
+        // Given
+        when(userService.searchUsers(null, 10))
+                .thenThrow(new IllegalArgumentException("El parámetro prefix es obligatorio"));
+
+        // When & Then
+        mockMvc.perform(get("/users/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void fuzzySearchUsers_ShouldReturnRankedMatches() throws Exception {
+        // Given
+        when(userService.fuzzySearchUsers("jhon", 10)).thenReturn(new UserFuzzySearchResponseDto(
+                List.of(new UserSearchMatchDto(3L, "john", "john@ejemplo.com", 0.5)), true));
+
+        // When & Then
+        mockMvc.perform(get("/users/search/fuzzy").param("query", "jhon"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].username").value("john"))
+                .andExpect(jsonPath("$.users[0].similarity").value(0.5))
+                .andExpect(jsonPath("$.complete").value(true));
+    }
+}
@@ -0,0 +1,71 @@
+package com.ditech.backend.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GuardedDataSourceTest {
+
+    @Test
+    void getConnection_ShouldRejectImmediately_WhenTooManyThreadsAreWaiting() throws Exception {
+        // Given: el pool tarda en entregar la conexión y solo se admite un hilo esperando
+        DataSource pool = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        CountDownLatch waiting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(pool.getConnection()).thenAnswer(invocation -> {
+            waiting.countDown();
+            release.await();
+            return connection;
+        });
+        GuardedDataSource dataSource = new GuardedDataSource(pool, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dataSource.bindTo(registry);
+
+        CompletableFuture<Connection> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+
+        // When & Then
+        assertEquals(1, dataSource.waiting());
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertEquals(1.0, registry.get("users.datasource.guard.rejected").tag("pool", "primary").functionCounter().count());
+
+        release.countDown();
+        assertSame(connection, first.get(5, TimeUnit.SECONDS));
+        assertEquals(0, dataSource.waiting());
+        assertSame(connection, dataSource.getConnection());
+        verify(pool, times(2)).getConnection();
+    }
+
+    @Test
+    void getConnection_ShouldReleasePermit_WhenPoolFails() throws Exception {
+        // Given
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenThrow(new SQLTransientConnectionException("timeout"));
+        GuardedDataSource dataSource = new GuardedDataSource(pool, 1);
+
+        // When
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        // Then: ambos intentos llegaron al pool, el permiso no quedó retenido
+        assertEquals(0, dataSource.waiting());
+        assertEquals(0, dataSource.rejected());
+        verify(pool, times(2)).getConnection();
+    }
+}
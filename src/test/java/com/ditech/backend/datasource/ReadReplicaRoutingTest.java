@@ -0,0 +1,121 @@
+package com.ditech.backend.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import jakarta.servlet.http.Cookie;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Primario y réplica como dos bases H2 en memoria independientes: lo que se escribe en el primario nunca
+ * llega a la réplica, así que se comporta como una réplica con retraso infinito
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingTest.PRIMARY_URL,
+        "users.datasource.replicas.urls=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "users.datasource.replicas.health-check-interval=1h",
+        "users.cache.maximum-size=0",
+        "users.cache.missing-maximum-size=0",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static JdbcTemplate replica;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void createReplicaSchema() {
+        DriverManagerDataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "password");
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.update("INSERT INTO users (id, username, email, active) VALUES (900, 'solo_replica', 'replica@ejemplo.com', TRUE)");
+    }
+
+    @Test
+    void getUserById_ShouldReadFromReplica() throws Exception {
+        mockMvc.perform(get("/users/{id}", 900))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("solo_replica"));
+    }
+
+    @Test
+    void metrics_ShouldBePublished_ThroughStatementCountingWrapper() throws Exception {
+        // Given
+        mockMvc.perform(get("/users/{id}", 900)).andExpect(status().isOk());
+
+        // When & Then - el DataSource de enrutamiento está envuelto, pero sus métricas se publican
+        assertTrue(meterRegistry.get("users.datasource.routing.reads")
+                .tag("target", "replica-1").tag("reason", "replica").functionCounter().count() >= 1);
+        assertEquals(1.0, meterRegistry.get("users.datasource.replica.available")
+                .tag("replica", "replica-1").gauge().value());
+        assertNotNull(meterRegistry.get("users.datasource.replica.lag").tag("replica", "replica-1").gauge());
+        assertNotNull(meterRegistry.get("users.datasource.guard.waiting").tag("pool", "replica-1").gauge());
+        assertNotNull(meterRegistry.get("users.datasource.guard.waiting").tag("pool", "primary").gauge());
+    }
+
+    @Test
+    void createUser_ShouldWriteToPrimaryAndPinFollowingReads() throws Exception {
+        // Given - el alta va al primario y la respuesta fija al cliente al primario
+        MvcResult created = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"primario\",\"email\":\"primario@ejemplo.com\",\"active\":true}"))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE_NAME))
+                .andReturn();
+        Cookie sticky = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        long id = Long.parseLong(created.getResponse().getContentAsString().replaceAll(".*\"id\":(\\d+).*", "$1"));
+        assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, id));
+
+        // When & Then - sin la cookie se lee de la réplica, que aún no tiene el usuario, y el fallo
+        // se confirma en el primario en lugar de responder 404
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("primario"));
+        mockMvc.perform(get("/users/{id}", id).cookie(sticky))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("primario"));
+    }
+
+    @Test
+    void getUsersByIds_ShouldConfirmReplicaMissesOnPrimary() throws Exception {
+        // Given - un usuario solo en el primario, otro solo en la réplica y un ID que no existe en ninguno
+        MvcResult created = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"lookup_primario\",\"email\":\"lookup@ejemplo.com\",\"active\":true}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        long id = Long.parseLong(created.getResponse().getContentAsString().replaceAll(".*\"id\":(\\d+).*", "$1"));
+
+        // When & Then
+        mockMvc.perform(post("/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[900," + id + ",999999]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].username").value("solo_replica"))
+                .andExpect(jsonPath("$.users[1].id").value(id))
+                .andExpect(jsonPath("$.missing[0]").value(999999));
+    }
+}
@@ -0,0 +1,223 @@
+package com.ditech.backend.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica1;
+    private DataSource replica2;
+    private Connection primaryConnection;
+    private Connection replica1Connection;
+    private Connection replica2Connection;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = mock(DataSource.class);
+        replica1 = mock(DataSource.class);
+        replica2 = mock(DataSource.class);
+        primaryConnection = mock(Connection.class);
+        replica1Connection = mock(Connection.class);
+        replica2Connection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica1.getConnection()).thenReturn(replica1Connection);
+        when(replica2.getConnection()).thenReturn(replica2Connection);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReadYourWrites.close();
+        ReadYourWrites.takeReplicaRead();
+    }
+
+    @Test
+    void getReadOnlyConnection_ShouldAlternateBetweenReplicas() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource dataSource = routing(null);
+
+        // When & Then
+        assertSame(replica1Connection, dataSource.getReadOnlyConnection());
+        assertSame(replica2Connection, dataSource.getReadOnlyConnection());
+        assertSame(replica1Connection, dataSource.getReadOnlyConnection());
+        verify(primary, never()).getConnection();
+        assertEquals(2.0, reads("replica-1", "replica"));
+        assertTrue(ReadYourWrites.takeReplicaRead());
+        assertFalse(ReadYourWrites.takeReplicaRead());
+    }
+
+    @Test
+    void getReadOnlyConnection_ShouldUsePrimary_WhenRequestHasWritten() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource dataSource = routing(null);
+        ReadYourWrites.open(false, () -> { });
+        ReadYourWrites.recordWrite();
+
+        // When
+        Connection connection = dataSource.getReadOnlyConnection();
+
+        // Then
+        assertSame(primaryConnection, connection);
+        assertEquals(1.0, reads("primary", "sticky"));
+        assertFalse(ReadYourWrites.takeReplicaRead());
+    }
+
+    @Test
+    void onPrimary_ShouldPinReadsOnlyWhileRunning() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource dataSource = routing(null);
+
+        // When
+        Connection pinned = ReadYourWrites.onPrimary(() -> {
+            try {
+                return dataSource.getReadOnlyConnection();
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        // Then - fuera de onPrimary se vuelve a leer de las réplicas
+        assertSame(primaryConnection, pinned);
+        assertFalse(ReadYourWrites.takeReplicaRead());
+        assertSame(replica1Connection, dataSource.getReadOnlyConnection());
+        assertTrue(ReadYourWrites.takeReplicaRead());
+    }
+
+    @Test
+    void getReadOnlyConnection_ShouldFailOverToNextReplica_WhenReplicaIsDown() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource dataSource = routing(null);
+        when(replica1.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        // When & Then - la réplica caída se salta también en las siguientes lecturas
+        assertSame(replica2Connection, dataSource.getReadOnlyConnection());
+        assertSame(replica2Connection, dataSource.getReadOnlyConnection());
+        verify(replica1, times(1)).getConnection();
+        assertEquals(0.0, registry.get("users.datasource.replica.available").tag("replica", "replica-1").gauge().value());
+    }
+
+    @Test
+    void getReadOnlyConnection_ShouldFallBackToPrimary_WhenNoReplicaIsAvailable() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource dataSource = routing(null);
+        when(replica1.getConnection()).thenThrow(new SQLException("Connection refused"));
+        when(replica2.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        // When
+        Connection connection = dataSource.getReadOnlyConnection();
+
+        // Then
+        assertSame(primaryConnection, connection);
+        assertEquals(1.0, reads("primary", "fallback"));
+        assertFalse(ReadYourWrites.takeReplicaRead());
+    }
+
+    @Test
+    void getReadOnlyConnection_ShouldPropagateGuardRejection() throws SQLException {
+        // Given - la réplica está sana pero saturada
+        ReadWriteRoutingDataSource dataSource = routing(null);
+        when(replica1.getConnection()).thenThrow(new SQLTransientConnectionException(
+                "Demasiadas peticiones", GuardedDataSource.REJECTED_SQL_STATE));
+
+        // When & Then
+        assertThrows(SQLTransientConnectionException.class, dataSource::getReadOnlyConnection);
+        verify(primary, never()).getConnection();
+        assertEquals(1.0, registry.get("users.datasource.replica.available").tag("replica", "replica-1").gauge().value());
+    }
+
+    @Test
+    void bindTo_ShouldPublishGuardMetricsPerReplica() throws SQLException {
+        // Given - réplicas protegidas como en ReadReplicaConfig
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", new GuardedDataSource(replica1, 3, "replica-1"));
+        replicas.put("replica-2", new GuardedDataSource(replica2, 4, "replica-2"));
+        ReadWriteRoutingDataSource dataSource =
+                new ReadWriteRoutingDataSource(primary, replicas, Duration.ofSeconds(5), null);
+
+        // When
+        dataSource.bindTo(registry);
+
+        // Then
+        assertEquals(3.0, registry.get("users.datasource.guard.max.waiting").tag("pool", "replica-1").gauge().value());
+        assertEquals(4.0, registry.get("users.datasource.guard.max.waiting").tag("pool", "replica-2").gauge().value());
+        assertEquals(0.0, registry.get("users.datasource.guard.rejected").tag("pool", "replica-1").functionCounter().count());
+    }
+
+    @Test
+    void checkReplicas_ShouldSkipReplica_WhenLagExceedsTolerance() throws SQLException {
+        // Given - replica-1 va 10 s por detrás y replica-2 al día
+        ReadWriteRoutingDataSource dataSource = routing("SELECT lag");
+        stubHealthCheck(replica1Connection, 10_000);
+        stubHealthCheck(replica2Connection, 100);
+
+        // When
+        dataSource.checkReplicas();
+
+        // Then
+        assertSame(replica2Connection, dataSource.getReadOnlyConnection());
+        assertSame(replica2Connection, dataSource.getReadOnlyConnection());
+        assertEquals(10_000.0, registry.get("users.datasource.replica.lag").tag("replica", "replica-1").gauge().value());
+    }
+
+    @Test
+    void checkReplicas_ShouldRestoreReplica_WhenItRecovers() throws SQLException {
+        // Given - replica-1 falla una vez y después vuelve
+        ReadWriteRoutingDataSource dataSource = routing(null);
+        when(replica1.getConnection())
+                .thenThrow(new SQLException("Connection refused"))
+                .thenReturn(replica1Connection);
+        assertSame(replica2Connection, dataSource.getReadOnlyConnection());
+        when(replica1Connection.isValid(anyInt())).thenReturn(true);
+        when(replica2Connection.isValid(anyInt())).thenReturn(true);
+
+        // When
+        dataSource.checkReplicas();
+
+        // Then
+        assertEquals(1.0, registry.get("users.datasource.replica.available").tag("replica", "replica-1").gauge().value());
+    }
+
+    private ReadWriteRoutingDataSource routing(String lagQuery) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica1);
+        replicas.put("replica-2", replica2);
+        ReadWriteRoutingDataSource dataSource =
+                new ReadWriteRoutingDataSource(primary, replicas, Duration.ofSeconds(5), lagQuery);
+        dataSource.bindTo(registry);
+        return dataSource;
+    }
+
+    private static void stubHealthCheck(Connection connection, long lagMillis) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet result = mock(ResultSet.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(result);
+        when(result.next()).thenReturn(true);
+        when(result.getLong(1)).thenReturn(lagMillis);
+    }
+
+    private double reads(String target, String reason) {
+        return registry.get("users.datasource.routing.reads").tag("target", target).tag("reason", reason)
+                .functionCounter().count();
+    }
+}
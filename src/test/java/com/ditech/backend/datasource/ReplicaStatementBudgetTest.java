@@ -0,0 +1,86 @@
+package com.ditech.backend.datasource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ditech.backend.datasource.StatementCounts.statements;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Presupuestos de application.yml en modo FAIL con una réplica que nunca recibe las escrituras del
+ * primario: cada lectura que la réplica no encuentra se confirma en el primario y el presupuesto
+ * debe admitir esa segunda sentencia
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaStatementBudgetTest.PRIMARY_URL,
+        "users.datasource.replicas.urls=" + ReplicaStatementBudgetTest.REPLICA_URL,
+        "users.datasource.replicas.health-check-interval=1h",
+        "users.cache.maximum-size=0",
+        "users.cache.missing-maximum-size=0",
+        "users.statements.debug-header=true",
+        "users.statements.budget.mode=FAIL",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class ReplicaStatementBudgetTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:budget-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:budget-replica;DB_CLOSE_DELAY=-1";
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void createReplicaSchema() {
+        Flyway.configure().dataSource(new DriverManagerDataSource(REPLICA_URL, "sa", "password")).load().migrate();
+    }
+
+    @Test
+    void getUserById_ShouldStayWithinBudget_WhenReplicaMissIsConfirmedOnPrimary() throws Exception {
+        long id = createUser();
+
+        // La réplica no tiene la fila: lectura en la réplica y confirmación en el primario
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(statements(2));
+        mockMvc.perform(get("/users/{id}", 999_999))
+                .andExpect(status().isNotFound())
+                .andExpect(statements(2));
+    }
+
+    @Test
+    void lookup_ShouldStayWithinBudget_WhenReplicaMissesAreConfirmedOnPrimary() throws Exception {
+        long id = createUser();
+
+        mockMvc.perform(post("/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[" + id + ",999999]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0].id").value(id))
+                .andExpect(jsonPath("$.missing[0]").value(999_999))
+                .andExpect(statements(2));
+    }
+
+    private long createUser() throws Exception {
+        int n = SEQUENCE.incrementAndGet();
+        String body = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"replica" + n + "\",\"email\":\"replica" + n + "@ejemplo.com\",\"active\":true}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return Long.parseLong(body.replaceAll(".*\"id\":(\\d+).*", "$1"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.ditech.backend.datasource;
+
+import com.ditech.backend.admission.AdmissionControlFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Modo FAIL de extremo a extremo: la sentencia que supera el presupuesto falla antes de llegar a la
+ * base de datos, la transacción se deshace y la petición responde 500 sin marcar sobrecarga
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-budget-fail;DB_CLOSE_DELAY=-1",
+        "users.statements.budget.mode=FAIL",
+        "users.statements.budget.endpoints.[POST\\ /users]=1",
+        "users.statements.budget.endpoints.[GET\\ /users/{id}]=0",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class StatementBudgetFailModeTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void createUser_ShouldAnswer500AndRollBack_WhenBudgetIsExceeded() throws Exception {
+        // When - el alta necesita el bloque de IDs, el INSERT y el evento
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"sin_presupuesto\",\"email\":\"sin_presupuesto@ejemplo.com\",\"active\":true}"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.message").value("La petición supera su presupuesto de sentencias SQL"))
+                .andExpect(request().attribute(AdmissionControlFilter.OVERLOAD_ATTRIBUTE, nullValue()));
+
+        // Then - ni el usuario ni su evento quedan escritos
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE username = 'sin_presupuesto'", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_events WHERE username = 'sin_presupuesto'", Integer.class));
+    }
+
+    @Test
+    void getUserById_ShouldAnswer500_WhenHibernateQueryIsRejected() throws Exception {
+        // Given
+        jdbcTemplate.update("INSERT INTO users (id, username, email, active) VALUES (800001, 'sin_lectura', 'sin_lectura@ejemplo.com', TRUE)");
+
+        // When & Then - la consulta de Hibernate envuelve el rechazo en otra excepción
+        mockMvc.perform(get("/users/{id}", 800001))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.message").value("La petición supera su presupuesto de sentencias SQL"))
+                .andExpect(request().attribute(AdmissionControlFilter.OVERLOAD_ATTRIBUTE, nullValue()));
+    }
+}
@@ -0,0 +1,150 @@
+package com.ditech.backend.datasource;
+
+import com.ditech.backend.exception.UserNotFoundException;
+import com.ditech.backend.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ditech.backend.datasource.StatementCounts.assertStatements;
+import static com.ditech.backend.datasource.StatementCounts.statements;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Sentencias SQL exactas de cada endpoint con la base de datos real: una consulta nueva (por ejemplo,
+ * una lectura antes de eliminar) hace fallar estas pruebas
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-budget;DB_CLOSE_DELAY=-1",
+        "users.statements.debug-header=true",
+        "users.statements.budget.endpoints.[POST\\ /users/lookup]=0",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class StatementBudgetTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void reserveIdBlock() throws Exception {
+        // La primera alta del contexto reserva un bloque de 50 IDs de la secuencia; las demás solo insertan
+        createUser(true);
+    }
+
+    @Test
+    void createUser_ShouldOnlyInsert_WhenUniquenessFilterRulesOutDuplicates() throws Exception {
+        int n = SEQUENCE.incrementAndGet();
+        // El INSERT del usuario y el INSERT ... SELECT de su evento
+        mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"presupuesto" + n + "\",\"email\":\"presupuesto" + n + "@ejemplo.com\",\"active\":true}"))
+                .andExpect(status().isCreated())
+                .andExpect(statements(2));
+    }
+
+    @Test
+    void getUserById_ShouldQueryOnce_AndThenServeFromCache() throws Exception {
+        long id = createUser(true);
+
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(statements(1));
+        mockMvc.perform(get("/users/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(statements(0));
+        mockMvc.perform(get("/users/{id}", 999_999))
+                .andExpect(status().isNotFound())
+                .andExpect(statements(1));
+    }
+
+    @Test
+    void getAllUsers_ShouldRunSingleKeysetQuery() throws Exception {
+        mockMvc.perform(get("/users").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(statements(1));
+        mockMvc.perform(get("/users").param("active", "false"))
+                .andExpect(status().isOk())
+                .andExpect(statements(1));
+    }
+
+    @Test
+    void inMemoryEndpoints_ShouldNotQuery() throws Exception {
+        // Given - los contadores se reconcilian en la primera consulta si aún no lo han hecho
+        mockMvc.perform(get("/users/count")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/users/count").param("active", "true"))
+                .andExpect(status().isOk())
+                .andExpect(statements(0));
+        mockMvc.perform(get("/users/search").param("prefix", "pres"))
+                .andExpect(status().isOk())
+                .andExpect(statements(0));
+        mockMvc.perform(get("/users/search/fuzzy").param("query", "presupuesto"))
+                .andExpect(status().isOk())
+                .andExpect(statements(0));
+    }
+
+    @Test
+    void deleteUser_ShouldNotReadBeforeDeleting() throws Exception {
+        long active = createUser(true);
+        long inactive = createUser(false);
+
+        // El DELETE y el evento
+        mockMvc.perform(delete("/users/{id}", active))
+                .andExpect(status().isNoContent())
+                .andExpect(statements(2));
+        // Un usuario inactivo también: el DELETE devuelve su active
+        mockMvc.perform(delete("/users/{id}", inactive))
+                .andExpect(status().isNoContent())
+                .andExpect(statements(2));
+        // Un usuario inexistente: solo el DELETE, que no devuelve filas
+        assertStatements(1, () -> assertThrows(UserNotFoundException.class, () -> userService.deleteUser(inactive)));
+    }
+
+    @Test
+    void lookup_ShouldBeRecordedOverBudget_WhenEndpointExceedsIt() throws Exception {
+        double before = overBudget();
+
+        mockMvc.perform(post("/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[1,2,3]}"))
+                .andExpect(status().isOk())
+                .andExpect(statements(1));
+
+        assertEquals(before + 1, overBudget());
+    }
+
+    private double overBudget() {
+        var counter = meterRegistry.find("users.jdbc.statements.over.budget").tag("uri", "/users/lookup").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private long createUser(boolean active) throws Exception {
+        int n = SEQUENCE.incrementAndGet();
+        String body = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"presupuesto" + n + "\",\"email\":\"presupuesto" + n
+                                + "@ejemplo.com\",\"active\":" + active + "}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return Long.parseLong(body.replaceAll(".*\"id\":(\\d+).*", "$1"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.ditech.backend.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementCountingDataSourceTest {
+
+    private SingleConnectionDataSource database;
+    private StatementCountingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        database = new SingleConnectionDataSource("jdbc:h2:mem:statement-count", "sa", "password", true);
+        dataSource = new StatementCountingDataSource(database);
+        new JdbcTemplate(dataSource).execute("CREATE TABLE items (id BIGINT PRIMARY KEY)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.destroy();
+    }
+
+    @Test
+    void execute_ShouldCountEachRoundTrip_AndBatchAsOne() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        // When
+        int count = StatementCounts.count(() -> {
+            jdbc.batchUpdate("INSERT INTO items (id) VALUES (?)", List.of(new Object[]{1}, new Object[]{2}, new Object[]{3}));
+            jdbc.update("DELETE FROM items WHERE id = ?", 3);
+            jdbc.queryForObject("SELECT COUNT(*) FROM items", Integer.class);
+        });
+
+        // Then - un lote, un DELETE y un SELECT; fuera del ámbito no se cuenta nada
+        assertEquals(3, count);
+        assertEquals(2, jdbc.queryForObject("SELECT COUNT(*) FROM items", Integer.class));
+        assertEquals(0, StatementCounter.current());
+    }
+
+    @Test
+    void execute_ShouldFailBeforeReachingDatabase_WhenBudgetIsExceeded() throws SQLException {
+        // Given
+        StatementCounter.open(() -> 1);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO items (id) VALUES (?)")) {
+            insert.setLong(1, 1);
+            insert.executeUpdate();
+            insert.setLong(1, 2);
+
+            // When & Then
+            SQLException ex = assertThrows(SQLException.class, insert::executeUpdate);
+            assertEquals(StatementCounter.BUDGET_EXCEEDED_SQL_STATE, ex.getSQLState());
+        } finally {
+            assertEquals(2, StatementCounter.close());
+        }
+        assertEquals(1, new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM items", Integer.class));
+    }
+}
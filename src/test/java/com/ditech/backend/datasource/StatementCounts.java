@@ -0,0 +1,44 @@
+package com.ditech.backend.datasource;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+
+/**
+ * Aserciones sobre el número de sentencias SQL, para fijar en las pruebas las consultas de cada
+ * endpoint o método de servicio y detectar consultas ocultas nuevas. Requiere el DataSource real
+ * de la aplicación (@SpringBootTest), que StatementCountConfig envuelve en un StatementCountingDataSource
+ */
+public final class StatementCounts {
+
+    private StatementCounts() {
+    }
+
+    /**
+     * Sentencias SQL ejecutadas por la acción en el hilo actual
+     */
+    public static int count(Runnable action) {
+        StatementCounter.open(null);
+        try {
+            action.run();
+            return StatementCounter.current();
+        } finally {
+            StatementCounter.close();
+        }
+    }
+
+    /**
+     * Comprobar que la acción ejecuta exactamente expected sentencias SQL
+     */
+    public static void assertStatements(int expected, Runnable action) {
+        assertEquals(expected, count(action), "Sentencias SQL ejecutadas");
+    }
+
+    /**
+     * Comprobar con MockMvc las sentencias de una petición; requiere users.statements.debug-header=true
+     */
+    public static ResultMatcher statements(int expected) {
+        return header().string(StatementCountFilter.HEADER_NAME, Integer.toString(expected));
+    }
+}
@@ -0,0 +1,46 @@
+package com.ditech.backend.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldNeverGiveFalseNegatives_WhenValuesWereInserted() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("usuario" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("usuario" + i));
+        }
+        assertEquals(10_000, filter.insertions());
+    }
+
+    @Test
+    void mightContain_ShouldStayNearTargetFalsePositiveRate_WhenFilledToCapacity() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("usuario" + i + "@ejemplo.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("otro" + i + "@ejemplo.com")) {
+                falsePositives++;
+            }
+        }
+
+        // Objetivo 1 %: se admite holgura para no depender de la distribución concreta
+        assertTrue(falsePositives < 2_000, "Falsos positivos: " + falsePositives);
+        assertTrue(filter.expectedFalsePositiveRate() < 0.02);
+    }
+
+    @Test
+    void constructor_ShouldRejectInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.5));
+    }
+}
@@ -0,0 +1,71 @@
+package com.ditech.backend.index;
+
+import com.ditech.backend.repository.ActiveCount;
+import com.ditech.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserActiveCountsTest {
+
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserActiveCounts counts;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        counts = new UserActiveCounts(userRepository, mock(PlatformTransactionManager.class),
+                Duration.ofMinutes(1), meterRegistry);
+    }
+
+    @Test
+    void count_ShouldReconcileOnce_AndThenApplyWritesWithoutQuerying() {
+        // Given
+        when(userRepository.countGroupedByActive()).thenReturn(List.of(
+                new ActiveCount(true, 10L), new ActiveCount(false, 3L)));
+
+        // When
+        long initialActive = counts.count(true);
+        counts.recordCreated(true);
+        counts.recordCreated(false);
+        counts.recordDeleted(true, 4);
+
+        // Then
+        assertEquals(10, initialActive);
+        assertEquals(7, counts.count(true));
+        assertEquals(4, counts.count(false));
+        assertEquals(11, counts.count(null));
+        assertEquals(7.0, meterRegistry.get("users.count").tag("active", "true").gauge().value());
+        verify(userRepository, times(1)).countGroupedByActive();
+    }
+
+    @Test
+    void reconcile_ShouldKeepWritesRecordedWhileCounting_AndCorrectDrift() {
+        // Given - 10 activos; un alta se registra mientras se ejecuta la consulta y no está en su resultado
+        when(userRepository.countGroupedByActive())
+                .thenReturn(List.of(new ActiveCount(true, 10L)))
+                .thenAnswer(inv -> {
+                    counts.recordCreated(true);
+                    return List.of(new ActiveCount(true, 8L));
+                });
+        counts.reconcile();
+        counts.recordDeleted(false, 1);
+
+        // When - la tabla tiene 8 activos (cambios hechos fuera de la aplicación) y 0 inactivos
+        counts.reconcile();
+
+        // Then - 8 contados más el alta concurrente
+        assertEquals(9, counts.count(true));
+        assertEquals(0, counts.count(false));
+        assertEquals(3.0, meterRegistry.get("users.count.reconciliation.drift").summary().totalAmount());
+    }
+}
@@ -0,0 +1,76 @@
+package com.ditech.backend.index;
+
+import com.ditech.backend.outbox.UserEventLog;
+import com.ditech.backend.repository.UserKeys;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cambios de otra instancia: se escriben la fila y su evento directamente con JDBC, sin pasar por los
+ * servicios de esta, así que los índices solo pueden enterarse por el flujo de eventos
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:index-sync;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false"
+})
+class UserIndexSyncTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserEventLog userEventLog;
+
+    @Autowired
+    private UserPrefixIndex prefixIndex;
+
+    @Autowired
+    private UserTrigramIndex trigramIndex;
+
+    @Test
+    void indexes_ShouldFollowCreatesAndDeletesFromOtherInstances() throws Exception {
+        // Given - alta confirmada en otra instancia
+        jdbcTemplate.update("INSERT INTO users (id, username, email, active) VALUES (700001, 'otra_instancia', 'otra@ejemplo.com', TRUE)");
+        jdbcTemplate.update("INSERT INTO user_events (event_type, user_id, username, email, active, occurred_at)"
+                + " VALUES ('CREATED', 700001, 'otra_instancia', 'otra@ejemplo.com', TRUE, CURRENT_TIMESTAMP)");
+
+        // When
+        userEventLog.wakeUp();
+
+        // Then
+        await(() -> ids(prefixIndex.search("otra_inst", 10)).contains(700001L));
+        await(() -> trigramIndex.search("otra_instancai", 10).matches().stream()
+                .anyMatch(match -> match.user().id() == 700001L));
+
+        // Given - baja en la otra instancia
+        jdbcTemplate.update("DELETE FROM users WHERE id = 700001");
+        jdbcTemplate.update("INSERT INTO user_events (event_type, user_id, active, occurred_at)"
+                + " VALUES ('DELETED', 700001, TRUE, CURRENT_TIMESTAMP)");
+
+        // When
+        userEventLog.wakeUp();
+
+        // Then
+        await(() -> !ids(prefixIndex.search("otra_inst", 10)).contains(700001L));
+        await(() -> trigramIndex.search("otra_instancia", 10).matches().isEmpty());
+    }
+
+    private static List<Long> ids(UserPrefixIndex.SearchResult result) {
+        return result.users().stream().map(UserKeys::id).toList();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Los índices no recibieron el cambio de la otra instancia");
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.ditech.backend.index;
+
+import com.ditech.backend.repository.UserKeys;
+import com.ditech.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserPrefixIndexTest {
+
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserPrefixIndex index;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        index = new UserPrefixIndex(userRepository, mock(PlatformTransactionManager.class),
+                Duration.ofSeconds(1), meterRegistry);
+    }
+
+    @Test
+    void search_ShouldMatchUsernameAndEmailPrefixesIgnoringCase_WhenIndexIsLoaded() {
+        // Given
+        when(userRepository.streamAllKeys()).thenReturn(Stream.of(
+                new UserKeys(1L, "Alice", "alice@ejemplo.com"),
+                new UserKeys(2L, "bob", "ali.bob@ejemplo.com"),
+                new UserKeys(3L, "carol", "carol@ejemplo.com")));
+        index.load();
+
+        // When
+        UserPrefixIndex.SearchResult result = index.search("ALI", 10);
+
+        // Then - ordenados por el valor coincidente ("ali.bob@..." < "alice") y sin repetir a alice
+        assertTrue(index.isReady());
+        assertEquals(List.of(2L, 1L), ids(result));
+        assertTrue(result.complete());
+        assertTrue(index.search("x", 10).users().isEmpty());
+    }
+
+    @Test
+    void search_ShouldReturnTopKAndReportIncomplete_WhenMoreMatchesExist() {
+        // Given
+        for (long id = 1; id <= 20; id++) {
+            index.add(new UserKeys(id, String.format("user%02d", id), "u" + id + "@ejemplo.com"));
+        }
+        index.load();
+
+        // When
+        UserPrefixIndex.SearchResult firstFive = index.search("user", 5);
+        UserPrefixIndex.SearchResult all = index.search("user", 20);
+
+        // Then
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(firstFive));
+        assertFalse(firstFive.complete());
+        assertEquals(20, all.users().size());
+        assertTrue(all.complete());
+    }
+
+    @Test
+    void remove_ShouldDropUserAndReleaseMemory() {
+        // Given
+        index.add(new UserKeys(1L, "alice", "alice@ejemplo.com"));
+        index.add(new UserKeys(2L, "alicia", "alicia@ejemplo.com"));
+        long sizeWithTwo = index.estimatedSizeInBytes();
+
+        // When
+        index.remove(1L);
+        index.remove(99L);
+
+        // Then
+        assertEquals(List.of(2L), ids(index.search("ali", 10)));
+        assertTrue(index.estimatedSizeInBytes() < sizeWithTwo);
+        assertEquals(1.0, meterRegistry.get("users.search.index.users").gauge().value());
+    }
+
+    @Test
+    void load_ShouldNotResurrectUser_WhenDeletedWhileTableIsStreamed() {
+        // Given - la baja se confirma después de empezar la carga y antes de leer su fila
+        when(userRepository.streamAllKeys()).thenAnswer(inv -> {
+            index.remove(2L);
+            return Stream.of(new UserKeys(1L, "alice", "alice@ejemplo.com"),
+                    new UserKeys(2L, "alicia", "alicia@ejemplo.com"));
+        });
+
+        // When
+        index.load();
+
+        // Then
+        assertEquals(List.of(1L), ids(index.search("ali", 10)));
+    }
+
+    @Test
+    void search_ShouldReportIncomplete_WhenIndexIsNotLoadedYet() {
+        // Given
+        index.add(new UserKeys(1L, "alice", "alice@ejemplo.com"));
+
+        // When
+        UserPrefixIndex.SearchResult result = index.search("ali", 10);
+
+        // Then
+        assertEquals(List.of(1L), ids(result));
+        assertFalse(result.complete());
+        assertEquals(1, meterRegistry.get("users.search.latency").tag("result", "partial").timer().count());
+    }
+
+    private static List<Long> ids(UserPrefixIndex.SearchResult result) {
+        return result.users().stream().map(UserKeys::id).toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.ditech.backend.index;
+
+import com.ditech.backend.repository.UserKeys;
+import com.ditech.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Mide la latencia de búsquedas y altas en el índice de trigramas mientras se compacta. Indexa
+ * usuarios sintéticos, da de baja una parte y lanza la compactación en otro hilo; mientras dura,
+ * el hilo de prueba alterna búsquedas y altas y anota cuánto tarda cada una. Si la copia se
+ * construyera con el cerrojo de escritura, la primera operación esperaría toda la compactación.
+ * No se ejecuta con mvn test; se lanza con:
+ * mvn test -Dtest=UserTrigramIndexCompactionBenchmarkTest -Dbenchmark=true
+ * [-Dbenchmark.users=1000000] [-Dbenchmark.deleted-ratio=0.3]
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UserTrigramIndexCompactionBenchmarkTest {
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final double DELETED_RATIO = Double.parseDouble(System.getProperty("benchmark.deleted-ratio", "0.3"));
+
+    @Test
+    void measureSearchAndAddLatency_WhileCompacting() throws Exception {
+        // Umbral inalcanzable: la compactación solo se lanza desde la prueba
+        UserTrigramIndex index = new UserTrigramIndex(mock(UserRepository.class), mock(PlatformTransactionManager.class),
+                0.3, 1000, Duration.ofSeconds(1), new SimpleMeterRegistry());
+        for (long id = 1; id <= USERS; id++) {
+            index.add(user(id));
+        }
+        long step = Math.round(1 / DELETED_RATIO);
+        for (long id = 1; id <= USERS; id += step) {
+            index.remove(id);
+        }
+
+        long[] searches = new long[1 << 20];
+        long[] adds = new long[1 << 20];
+        int operations = 0;
+        long nextId = USERS + 1;
+        long start = System.nanoTime();
+        Thread compaction = Thread.ofPlatform().name("trigram-index-compaction").start(index::compact);
+        while (compaction.isAlive() && operations < searches.length) {
+            long sent = System.nanoTime();
+            index.search("usuraio" + nextId % USERS, 10);
+            searches[operations] = System.nanoTime() - sent;
+            sent = System.nanoTime();
+            index.add(user(nextId++));
+            adds[operations++] = System.nanoTime() - sent;
+        }
+        compaction.join();
+        long compactionNanos = System.nanoTime() - start;
+
+        System.out.println();
+        System.out.printf("Compactación de %d usuarios (%d bajas): %d ms, %d búsquedas y altas durante la copia%n",
+                USERS, USERS / step, compactionNanos / 1_000_000, operations);
+        System.out.printf("%-9s %9s %9s %9s%n", "operación", "p50 ms", "p99 ms", "max ms");
+        print("búsqueda", Arrays.copyOf(searches, operations));
+        print("alta", Arrays.copyOf(adds, operations));
+
+        // Salvo la sustitución final, ninguna operación espera a que termine la copia
+        assertTrue(operations > 1, "Ninguna operación terminó durante la compactación");
+    }
+
+    private static UserKeys user(long id) {
+        return new UserKeys(id, "usuario" + id, "usuario." + id + "@ejemplo.com");
+    }
+
+    private static void print(String operation, long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.printf("%-9s %9.3f %9.3f %9.3f%n", operation,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,181 @@
+package com.ditech.backend.index;
+
+import com.ditech.backend.repository.UserKeys;
+import com.ditech.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserTrigramIndexTest {
+
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserTrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // Compactación solo explícita: el umbral nunca se alcanza en estas pruebas
+        index = new UserTrigramIndex(userRepository, mock(PlatformTransactionManager.class),
+                0.3, 1000, Duration.ofSeconds(1), meterRegistry);
+    }
+
+    @Test
+    void trigrams_ShouldPadEachWordAndIgnoreCaseAndPunctuation() {
+        // "Ana" → "  a", " an", "ana", "na "; "ana.ANA" repite los mismos
+        assertEquals(4, UserTrigramIndex.trigrams("Ana").length);
+        assertArrayEquals(UserTrigramIndex.trigrams("ana"), UserTrigramIndex.trigrams("ana.ANA"));
+        assertEquals(0, UserTrigramIndex.trigrams("@.-").length);
+        assertEquals("ana.ruiz", UserTrigramIndex.localPart("ana.ruiz@ejemplo.com"));
+    }
+
+    @Test
+    void search_ShouldRankMisspelledQueryByTrigramSimilarity() {
+        // Given
+        when(userRepository.streamAllKeys()).thenReturn(Stream.of(
+                new UserKeys(1L, "jonathan", "jonathan@ejemplo.com"),
+                new UserKeys(2L, "johnny", "johnny@ejemplo.com"),
+                new UserKeys(3L, "john", "john@ejemplo.com"),
+                new UserKeys(4L, "maria", "maria@ejemplo.com")));
+        index.load();
+
+        // When - "johm" comparte "  j", " jo" y "joh" con john, johnny y jonathan
+        UserTrigramIndex.SearchResult result = index.search("johm", 10);
+
+        // Then - el nombre más corto es el más parecido; maria no alcanza la similitud mínima
+        assertTrue(result.complete());
+        assertEquals(List.of(3L, 2L), ids(result));
+        assertTrue(result.matches().get(0).similarity() > result.matches().get(1).similarity());
+    }
+
+    @Test
+    void search_ShouldMatchPartialEmail() {
+        // Given
+        index.add(new UserKeys(1L, "jdoe", "john.doe@ejemplo.com"));
+        index.add(new UserKeys(2L, "asmith", "anna.smith@ejemplo.com"));
+
+        // When - solo se indexa la parte local: "jonh.doe" comparte 6 de 9 trigramas con "john.doe"
+        UserTrigramIndex.SearchResult result = index.search("jonh.doe", 10);
+
+        // Then
+        assertEquals(List.of(1L), ids(result));
+        assertEquals(0.5, result.matches().get(0).similarity());
+        assertFalse(result.complete(), "El índice no se ha cargado todavía");
+    }
+
+    @Test
+    void search_ShouldKeepTopKBySimilarityThenId() {
+        // Given - mismos valores: misma similitud
+        for (long id = 10; id >= 1; id--) {
+            index.add(new UserKeys(id, "carlos" + "x".repeat((int) id % 2), "c" + id + "@ejemplo.com"));
+        }
+
+        // When
+        UserTrigramIndex.SearchResult result = index.search("carlos", 3);
+
+        // Then - primero los "carlos" exactos (IDs pares) en orden de ID
+        assertEquals(List.of(2L, 4L, 6L), ids(result));
+        assertEquals(1.0, result.matches().get(0).similarity());
+    }
+
+    @Test
+    void remove_ShouldHideUser_AndCompactShouldKeepRemainingUsersSearchable() {
+        // Given
+        index.add(new UserKeys(1L, "alberto", "alberto@ejemplo.com"));
+        index.add(new UserKeys(2L, "albert", "albert@ejemplo.com"));
+        index.add(new UserKeys(3L, "sandra", "sandra@ejemplo.com"));
+
+        // When
+        index.remove(1L);
+        index.remove(42L);
+        List<Long> beforeCompaction = ids(index.search("alberto", 10));
+        long sizeBeforeCompaction = index.estimatedSizeInBytes();
+        index.compact();
+
+        // Then
+        assertEquals(List.of(2L), beforeCompaction);
+        assertEquals(List.of(2L), ids(index.search("alberto", 10)));
+        assertEquals(List.of(3L), ids(index.search("sandra", 10)));
+        assertTrue(index.estimatedSizeInBytes() < sizeBeforeCompaction);
+
+        // Los usuarios añadidos después de compactar siguen ordenados tras los existentes
+        index.add(new UserKeys(4L, "alberta", "alberta@ejemplo.com"));
+        assertEquals(List.of(4L, 2L), ids(index.search("alberta", 10)));
+    }
+
+    @Test
+    void compact_ShouldNotBlockSearchesAndWrites_WhileCopyIsBuilt() {
+        // Given
+        index.add(new UserKeys(1L, "alberto", "alberto@ejemplo.com"));
+        index.add(new UserKeys(2L, "albert", "albert@ejemplo.com"));
+        index.add(new UserKeys(3L, "sandra", "sandra@ejemplo.com"));
+        index.remove(1L);
+
+        // When - entre fijar el estado y sustituirlo, el hilo actual busca, da altas y bajas
+        UserTrigramIndex.Compaction compaction = index.beginCompaction();
+        index.add(new UserKeys(4L, "alberta", "alberta@ejemplo.com"));
+        index.add(new UserKeys(5L, "sandro", "sandro@ejemplo.com"));
+        index.remove(3L);
+        index.remove(5L);
+        List<Long> duringCompaction = ids(index.search("alberta", 10));
+        List<Long> removedDuringCompaction = ids(index.search("sandra", 10));
+        index.completeCompaction(compaction);
+
+        // Then - las bajas se ven en el acto; las altas, al sustituir el estado
+        assertEquals(List.of(2L), duringCompaction);
+        assertEquals(List.of(), removedDuringCompaction);
+        assertEquals(List.of(4L, 2L), ids(index.search("alberta", 10)));
+        assertEquals(List.of(), ids(index.search("sandr", 10)));
+
+        // Los contadores cuadran con los usuarios que quedan
+        index.remove(4L);
+        index.compact();
+        assertEquals(List.of(2L), ids(index.search("alberta", 10)));
+        assertEquals(1.0, meterRegistry.get("users.search.fuzzy.index.users").gauge().value());
+    }
+
+    @Test
+    void load_ShouldNotResurrectUser_WhenDeletedWhileTableIsStreamed() {
+        // Given
+        when(userRepository.streamAllKeys()).thenAnswer(inv -> {
+            index.remove(2L);
+            return Stream.of(new UserKeys(1L, "lucia", "lucia@ejemplo.com"),
+                    new UserKeys(2L, "lucio", "lucio@ejemplo.com"));
+        });
+
+        // When
+        index.load();
+
+        // Then
+        assertEquals(List.of(1L), ids(index.search("lucia", 10)));
+        assertEquals(List.of(), ids(index.search("lucio", 10)).stream().filter(id -> id == 2L).toList());
+    }
+
+    @Test
+    void longIntMap_ShouldStoreAndGrow() {
+        LongIntMap map = new LongIntMap(4);
+        for (int i = 0; i < 10_000; i++) {
+            map.put(1_000_000L + i, i);
+        }
+        map.put(1_000_000L, 42);
+
+        assertEquals(10_000, map.size());
+        assertEquals(42, map.get(1_000_000L));
+        assertEquals(9_999, map.get(1_009_999L));
+        assertEquals(-1, map.get(7L));
+    }
+
+    private static List<Long> ids(UserTrigramIndex.SearchResult result) {
+        return result.matches().stream().map(match -> match.user().id()).toList();
+    }
+}
@@ -0,0 +1,101 @@
+package com.ditech.backend.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias (en microsegundos, desde el instante programado de cada llegada) y códigos de estado
+ * de un endpoint durante una fase de la prueba de carga
+ */
+class EndpointStats {
+
+    /** Código registrado cuando la petición falla sin respuesta HTTP */
+    static final int TRANSPORT_ERROR = -1;
+
+    private final String name;
+    private final Histogram histogram = new ConcurrentHistogram(3);
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private volatile long elapsedNanos;
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void record(long latencyNanos, int status) {
+        histogram.recordValue(Math.max(latencyNanos / 1000, 1));
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    long count() {
+        return histogram.getTotalCount();
+    }
+
+    double throughput() {
+        return elapsedNanos == 0 ? 0 : count() * 1e9 / elapsedNanos;
+    }
+
+    double percentileMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    double maxMillis() {
+        return histogram.getMaxValue() / 1000.0;
+    }
+
+    /**
+     * Peticiones sin respuesta o con respuesta 5xx
+     */
+    long errors() {
+        return statuses.entrySet().stream()
+                .filter(e -> e.getKey() == TRANSPORT_ERROR || e.getKey() >= 500)
+                .mapToLong(e -> e.getValue().sum())
+                .sum();
+    }
+
+    Map<Integer, Long> statusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Escribe la distribución de percentiles en formato .hgrm (en milisegundos)
+     */
+    void writeDistribution(Path directory) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count());
+        summary.put("throughput", throughput());
+        summary.put("p50Ms", percentileMillis(50));
+        summary.put("p90Ms", percentileMillis(90));
+        summary.put("p99Ms", percentileMillis(99));
+        summary.put("p999Ms", percentileMillis(99.9));
+        summary.put("maxMs", maxMillis());
+        summary.put("errors", errors());
+        summary.put("statuses", statusCounts());
+        return summary;
+    }
+}
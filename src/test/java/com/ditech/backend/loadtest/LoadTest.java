@@ -0,0 +1,167 @@
+package com.ditech.backend.loadtest;
+
+import com.ditech.backend.pagination.CursorCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prueba de carga HTTP en proceso. Arranca la aplicación en un puerto aleatorio sobre H2 sembrado
+ * con loadtest.users usuarios y lanza una mezcla de POST /users, GET /users/{id}, GET /users y
+ * DELETE /users/{id} con llegadas de modelo abierto. Tras un calentamiento, escribe en
+ * loadtest.output un .hgrm por endpoint y summary.json con throughput y percentiles, y falla si
+ * algún p99 supera loadtest.max-p99-ms[.endpoint] o la tasa de errores supera loadtest.max-error-rate.
+ * No se ejecuta con mvn test; se lanza con:
+ * mvn test -Dtest=LoadTest -Dloadtest=true [-Dloadtest.rate=500]
+ * [-Dloadtest.mix=get:70,list:15,create:10,delete:5] [-Dloadtest.duration=60] [-Dloadtest.warmup=15]
+ * [-Dloadtest.users=100000] [-Dloadtest.seed=42] [-Dloadtest.max-p99-ms=50] [-Dloadtest.max-p99-ms.create=100]
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest",
+        "spring.flyway.locations=classpath:db/migration,classpath:db/loadtest",
+        "spring.flyway.placeholders.seed-rows=${loadtest.users:100000}",
+        "spring.jpa.show-sql=false",
+        "logging.level.root=WARN"
+})
+class LoadTest {
+
+    private static final int USERS = Integer.getInteger("loadtest.users", 100_000);
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "500"));
+    private static final String MIX = System.getProperty("loadtest.mix", "get:70,list:15,create:10,delete:5");
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.duration", 60));
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("loadtest.warmup", 15));
+    private static final long SEED = Long.getLong("loadtest.seed", 42);
+    private static final double MAX_ERROR_RATE =
+            Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.001"));
+    private static final Path OUTPUT = Path.of(System.getProperty("loadtest.output", "target/loadtest"));
+    private static final int PAGE_SIZE = 20;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    @LocalServerPort
+    private int port;
+
+    /** Los DELETE consumen IDs sembrados desde el final; los GET leen la primera mitad */
+    private final AtomicLong nextIdToDelete = new AtomicLong(USERS);
+    private final AtomicLong nextUserNumber = new AtomicLong();
+
+    @Test
+    void mixedWorkload_ShouldStayWithinLatencyBudget() throws Exception {
+        OpenModelLoadGenerator generator;
+        Map<String, EndpointStats> results;
+        try (HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build()) {
+            generator = new OpenModelLoadGenerator(client, RATE, parseMix(MIX), requests());
+            generator.run(WARMUP, SEED - 1);
+            results = generator.run(DURATION, SEED);
+        }
+
+        report(results);
+
+        List<String> violations = new ArrayList<>();
+        for (EndpointStats stats : results.values()) {
+            long budget = Long.getLong("loadtest.max-p99-ms." + stats.name(), Long.getLong("loadtest.max-p99-ms", -1));
+            if (budget >= 0 && stats.percentileMillis(99) > budget) {
+                violations.add(String.format("%s: p99 %.2f ms > %d ms", stats.name(), stats.percentileMillis(99), budget));
+            }
+            if (stats.count() > 0 && (double) stats.errors() / stats.count() > MAX_ERROR_RATE) {
+                violations.add(String.format("%s: %d errores de %d peticiones", stats.name(), stats.errors(), stats.count()));
+            }
+        }
+        assertTrue(violations.isEmpty(), String.join("; ", violations));
+    }
+
+    private Map<String, Function<Random, HttpRequest>> requests() {
+        String baseUrl = "http://localhost:" + port;
+        long readableIds = Math.max(USERS / 2, 1);
+        Map<String, Function<Random, HttpRequest>> requests = new LinkedHashMap<>();
+        requests.put("create", random -> {
+            long n = nextUserNumber.incrementAndGet();
+            String body = "{\"username\":\"lt" + n + "\",\"email\":\"lt" + n + "@ejemplo.com\",\"active\":true}";
+            return request(baseUrl + "/users")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        });
+        requests.put("get", random -> request(baseUrl + "/users/" + (1 + random.nextLong(readableIds))).GET().build());
+        requests.put("list", random -> {
+            // Mitad primeras páginas, mitad páginas intermedias a partir de un cursor arbitrario
+            String query = random.nextBoolean() ? ""
+                    : "&after=" + CursorCodec.encode(random.nextLong(readableIds));
+            return request(baseUrl + "/users?limit=" + PAGE_SIZE + query).GET().build();
+        });
+        requests.put("delete", random -> request(baseUrl + "/users/" + nextIdToDelete.getAndDecrement()).DELETE().build());
+        return requests;
+    }
+
+    private static HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Entrada de loadtest.mix inválida: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(parts[0].trim(), weight);
+            }
+        }
+        return weights;
+    }
+
+    private void report(Map<String, EndpointStats> results) throws Exception {
+        Files.createDirectories(OUTPUT);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("rate", RATE);
+        summary.put("mix", MIX);
+        summary.put("durationSeconds", DURATION.toSeconds());
+        summary.put("users", USERS);
+        summary.put("seed", SEED);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (EndpointStats stats : results.values()) {
+            stats.writeDistribution(OUTPUT);
+            endpoints.put(stats.name(), stats.summary());
+        }
+        summary.put("endpoints", endpoints);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(OUTPUT.resolve("summary.json").toFile(), summary);
+
+        System.out.println();
+        System.out.printf("Carga: %.0f llegadas/s durante %d s, mezcla %s, %d usuarios sembrados%n",
+                RATE, DURATION.toSeconds(), MIX, USERS);
+        System.out.printf("%-8s %9s %9s %9s %9s %9s %9s %9s  %s%n",
+                "endpoint", "peticiones", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "estados");
+        for (EndpointStats stats : results.values()) {
+            System.out.printf("%-8s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n", stats.name(), stats.count(),
+                    stats.throughput(), stats.percentileMillis(50), stats.percentileMillis(90),
+                    stats.percentileMillis(99), stats.percentileMillis(99.9), stats.maxMillis(), stats.statusCounts());
+        }
+        System.out.println("Distribuciones HdrHistogram y summary.json en " + OUTPUT.toAbsolutePath());
+    }
+}
@@ -0,0 +1,108 @@
+package com.ditech.backend.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Generador de carga de modelo abierto: las llegadas siguen un proceso de Poisson con la tasa
+ * indicada, independientemente de lo que tarde el servidor, y cada petición se lanza en su propio
+ * hilo virtual. La latencia se mide desde el instante en que la petición debía salir, de modo que
+ * los retrasos del propio generador o del servidor no se ocultan (omisión coordinada).
+ * Con la misma semilla la secuencia de endpoints y peticiones es la misma en cada ejecución.
+ */
+class OpenModelLoadGenerator {
+
+    private final HttpClient client;
+    private final double ratePerSecond;
+    private final Map<String, Integer> mix;
+    private final Map<String, Function<Random, HttpRequest>> requests;
+    private final int totalWeight;
+
+    /**
+     * @param client cliente HTTP compartido
+     * @param ratePerSecond llegadas por segundo entre todos los endpoints
+     * @param mix peso relativo de cada endpoint
+     * @param requests construye la siguiente petición de cada endpoint
+     */
+    OpenModelLoadGenerator(HttpClient client, double ratePerSecond, Map<String, Integer> mix,
+                           Map<String, Function<Random, HttpRequest>> requests) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("La tasa de llegadas debe ser positiva: " + ratePerSecond);
+        }
+        for (String endpoint : mix.keySet()) {
+            if (!requests.containsKey(endpoint)) {
+                throw new IllegalArgumentException("Endpoint desconocido en la mezcla: " + endpoint);
+            }
+        }
+        this.client = client;
+        this.ratePerSecond = ratePerSecond;
+        this.mix = mix;
+        this.requests = requests;
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Genera llegadas durante el tiempo indicado y espera a que terminen las peticiones en curso
+     * @param duration ventana de llegadas
+     * @param seed semilla de las llegadas y de la elección de endpoints
+     * @return estadísticas por endpoint, en el orden de la mezcla
+     */
+    Map<String, EndpointStats> run(Duration duration, long seed) {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        mix.keySet().forEach(endpoint -> stats.put(endpoint, new EndpointStats(endpoint)));
+        Random random = new Random(seed);
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long intended = start;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                // Tiempo entre llegadas exponencial con media 1 / tasa
+                intended += (long) (-Math.log(1 - random.nextDouble()) / ratePerSecond * 1e9);
+                if (intended >= end) {
+                    break;
+                }
+                String endpoint = pick(random);
+                HttpRequest request = requests.get(endpoint).apply(random);
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                long scheduledAt = intended;
+                EndpointStats endpointStats = stats.get(endpoint);
+                executor.submit(() -> endpointStats.record(System.nanoTime() - scheduledAt, send(request)));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        stats.values().forEach(s -> s.finish(elapsed));
+        return stats;
+    }
+
+    private String pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Mezcla de endpoints vacía");
+    }
+
+    private int send(HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            return EndpointStats.TRANSPORT_ERROR;
+        }
+    }
+}
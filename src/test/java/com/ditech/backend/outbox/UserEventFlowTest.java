@@ -0,0 +1,270 @@
+package com.ditech.backend.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Flujo de eventos de extremo a extremo con la base de datos real: las altas y bajas escriben su evento
+ * en la misma transacción, el publicador les asigna offsets y los consumidores los leen por lotes,
+ * con long-poll o por SSE. La retención es 0 para que prune() purgue todo salvo el último evento
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:user-events;DB_CLOSE_DELAY=-1",
+        "users.events.retention=0s",
+        "users.events.stream.heartbeat=200ms",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class UserEventFlowTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserEventLog userEventLog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createAndDelete_ShouldBeReadInCommitOrder_WithContiguousOffsets() throws Exception {
+        // Given
+        long start = currentHead();
+        long first = createUser(true);
+        long second = createUser(false);
+        mockMvc.perform(delete("/users/{id}", first)).andExpect(status().isNoContent());
+        // Una baja de un usuario inexistente se revierte y no deja evento
+        mockMvc.perform(delete("/users/{id}", 999_999)).andExpect(status().isNotFound());
+
+        // When
+        List<JsonNode> events = readUntil(start, 3);
+
+        // Then
+        assertEquals(3, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(start + i + 1, events.get(i).get("offset").asLong());
+        }
+        assertEquals("CREATED", events.get(0).get("type").asText());
+        assertEquals(first, events.get(0).get("userId").asLong());
+        assertEquals("CREATED", events.get(1).get("type").asText());
+        assertEquals(second, events.get(1).get("userId").asLong());
+        assertFalse(events.get(1).get("active").asBoolean());
+        assertEquals("DELETED", events.get(2).get("type").asText());
+        assertEquals(first, events.get(2).get("userId").asLong());
+        assertNull(events.get(2).get("username"));
+    }
+
+    @Test
+    void poll_ShouldWaitForNextEvent_WhenCaughtUp() throws Exception {
+        // Given - un consumidor al día espera hasta 10 segundos
+        long start = currentHead();
+        MvcResult pending = mockMvc.perform(get("/users/events")
+                        .param("after", String.valueOf(start))
+                        .param("wait", "10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // When
+        long id = createUser(true);
+
+        // Then
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events[0].offset").value(start + 1))
+                .andExpect(jsonPath("$.events[0].userId").value(id))
+                .andExpect(jsonPath("$.lastOffset").value(start + 1));
+    }
+
+    @Test
+    void stream_ShouldSendEventsWithOffsetAsId_ResumingFromLastEventId() throws Exception {
+        // Given
+        long start = currentHead();
+        long id = createUser(true);
+        readUntil(start, 1);
+
+        // When - reconexión con Last-Event-ID, que tiene prioridad sobre after
+        MvcResult stream = mockMvc.perform(get("/users/events/stream")
+                        .param("after", "0")
+                        .header("Last-Event-ID", String.valueOf(start))
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then - el primer evento es el siguiente a Last-Event-ID, seguido de latidos
+        String body = awaitContent(stream, ":heartbeat");
+        assertTrue(body.startsWith("id:" + (start + 1) + "\nevent:user-created\ndata:"), body);
+        assertTrue(body.contains("\"userId\":" + id), body);
+        stream.getRequest().getAsyncContext().complete();
+    }
+
+    @Test
+    void read_ShouldAnswerGone_WhenOffsetWasPruned() throws Exception {
+        // Given - se crean dos eventos y se purga todo salvo el último
+        long start = currentHead();
+        createUser(true);
+        createUser(true);
+        readUntil(start, 2);
+        userEventLog.prune();
+
+        // When & Then - el offset se valida antes de esperar, así que el error es inmediato
+        mockMvc.perform(get("/users/events").param("after", String.valueOf(start)).param("wait", "5"))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.status").value(410));
+        // Un offset posterior al último publicado es un error del cliente, no un hueco de la retención
+        mockMvc.perform(get("/users/events").param("after", String.valueOf(Long.MAX_VALUE / 2)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400));
+        mockMvc.perform(get("/users/events/stream").param("after", String.valueOf(Long.MAX_VALUE / 2))
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400));
+        mockMvc.perform(get("/users/events/stream").param("after", String.valueOf(start))
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.status").value(410));
+        // Sin after se empieza por el más antiguo conservado
+        MvcResult oldest = mockMvc.perform(get("/users/events")).andReturn();
+        mockMvc.perform(asyncDispatch(oldest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events[0].offset").value(start + 2));
+    }
+
+    @Test
+    void bulkDelete_ShouldWriteOneEventPerUser_WhenDeletesOverlap() throws Exception {
+        // Given
+        long start = currentHead();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            ids.add(createUser(i % 2 == 0));
+        }
+        readUntil(start, ids.size());
+        long afterCreates = currentHead();
+
+        // When - tres bajas en bloque de los mismos IDs a la vez
+        String body = "{\"ids\":" + ids + "}";
+        List<CompletableFuture<Integer>> deletes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            deletes.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    String response = mockMvc.perform(post("/users/bulk-delete")
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .content(body))
+                            .andExpect(status().isOk())
+                            .andReturn().getResponse().getContentAsString();
+                    return objectMapper.readTree(response).get("deleted").asInt();
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }));
+        }
+        int deleted = 0;
+        for (CompletableFuture<Integer> delete : deletes) {
+            deleted += delete.get(30, TimeUnit.SECONDS);
+        }
+
+        // Then - cada usuario se elimina una vez y tiene un único evento DELETED
+        assertEquals(ids.size(), deleted);
+        long head = currentHead();
+        assertEquals(afterCreates + ids.size(), head);
+        Set<Long> deletedIds = new HashSet<>();
+        for (JsonNode event : readUntil(afterCreates, ids.size())) {
+            assertEquals("DELETED", event.get("type").asText());
+            assertTrue(deletedIds.add(event.get("userId").asLong()), event.toString());
+        }
+        assertEquals(new HashSet<>(ids), deletedIds);
+    }
+
+    @Test
+    void read_ShouldOnlyReportHead_WhenLimitIsZero() throws Exception {
+        long head = currentHead();
+
+        MvcResult result = mockMvc.perform(get("/users/events").param("limit", "0")).andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events").isEmpty())
+                .andExpect(jsonPath("$.lastOffset").value(head))
+                .andExpect(jsonPath("$.headOffset").value(head));
+        mockMvc.perform(get("/users/events").param("limit", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Último offset publicado una vez publicadas las altas y bajas de las pruebas anteriores
+     */
+    private long currentHead() throws Exception {
+        long previous;
+        long head = userEventLog.refreshHead();
+        do {
+            previous = head;
+            Thread.sleep(50);
+            userEventLog.publish();
+            head = userEventLog.head();
+        } while (head != previous);
+        return head;
+    }
+
+    private List<JsonNode> readUntil(long after, int count) throws Exception {
+        List<JsonNode> events = new ArrayList<>();
+        long offset = after;
+        for (int attempt = 0; attempt < 10 && events.size() < count; attempt++) {
+            MvcResult pending = mockMvc.perform(get("/users/events")
+                            .param("after", String.valueOf(offset))
+                            .param("wait", "5"))
+                    .andReturn();
+            String body = mockMvc.perform(asyncDispatch(pending))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode batch = objectMapper.readTree(body);
+            batch.get("events").forEach(events::add);
+            offset = batch.get("lastOffset").asLong();
+        }
+        return events;
+    }
+
+    private String awaitContent(MvcResult result, String expected) throws Exception {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            String body = result.getResponse().getContentAsString();
+            if (body.contains(expected)) {
+                return body;
+            }
+            Thread.sleep(100);
+        }
+        fail("No se recibió " + expected + ": " + result.getResponse().getContentAsString());
+        return null;
+    }
+
+    private long createUser(boolean active) throws Exception {
+        int n = SEQUENCE.incrementAndGet();
+        String body = mockMvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"evento" + n + "\",\"email\":\"evento" + n
+                                + "@ejemplo.com\",\"active\":" + active + "}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+}
@@ -0,0 +1,133 @@
+package com.ditech.backend.outbox;
+
+import com.ditech.backend.model.UserEvent;
+import com.ditech.backend.model.UserEventType;
+import com.ditech.backend.repository.UserEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserEventLogTest {
+
+    private UserEventRepository userEventRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserEventLog eventLog;
+
+    @BeforeEach
+    void setUp() {
+        userEventRepository = mock(UserEventRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        eventLog = new UserEventLog(userEventRepository, mock(PlatformTransactionManager.class), 2,
+                Duration.ofSeconds(1), Duration.ofDays(7), Duration.ofHours(1), meterRegistry);
+    }
+
+    @Test
+    void publish_ShouldAssignConsecutiveOffsetsAfterHead_AndWakeWaiters() {
+        // Given - el último offset guardado es 10 y hay dos eventos sin publicar
+        when(userEventRepository.findHeadOffset()).thenReturn(10L);
+        eventLog.refreshHead();
+        UserEvent first = event(1L);
+        UserEvent second = event(2L);
+        when(userEventRepository.findUnpublished(Limit.of(2))).thenReturn(List.of(first, second));
+        CompletableFuture<Long> waiter = eventLog.onAdvance(10);
+
+        // When
+        int published = eventLog.publish();
+
+        // Then
+        assertEquals(2, published);
+        assertEquals(11L, first.getEventOffset());
+        assertEquals(12L, second.getEventOffset());
+        assertEquals(12, eventLog.head());
+        assertEquals(12L, waiter.getNow(null));
+        assertEquals(12.0, meterRegistry.get("users.events.head").gauge().value());
+        assertEquals(2, meterRegistry.get("users.events.publish.lag").timer().count());
+    }
+
+    @Test
+    void onAdvance_ShouldCompleteAtOnce_WhenHeadIsAlreadyPastOffset() {
+        // Given
+        when(userEventRepository.findHeadOffset()).thenReturn(5L);
+        eventLog.refreshHead();
+
+        // When
+        CompletableFuture<Long> behind = eventLog.onAdvance(4);
+        CompletableFuture<Long> caughtUp = eventLog.onAdvance(5);
+
+        // Then
+        assertEquals(5L, behind.getNow(null));
+        assertFalse(caughtUp.isDone());
+    }
+
+    @Test
+    void onAdvance_ShouldStopWaiting_WhenCallerCompletesWaiter() throws Exception {
+        // Given - un long-poll agota su espera antes de que llegue ningún evento
+        CompletableFuture<Long> waiter = eventLog.onAdvance(0)
+                .completeOnTimeout(-1L, 10, TimeUnit.MILLISECONDS);
+        assertEquals(-1L, waiter.get(1, TimeUnit.SECONDS));
+        when(userEventRepository.findUnpublished(Limit.of(2))).thenReturn(List.of(event(1L)));
+
+        // When
+        eventLog.publish();
+
+        // Then - el evento posterior no lo cambia
+        assertEquals(-1L, waiter.getNow(null));
+        assertEquals(1, eventLog.head());
+    }
+
+    @Test
+    void publish_ShouldRefreshHead_WhenAnotherInstanceTookTheOffsets() {
+        // Given - otra instancia ya ha publicado hasta el 7
+        when(userEventRepository.findUnpublished(Limit.of(2))).thenReturn(List.of(event(1L)));
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        doThrow(new DataIntegrityViolationException("offset duplicado")).doNothing()
+                .when(transactionManager).commit(any());
+        eventLog = new UserEventLog(userEventRepository, transactionManager, 2,
+                Duration.ofSeconds(1), Duration.ofDays(7), Duration.ofHours(1), meterRegistry);
+        when(userEventRepository.findHeadOffset()).thenReturn(7L);
+
+        // When
+        int published = eventLog.publish();
+
+        // Then
+        assertEquals(0, published);
+        assertEquals(7, eventLog.head());
+    }
+
+    @Test
+    void prune_ShouldKeepLastPublishedEvent() {
+        // Given
+        when(userEventRepository.findHeadOffset()).thenReturn(42L);
+        eventLog.refreshHead();
+        when(userEventRepository.deletePublishedBefore(any(), eq(42L))).thenReturn(3);
+
+        // When
+        int removed = eventLog.prune();
+
+        // Then
+        assertEquals(3, removed);
+        assertEquals(3.0, meterRegistry.get("users.events.pruned").counter().count());
+    }
+
+    private UserEvent event(Long id) {
+        UserEvent event = new UserEvent();
+        event.setId(id);
+        event.setType(UserEventType.CREATED);
+        event.setUserId(id);
+        event.setOccurredAt(LocalDateTime.now());
+        return event;
+    }
+}
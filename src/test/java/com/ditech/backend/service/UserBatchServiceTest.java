@@ -0,0 +1,281 @@
+package com.ditech.backend.service;
+
+import com.ditech.backend.cache.UserCache;
+import com.ditech.backend.dto.UserBatchCreateResponseDto;
+import com.ditech.backend.dto.UserBatchItemResultDto;
+import com.ditech.backend.dto.UserBulkDeleteResponseDto;
+import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.index.UserActiveCounts;
+import com.ditech.backend.index.UserPrefixIndex;
+import com.ditech.backend.index.UserTrigramIndex;
+import com.ditech.backend.index.UserUniquenessFilter;
+import com.ditech.backend.mapper.UserMapper;
+import com.ditech.backend.model.User;
+import com.ditech.backend.outbox.UserEventLog;
+import com.ditech.backend.repository.UserEventRepository;
+import com.ditech.backend.repository.UserIdAndActive;
+import com.ditech.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserBatchServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserMapper userMapper;
+
+    @Mock
+    private UserEventRepository userEventRepository;
+
+    @Mock
+    private UserEventLog userEventLog;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private UserUniquenessFilter uniquenessFilter;
+
+    @Mock
+    private UserPrefixIndex prefixIndex;
+
+    @Mock
+    private UserTrigramIndex trigramIndex;
+
+    @Mock
+    private UserActiveCounts activeCounts;
+
+    @InjectMocks
+    private UserBatchService userBatchService;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userBatchService, "chunkSize", 2);
+        ReflectionTestUtils.setField(userBatchService, "deleteChunkSize", 2);
+
+        // Por defecto el filtro no descarta ningún valor
+        lenient().when(uniquenessFilter.mightContainUsername(any())).thenReturn(true);
+        lenient().when(uniquenessFilter.mightContainEmail(any())).thenReturn(true);
+
+        // Ejecutar los callbacks de TransactionTemplate directamente
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(userMapper.toEntity(any(UserCreateRequestDto.class))).thenAnswer(inv -> {
+            UserCreateRequestDto dto = inv.getArgument(0);
+            User user = new User();
+            user.setUsername(dto.getUsername());
+            user.setEmail(dto.getEmail());
+            user.setActive(dto.getActive());
+            return user;
+        });
+        lenient().when(userRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<User> users = inv.getArgument(0);
+            users.forEach(user -> user.setId(sequence.incrementAndGet()));
+            return users;
+        });
+        lenient().when(userMapper.toResponseDto(any(User.class))).thenAnswer(inv -> {
+            User user = inv.getArgument(0);
+            UserResponseDto dto = new UserResponseDto();
+            dto.setId(user.getId());
+            dto.setUsername(user.getUsername());
+            dto.setEmail(user.getEmail());
+            dto.setActive(user.getActive());
+            return dto;
+        });
+    }
+
+    @Test
+    void createUsers_ShouldInsertInChunks_WhenAllUsersAreNew() {
+        // Given
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of());
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        List<UserCreateRequestDto> requests = List.of(request("ana"), request("bob"), request("carla"));
+
+        // When
+        UserBatchCreateResponseDto result = userBatchService.createUsers(requests);
+
+        // Then - 3 usuarios con bloques de 2: dos transacciones y dos flush
+        assertEquals(3, result.getCreated());
+        assertEquals(0, result.getConflicts());
+        assertEquals(List.of(1L, 2L, 3L), result.getResults().stream().map(r -> r.getUser().getId()).toList());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(userRepository, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+        verify(userCache, times(1)).registerCreated(List.of(1L, 2L));
+        verify(userCache, times(1)).registerCreated(List.of(3L));
+        verify(uniquenessFilter, times(3)).add(any(), any());
+        verify(activeCounts, times(3)).recordCreated(true);
+        verify(userEventRepository, times(1)).insertCreatedEvents(List.of(1L, 2L));
+        verify(userEventRepository, times(1)).insertCreatedEvents(List.of(3L));
+        verify(userEventLog, times(2)).wakeUp();
+    }
+
+    @Test
+    void createUsers_ShouldReportConflicts_WhenValuesExistOrRepeatInBatch() {
+        // Given
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of("ana"));
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        List<UserCreateRequestDto> requests = List.of(request("ana"), request("bob"), request("bob"));
+
+        // When
+        UserBatchCreateResponseDto result = userBatchService.createUsers(requests);
+
+        // Then
+        assertEquals(1, result.getCreated());
+        assertEquals(2, result.getConflicts());
+        assertEquals(UserBatchItemResultDto.Status.CONFLICT, result.getResults().get(0).getStatus());
+        assertEquals(UserBatchItemResultDto.Status.CREATED, result.getResults().get(1).getStatus());
+        assertEquals(UserBatchItemResultDto.Status.CONFLICT, result.getResults().get(2).getStatus());
+        assertEquals(2, result.getResults().get(2).getIndex());
+        verify(userRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void createUsers_ShouldRetryRowByRow_WhenChunkHitsConcurrentDuplicate() {
+        // Given - el bloque falla por un duplicado insertado en paralelo; al reintentar solo falla "bob"
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of());
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of());
+        doAnswer(inv -> {
+            throw new DataIntegrityViolationException("duplicado");
+        }).doNothing()
+          .doAnswer(inv -> {
+              throw new DataIntegrityViolationException("duplicado");
+          })
+          .when(userRepository).flush();
+
+        // When
+        UserBatchCreateResponseDto result = userBatchService.createUsers(List.of(request("ana"), request("bob")));
+
+        // Then
+        assertEquals(1, result.getCreated());
+        assertEquals(UserBatchItemResultDto.Status.CREATED, result.getResults().get(0).getStatus());
+        assertEquals(UserBatchItemResultDto.Status.CONFLICT, result.getResults().get(1).getStatus());
+        verify(transactionTemplate, times(3)).execute(any());
+    }
+
+    @Test
+    void createUsers_ShouldNotQueryDatabase_WhenFilterRulesOutAllValues() {
+        // Given
+        when(uniquenessFilter.mightContainUsername(any())).thenReturn(false);
+        when(uniquenessFilter.mightContainEmail(any())).thenReturn(false);
+
+        // When
+        UserBatchCreateResponseDto result = userBatchService.createUsers(List.of(request("ana"), request("bob")));
+
+        // Then
+        assertEquals(2, result.getCreated());
+        verify(userRepository, never()).findExistingUsernames(anyCollection());
+        verify(userRepository, never()).findExistingEmails(anyCollection());
+    }
+
+    @Test
+    void deleteUsers_ShouldDeleteInChunks_WhenIdsProvided() {
+        // Given - 3 IDs distintos (uno repetido) con bloques de 2; el 2 es inactivo y el 3 no existe
+        when(userRepository.lockByIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(new UserIdAndActive(1L, true), new UserIdAndActive(2L, false)));
+        when(userRepository.lockByIdIn(List.of(3L))).thenReturn(List.of());
+
+        // When
+        UserBulkDeleteResponseDto result = userBatchService.deleteUsers(List.of(1L, 2L, 2L, 3L));
+
+        // Then
+        assertEquals(4, result.getRequested());
+        assertEquals(2, result.getDeleted());
+        verify(userCache, times(1)).markDeleted(1L);
+        verify(userCache, times(1)).markDeleted(3L);
+        verify(uniquenessFilter, times(1)).recordRemovals(2);
+        verify(uniquenessFilter, times(1)).recordRemovals(0);
+        verify(activeCounts, times(1)).recordDeleted(true, 1);
+        verify(activeCounts, times(1)).recordDeleted(false, 1);
+        // Cada bloque bloquea sus filas y solo escribe eventos de las que existen, antes del DELETE
+        verify(transactionTemplate, times(2)).execute(any());
+        InOrder inOrder = inOrder(userEventRepository, userRepository);
+        inOrder.verify(userRepository).lockByIdIn(List.of(1L, 2L));
+        inOrder.verify(userEventRepository).insertDeletedEvents(List.of(1L, 2L));
+        inOrder.verify(userRepository).deleteUsersByIdIn(List.of(1L, 2L));
+        inOrder.verify(userRepository).lockByIdIn(List.of(3L));
+        verify(userEventRepository, never()).insertDeletedEvents(List.of(3L));
+    }
+
+    @Test
+    void deleteUsers_ShouldSkipEvents_WhenConcurrentDeleteRemovedRows() {
+        // Given - otra baja eliminó el 1 mientras esta esperaba el bloqueo
+        when(userRepository.lockByIdIn(List.of(1L, 2L))).thenReturn(List.of(new UserIdAndActive(2L, true)));
+
+        // When
+        UserBulkDeleteResponseDto result = userBatchService.deleteUsers(List.of(1L, 2L));
+
+        // Then - solo el usuario bloqueado por esta transacción tiene evento y se elimina
+        assertEquals(1, result.getDeleted());
+        verify(userEventRepository).insertDeletedEvents(List.of(2L));
+        verify(userRepository).deleteUsersByIdIn(List.of(2L));
+        verify(activeCounts, times(1)).recordDeleted(true, 1);
+        verify(activeCounts, times(1)).recordDeleted(false, 0);
+    }
+
+    @Test
+    void deleteInactiveUsers_ShouldWalkInactiveIdsByKeyset_UntilLastChunk() {
+        // Given
+        when(userRepository.findInactiveIds(0L, Limit.of(2))).thenReturn(List.of(4L, 7L));
+        when(userRepository.findInactiveIds(7L, Limit.of(2))).thenReturn(List.of(9L));
+        when(userRepository.lockByIdIn(List.of(4L, 7L)))
+                .thenReturn(List.of(new UserIdAndActive(4L, false), new UserIdAndActive(7L, false)));
+        when(userRepository.lockByIdIn(List.of(9L))).thenReturn(List.of(new UserIdAndActive(9L, false)));
+        when(userRepository.deleteUsersByIdInAndActive(List.of(4L, 7L), false)).thenReturn(2);
+        when(userRepository.deleteUsersByIdInAndActive(List.of(9L), false)).thenReturn(1);
+
+        // When
+        UserBulkDeleteResponseDto result = userBatchService.deleteInactiveUsers();
+
+        // Then
+        assertEquals(3, result.getDeleted());
+        verify(userRepository, times(2)).findInactiveIds(anyLong(), any(Limit.class));
+        verify(userCache, times(1)).markDeleted(9L);
+        verify(activeCounts, times(1)).recordDeleted(false, 2);
+        verify(activeCounts, times(1)).recordDeleted(false, 1);
+        verify(userRepository, never()).deleteUsersByIdInAndActive(anyCollection(), eq(true));
+        verify(userEventRepository, times(1)).insertDeletedEvents(List.of(4L, 7L));
+        verify(userEventRepository, times(1)).insertDeletedEvents(List.of(9L));
+    }
+
+    private UserCreateRequestDto request(String username) {
+        UserCreateRequestDto dto = new UserCreateRequestDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@ejemplo.com");
+        dto.setActive(true);
+        return dto;
+    }
+}
@@ -1,23 +1,54 @@
 package com.ditech.backend.service;
 
+import com.ditech.backend.cache.SingleFlight;
+import com.ditech.backend.cache.UserCache;
+import com.ditech.backend.dto.UserCountResponseDto;
 import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserLookupResponseDto;
+import com.ditech.backend.dto.UserPageResponseDto;
+import com.ditech.backend.dto.UserFuzzySearchResponseDto;
 import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.dto.UserSearchResponseDto;
+import com.ditech.backend.exception.UserAlreadyExistsException;
 import com.ditech.backend.exception.UserNotFoundException;
+import com.ditech.backend.index.UserActiveCounts;
+import com.ditech.backend.index.UserPrefixIndex;
+import com.ditech.backend.index.UserTrigramIndex;
+import com.ditech.backend.index.UserUniquenessFilter;
 import com.ditech.backend.mapper.UserMapper;
 import com.ditech.backend.model.User;
+import com.ditech.backend.outbox.UserEventLog;
+import com.ditech.backend.pagination.CursorCodec;
+import com.ditech.backend.repository.UserEventRepository;
+import com.ditech.backend.repository.UserKeys;
 import com.ditech.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,9 +57,33 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserEventRepository userEventRepository;
+
+    @Mock
+    private UserEventLog userEventLog;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @Mock
     private UserMapper userMapper;
 
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private UserUniquenessFilter uniquenessFilter;
+
+    @Mock
+    private UserPrefixIndex prefixIndex;
+
+    @Mock
+    private UserTrigramIndex trigramIndex;
+    
+    @Mock
+    private UserActiveCounts activeCounts;
+
     @InjectMocks
     private UserService userService;
 
@@ -38,6 +93,21 @@ class UserServiceTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(userService, "maxPageSize", 100);
+        ReflectionTestUtils.setField(userService, "maxSearchLimit", 50);
+        ReflectionTestUtils.setField(userService, "maxQueryLength", 100);
+        ReflectionTestUtils.setField(userService, "singleFlight",
+                new SingleFlight(Duration.ofSeconds(1), new SimpleMeterRegistry()));
+        // Ejecutar los callbacks de TransactionTemplate directamente
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        // Por defecto la caché siempre falla y delega en el loader
+        lenient().when(userCache.get(any(), any())).thenAnswer(
+                inv -> inv.<Function<Long, UserResponseDto>>getArgument(1).apply(inv.getArgument(0)));
+        lenient().when(userCache.getAll(any(), any())).thenAnswer(
+                inv -> inv.<Function<Collection<Long>, Map<Long, UserResponseDto>>>getArgument(1)
+                        .apply(inv.getArgument(0)));
+
         // Configurar datos de prueba
         mockUser = new User();
         mockUser.setId(1L);
@@ -92,6 +162,8 @@ class UserServiceTest {
         verify(userMapper, times(1)).toEntity(mockCreateRequestDto);
         verify(userRepository, times(1)).save(userToSave);
         verify(userMapper, times(1)).toResponseDto(savedUser);
+        verify(userCache, times(1)).registerCreated(1L);
+        verify(activeCounts, times(1)).recordCreated(true);
     }
 
     @Test
@@ -129,6 +201,174 @@ class UserServiceTest {
         verify(userRepository, times(1)).save(any(User.class));
         verify(userMapper, times(1)).toEntity(any(UserCreateRequestDto.class));
         verify(userMapper, times(1)).toResponseDto(any(User.class));
+        // El evento CREATED se copia de la fila ya enviada con flush, en la misma transacción
+        InOrder inOrder = inOrder(userRepository, userEventRepository, userEventLog);
+        inOrder.verify(userRepository).flush();
+        inOrder.verify(userEventRepository).insertCreatedEvents(List.of(2L));
+        inOrder.verify(userEventLog).wakeUp();
+    }
+
+    @Test
+    void createUser_ShouldSkipDatabaseProbe_WhenFilterSaysValuesAreNew() {
+        // Given - el mock del filtro responde false: valores seguro nuevos
+        when(userMapper.toEntity(mockCreateRequestDto)).thenReturn(mockUser);
+        when(userRepository.save(mockUser)).thenReturn(mockUser);
+        when(userMapper.toResponseDto(mockUser)).thenReturn(mockResponseDto);
+
+        // When
+        userService.createUser(mockCreateRequestDto);
+
+        // Then
+        verify(userRepository, never()).existsByUsername(any());
+        verify(userRepository, never()).existsByEmail(any());
+        verify(uniquenessFilter, times(1)).add("testuser", "test@ejemplo.com");
+    }
+
+    @Test
+    void createUser_ShouldThrowUserAlreadyExistsException_WhenUsernameExists() {
+        // Given
+        when(uniquenessFilter.mightContainUsername("testuser")).thenReturn(true);
+        when(userRepository.existsByUsername("testuser")).thenReturn(true);
+
+        // When & Then
+        UserAlreadyExistsException exception = assertThrows(UserAlreadyExistsException.class,
+                () -> userService.createUser(mockCreateRequestDto));
+
+        assertEquals("El nombre de usuario ya existe: testuser", exception.getMessage());
+        verify(userRepository, never()).save(any(User.class));
+        verify(uniquenessFilter, never()).add(any(), any());
+    }
+
+    @Test
+    void createUser_ShouldRecordFalsePositive_WhenFilterMatchesButDatabaseDoesNot() {
+        // Given
+        when(uniquenessFilter.mightContainEmail("test@ejemplo.com")).thenReturn(true);
+        when(userRepository.existsByEmail("test@ejemplo.com")).thenReturn(false);
+        when(userMapper.toEntity(mockCreateRequestDto)).thenReturn(mockUser);
+        when(userRepository.save(mockUser)).thenReturn(mockUser);
+        when(userMapper.toResponseDto(mockUser)).thenReturn(mockResponseDto);
+
+        // When
+        UserResponseDto result = userService.createUser(mockCreateRequestDto);
+
+        // Then
+        assertEquals(1L, result.getId());
+        verify(uniquenessFilter, times(1)).recordFalsePositive();
+        verify(userRepository, never()).existsByUsername(any());
+    }
+
+    @Test
+    void createUser_ShouldThrowUserAlreadyExistsException_WhenInsertHitsUniqueConstraint() {
+        // Given - un alta concurrente gana la carrera después de la comprobación
+        when(userMapper.toEntity(mockCreateRequestDto)).thenReturn(mockUser);
+        when(userRepository.save(mockUser)).thenThrow(new DataIntegrityViolationException("duplicado"));
+
+        // When & Then
+        assertThrows(UserAlreadyExistsException.class, () -> userService.createUser(mockCreateRequestDto));
+        verify(userCache, never()).registerCreated(anyLong());
+        verifyNoInteractions(userEventRepository, userEventLog);
+    }
+
+    @Test
+    void getAllUsers_ShouldReturnFirstPageWithCursor_WhenMoreRowsExist() {
+        // Given - se piden 2 y el repositorio devuelve 3 (el extra indica que hay más)
+        List<UserResponseDto> rows = List.of(buildDto(1L), buildDto(2L), buildDto(3L));
+        when(userRepository.findResponsePage(0L, Limit.of(3))).thenReturn(rows);
+
+        // When
+        UserPageResponseDto page = userService.getAllUsers(null, null, 2);
+
+        // Then
+        assertEquals(2, page.getItems().size());
+        assertEquals(1L, page.getItems().get(0).getId());
+        assertEquals(2L, page.getItems().get(1).getId());
+        assertTrue(page.isHasMore());
+        assertEquals(2L, CursorCodec.decode(page.getNextCursor()));
+
+        // La proyección evita cargar entidades y mapearlas
+        verifyNoInteractions(userMapper);
+    }
+
+    @Test
+    void getAllUsers_ShouldContinueAfterCursor_WhenCursorProvided() {
+        // Given
+        String cursor = CursorCodec.encode(2L);
+        when(userRepository.findResponsePage(2L, Limit.of(3))).thenReturn(List.of(buildDto(3L)));
+
+        // When
+        UserPageResponseDto page = userService.getAllUsers(null, cursor, 2);
+
+        // Then
+        assertEquals(1, page.getItems().size());
+        assertEquals(3L, page.getItems().get(0).getId());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getAllUsers_ShouldClampLimit_WhenLimitExceedsMaximum() {
+        // Given
+        ReflectionTestUtils.setField(userService, "maxPageSize", 10);
+        when(userRepository.findResponsePage(0L, Limit.of(11))).thenReturn(new ArrayList<>());
+
+        // When
+        UserPageResponseDto page = userService.getAllUsers(null, null, 5000);
+
+        // Then
+        assertTrue(page.getItems().isEmpty());
+        verify(userRepository, times(1)).findResponsePage(0L, Limit.of(11));
+    }
+
+    @Test
+    void getAllUsers_ShouldPageOverActiveIndex_WhenActiveFilterProvided() {
+        // Given
+        String cursor = CursorCodec.encode(5L);
+        when(userRepository.findResponsePageByActive(false, 5L, Limit.of(3)))
+                .thenReturn(List.of(buildDto(8L), buildDto(9L), buildDto(12L)));
+
+        // When
+        UserPageResponseDto page = userService.getAllUsers(false, cursor, 2);
+
+        // Then - el cursor sigue siendo el último ID entregado
+        assertEquals(List.of(8L, 9L), page.getItems().stream().map(UserResponseDto::getId).toList());
+        assertEquals(9L, CursorCodec.decode(page.getNextCursor()));
+        verify(userRepository, never()).findResponsePage(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void countUsers_ShouldAnswerFromCounters() {
+        // Given
+        when(activeCounts.count(true)).thenReturn(42L);
+
+        // When
+        UserCountResponseDto result = userService.countUsers(true);
+
+        // Then - sin consultas a la base de datos
+        assertEquals(Boolean.TRUE, result.getActive());
+        assertEquals(42L, result.getCount());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getAllUsers_ShouldThrowIllegalArgumentException_WhenLimitOrCursorInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> userService.getAllUsers(null, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> userService.getAllUsers(null, "no-es-un-cursor", 10));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void exportUsers_ShouldPassEachProjectedRowToSink_WhenStreamingTable() {
+        // Given
+        when(userRepository.streamAllResponses()).thenReturn(Stream.of(buildDto(1L), buildDto(2L)));
+        List<UserResponseDto> received = new ArrayList<>();
+
+        // When
+        long exported = userService.exportUsers(received::add);
+
+        // Then
+        assertEquals(2L, exported);
+        assertEquals(List.of(1L, 2L), received.stream().map(UserResponseDto::getId).toList());
+        verifyNoInteractions(userMapper);
     }
 
     @Test
@@ -137,8 +377,7 @@ class UserServiceTest {
         Long userId = 1L;
 
         // When
-        when(userRepository.findById(userId)).thenReturn(Optional.of(mockUser));
-        when(userMapper.toResponseDto(mockUser)).thenReturn(mockResponseDto);
+        when(userRepository.findResponseById(userId)).thenReturn(Optional.of(mockResponseDto));
 
         UserResponseDto result = userService.getUserById(userId);
 
@@ -148,9 +387,10 @@ class UserServiceTest {
         assertEquals("testuser", result.getUsername());
         assertEquals("test@ejemplo.com", result.getEmail());
 
-        // Verificar que se llamaron los métodos correctos
-        verify(userRepository, times(1)).findById(userId);
-        verify(userMapper, times(1)).toResponseDto(mockUser);
+        // La proyección devuelve el DTO directamente: no se carga la entidad ni se usa el mapper
+        verify(userRepository, times(1)).findResponseById(userId);
+        verify(userRepository, never()).findById(any());
+        verifyNoInteractions(userMapper);
     }
 
     @Test
@@ -159,7 +399,7 @@ class UserServiceTest {
         Long nonExistentUserId = 999L;
 
         // When
-        when(userRepository.findById(nonExistentUserId)).thenReturn(Optional.empty());
+        when(userRepository.findResponseById(nonExistentUserId)).thenReturn(Optional.empty());
 
         // Then
         UserNotFoundException exception = assertThrows(
@@ -169,29 +409,19 @@ class UserServiceTest {
 
         assertEquals("Usuario no encontrado con ID: " + nonExistentUserId, exception.getMessage());
 
-        // Verificar que se llamó findById pero no toResponseDto
-        verify(userRepository, times(1)).findById(nonExistentUserId);
+        // Verificar que se consultó la proyección pero no se usó el mapper
+        verify(userRepository, times(1)).findResponseById(nonExistentUserId);
         verify(userMapper, never()).toResponseDto(any(User.class));
     }
 
     @Test
-    void getUserById_ShouldCallRepositoryFindById_WhenCalled() {
+    void getUserById_ShouldCallRepositoryProjection_WhenCalled() {
         // Given
         Long userId = 5L;
-        User foundUser = new User();
-        foundUser.setId(userId);
-        foundUser.setUsername("founduser");
-        foundUser.setEmail("found@ejemplo.com");
-        foundUser.setActive(false);
-
-        UserResponseDto expectedResponse = new UserResponseDto();
-        expectedResponse.setId(userId);
-        expectedResponse.setUsername("founduser");
-        expectedResponse.setEmail("found@ejemplo.com");
+        UserResponseDto expectedResponse = new UserResponseDto(userId, "founduser", "found@ejemplo.com");
 
         // When
-        when(userRepository.findById(userId)).thenReturn(Optional.of(foundUser));
-        when(userMapper.toResponseDto(foundUser)).thenReturn(expectedResponse);
+        when(userRepository.findResponseById(userId)).thenReturn(Optional.of(expectedResponse));
 
         UserResponseDto result = userService.getUserById(userId);
 
@@ -201,40 +431,149 @@ class UserServiceTest {
         assertEquals("founduser", result.getUsername());
 
         // Verificar interacciones específicas
-        verify(userRepository, times(1)).findById(userId);
-        verify(userMapper, times(1)).toResponseDto(foundUser);
+        verify(userRepository, times(1)).findResponseById(userId);
         verifyNoMoreInteractions(userRepository, userMapper);
     }
     
+    @Test
+    void getUserById_ShouldNotQueryRepository_WhenUserIsCached() {
+        // Given
+        when(userCache.getIfPresent(1L)).thenReturn(mockResponseDto);
+
+        // When
+        UserResponseDto result = userService.getUserById(1L);
+
+        // Then
+        assertSame(mockResponseDto, result);
+        verify(userCache, never()).get(any(), any());
+        verifyNoInteractions(userRepository, userMapper);
+    }
+
+    @Test
+    void getUsersByIds_ShouldReturnUsersInRequestOrderAndReportMissing() {
+        // Given - la base de datos devuelve las filas en otro orden
+        when(userRepository.findResponsesByIdIn(any())).thenReturn(List.of(buildDto(1L), buildDto(3L)));
+
+        // When
+        UserLookupResponseDto result = userService.getUsersByIds(List.of(3L, 2L, 1L, 3L));
+
+        // Then - sin repetidos y en el orden pedido
+        assertEquals(List.of(3L, 1L), result.getUsers().stream().map(UserResponseDto::getId).toList());
+        assertEquals(List.of(2L), result.getMissing());
+        verify(userRepository, times(1)).findResponsesByIdIn(List.of(3L, 2L, 1L));
+    }
+
+    @Test
+    void getUsersByIds_ShouldSplitInClause_WhenIdsExceedChunkSize() {
+        // Given
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 2500; id++) {
+            ids.add(id);
+        }
+        when(userRepository.findResponsesByIdIn(any())).thenReturn(List.of());
+
+        // When
+        UserLookupResponseDto result = userService.getUsersByIds(ids);
+
+        // Then - bloques de 1000, 1000 y 500 IDs
+        verify(userRepository, times(3)).findResponsesByIdIn(any());
+        assertEquals(2500, result.getMissing().size());
+        assertTrue(result.getUsers().isEmpty());
+    }
+
+    @Test
+    void searchUsers_ShouldMapIndexMatchesAndCapLimit() {
+        // Given
+        when(prefixIndex.search("ali", 50)).thenReturn(new UserPrefixIndex.SearchResult(
+                List.of(new UserKeys(7L, "alice", "alice@ejemplo.com")), false));
+
+        // When
+        UserSearchResponseDto result = userService.searchUsers("ali", 500);
+
+        // Then - el límite se recorta a users.search.max-limit y no se consulta la base de datos
+        assertEquals(1, result.getUsers().size());
+        assertEquals(7L, result.getUsers().get(0).getId());
+        assertEquals("alice@ejemplo.com", result.getUsers().get(0).getEmail());
+        assertFalse(result.isComplete());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void searchUsers_ShouldRejectBlankPrefixOrInvalidLimit() {
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers(null, 10));
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers("  ", 10));
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers("a".repeat(101), 10));
+        assertThrows(IllegalArgumentException.class, () -> userService.searchUsers("ali", 0));
+        verifyNoInteractions(prefixIndex);
+    }
+
+    @Test
+    void fuzzySearchUsers_ShouldReturnMatchesWithSimilarity() {
+        // Given
+        when(trigramIndex.search("jhon", 10)).thenReturn(new UserTrigramIndex.SearchResult(
+                List.of(new UserTrigramIndex.Match(new UserKeys(3L, "john", "john@ejemplo.com"), 0.5)), true));
+
+        // When
+        UserFuzzySearchResponseDto result = userService.fuzzySearchUsers("jhon", 10);
+
+        // Then
+        assertEquals(1, result.getUsers().size());
+        assertEquals("john", result.getUsers().get(0).getUsername());
+        assertEquals(0.5, result.getUsers().get(0).getSimilarity());
+        assertTrue(result.isComplete());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void fuzzySearchUsers_ShouldRejectBlankQuery() {
+        assertThrows(IllegalArgumentException.class, () -> userService.fuzzySearchUsers(" ", 10));
+        verifyNoInteractions(trigramIndex);
+    }
+
     @Test
     void deleteUser_ShouldDeleteUser_WhenUserExists() {
         // Given
         Long userId = 1L;
-        User existingUser = new User();
-        existingUser.setId(userId);
-        existingUser.setUsername("userToDelete");
-        existingUser.setEmail("delete@ejemplo.com");
-        existingUser.setActive(true);
 
         // When
-        when(userRepository.findById(userId)).thenReturn(Optional.of(existingUser));
-        doNothing().when(userRepository).delete(existingUser);
+        when(userRepository.deleteUserReturningActive(userId)).thenReturn(Optional.of(true));
 
         userService.deleteUser(userId);
 
-        // Then
-        verify(userRepository, times(1)).findById(userId);
-        verify(userRepository, times(1)).delete(existingUser);
+        // Then - una sola sentencia, sin leer antes la entidad
+        verify(userRepository, times(1)).deleteUserReturningActive(userId);
+        verify(activeCounts, times(1)).recordDeleted(true, 1);
+        verify(userCache, times(1)).markDeleted(userId);
+        verify(uniquenessFilter, times(1)).recordRemovals(1);
+        verify(prefixIndex, times(1)).remove(userId);
+        verify(trigramIndex, times(1)).remove(userId);
+        verify(userEventRepository, times(1)).insertDeletedEvent(userId, true);
+        verify(userEventLog, times(1)).wakeUp();
         verifyNoMoreInteractions(userRepository);
     }
     
+    @Test
+    void deleteUser_ShouldDiscountInactiveCounter_WhenUserIsInactive() {
+        // Given
+        Long userId = 3L;
+        when(userRepository.deleteUserReturningActive(userId)).thenReturn(Optional.of(false));
+
+        // When
+        userService.deleteUser(userId);
+
+        // Then
+        verify(activeCounts, times(1)).recordDeleted(false, 1);
+        verify(userCache, times(1)).markDeleted(userId);
+        verify(userEventRepository, times(1)).insertDeletedEvent(userId, false);
+    }
+    
     @Test
     void deleteUser_ShouldThrowUserNotFoundException_WhenUserDoesNotExist() {
         // Given
         Long userId = 999L;
 
         // When
-        when(userRepository.findById(userId)).thenReturn(Optional.empty());
+        when(userRepository.deleteUserReturningActive(userId)).thenReturn(Optional.empty());
 
         // Then
         UserNotFoundException exception = assertThrows(UserNotFoundException.class, 
@@ -242,9 +581,16 @@ class UserServiceTest {
         
         assertEquals("Usuario no encontrado con ID: " + userId, exception.getMessage());
         
-        // Verificar que se llamó findById pero NO delete
-        verify(userRepository, times(1)).findById(userId);
-        verify(userRepository, never()).delete(any(User.class));
+        // Verificar que solo se ejecutó el DELETE y no se tocó la caché ni los contadores
+        verify(userRepository, times(1)).deleteUserReturningActive(userId);
+        verifyNoInteractions(activeCounts);
+        verify(userRepository, never()).findById(any());
+        verify(userCache, never()).markDeleted(any());
+        verifyNoInteractions(userEventRepository, userEventLog);
         verifyNoMoreInteractions(userRepository);
     }
+
+    private UserResponseDto buildDto(Long id) {
+        return new UserResponseDto(id, "usuario" + id, "usuario" + id + "@ejemplo.com");
+    }
 }
\ No newline at end of file
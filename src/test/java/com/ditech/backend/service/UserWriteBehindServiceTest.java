@@ -0,0 +1,235 @@
+package com.ditech.backend.service;
+
+import com.ditech.backend.dto.UserBatchCreateResponseDto;
+import com.ditech.backend.dto.UserBatchItemResultDto;
+import com.ditech.backend.dto.UserCreateRequestDto;
+import com.ditech.backend.dto.UserResponseDto;
+import com.ditech.backend.dto.UserWriteStatusDto;
+import com.ditech.backend.exception.UserAlreadyExistsException;
+import com.ditech.backend.exception.WriteQueueFullException;
+import com.ditech.backend.exception.WriteStatusNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserWriteBehindServiceTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserBatchService userBatchService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserWriteBehindService writeBehind;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Por defecto el lote crea todas las altas
+        lenient().when(userBatchService.createUsers(anyList())).thenAnswer(inv -> createAll(inv.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehind != null) {
+            writeBehind.stop();
+        }
+    }
+
+    @Test
+    void submit_ShouldReturnPendingAndWriteInBackground() {
+        // Given
+        writeBehind = start(100, 10, Duration.ofMillis(1));
+
+        // When
+        UserWriteStatusDto accepted = writeBehind.submit(request("ana"));
+
+        // Then
+        assertEquals(UserWriteStatusDto.Status.PENDING, accepted.getStatus());
+        awaitTrue(() -> writeBehind.getStatus(accepted.getTrackingId()).getStatus() == UserWriteStatusDto.Status.CREATED);
+        UserWriteStatusDto written = writeBehind.getStatus(accepted.getTrackingId());
+        assertEquals("ana", written.getUser().getUsername());
+        verify(userService, times(1)).checkUniqueness(any());
+        assertEquals(1L, meterRegistry.get("users.writebehind.batch.size").summary().count());
+    }
+
+    @Test
+    void submit_ShouldRejectDuplicate_WhenUsernameIsReservedByPendingCreate() {
+        // Given - con un linger largo la primera alta sigue en la cola y mantiene su reserva
+        writeBehind = start(100, 10, Duration.ofSeconds(10));
+        writeBehind.submit(request("ana"));
+
+        // When & Then
+        assertThrows(UserAlreadyExistsException.class, () -> writeBehind.submit(request("ana")));
+    }
+
+    @Test
+    void submit_ShouldReleaseReservation_WhenUniquenessCheckFails() {
+        // Given
+        writeBehind = start(100, 10, Duration.ofMillis(1));
+        UserCreateRequestDto request = request("ana");
+        doThrow(new UserAlreadyExistsException("El nombre de usuario ya existe: ana"))
+                .doNothing()
+                .when(userService).checkUniqueness(request);
+
+        // When & Then - el segundo intento no choca con la reserva del primero
+        assertThrows(UserAlreadyExistsException.class, () -> writeBehind.submit(request));
+        assertDoesNotThrow(() -> writeBehind.submit(request));
+    }
+
+    @Test
+    void submit_ShouldThrowQueueFull_WhenCapacityIsReached() throws Exception {
+        // Given - el primer lote queda bloqueado en la base de datos
+        CountDownLatch release = new CountDownLatch(1);
+        when(userBatchService.createUsers(anyList())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return createAll(inv.getArgument(0));
+        });
+        writeBehind = start(1, 10, Duration.ofMillis(1));
+        writeBehind.submit(request("ana"));
+        awaitTrue(() -> depth() == 0);
+        writeBehind.submit(request("bea"));
+
+        // When & Then
+        assertThrows(WriteQueueFullException.class, () -> writeBehind.submit(request("carla")));
+        assertEquals(1.0, meterRegistry.get("users.writebehind.rejected").counter().count());
+        release.countDown();
+    }
+
+    @Test
+    void submit_ShouldWakeWriter_WhenConcurrentSubmitsLeaveQueueEmpty() throws Exception {
+        // Given - el escritor está parado sin altas pendientes en cada ronda y dos peticiones
+        // llegan a la vez: las dos incrementan la profundidad antes de que ninguna la lea
+        writeBehind = start(100, 50, Duration.ofMillis(1));
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        doAnswer(inv -> barrier.await(5, TimeUnit.SECONDS)).when(userService).checkUniqueness(any());
+
+        for (int round = 0; round < 200; round++) {
+            // When
+            String first = "a" + round;
+            String second = "b" + round;
+            CompletableFuture<String> submitted = CompletableFuture.supplyAsync(
+                    () -> writeBehind.submit(request(first)).getTrackingId());
+            String trackingId = writeBehind.submit(request(second)).getTrackingId();
+            List<String> trackingIds = List.of(submitted.get(5, TimeUnit.SECONDS), trackingId);
+
+            // Then - la primera alta despierta al escritor y las dos se escriben sin esperar a otra
+            awaitTrue(() -> trackingIds.stream().allMatch(
+                    id -> writeBehind.getStatus(id).getStatus() == UserWriteStatusDto.Status.CREATED));
+            awaitTrue(() -> depth() == 0);
+        }
+    }
+
+    @Test
+    void stop_ShouldFlushPendingCreates() {
+        // Given - un linger largo deja las altas en la cola
+        writeBehind = start(100, 50, Duration.ofSeconds(30));
+        List<String> trackingIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            trackingIds.add(writeBehind.submit(request("user" + i)).getTrackingId());
+        }
+
+        // When
+        writeBehind.stop();
+
+        // Then
+        for (String trackingId : trackingIds) {
+            assertEquals(UserWriteStatusDto.Status.CREATED, writeBehind.getStatus(trackingId).getStatus());
+        }
+        assertThrows(WriteQueueFullException.class, () -> writeBehind.submit(request("tarde")));
+    }
+
+    @Test
+    void write_ShouldMarkFailed_WhenBatchCannotBeWritten() {
+        // Given
+        when(userBatchService.createUsers(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Base de datos no disponible"));
+        writeBehind = start(100, 10, Duration.ofMillis(1));
+
+        // When
+        String trackingId = writeBehind.submit(request("ana")).getTrackingId();
+
+        // Then - el estado es FAILED y la reserva se libera
+        awaitTrue(() -> writeBehind.getStatus(trackingId).getStatus() == UserWriteStatusDto.Status.FAILED);
+        awaitTrue(() -> {
+            try {
+                writeBehind.submit(request("ana"));
+                return true;
+            } catch (UserAlreadyExistsException ex) {
+                return false;
+            }
+        });
+    }
+
+    @Test
+    void getStatus_ShouldThrowNotFound_WhenTrackingIdIsUnknown() {
+        writeBehind = start(100, 10, Duration.ofMillis(1));
+
+        assertThrows(WriteStatusNotFoundException.class, () -> writeBehind.getStatus("desconocido"));
+    }
+
+    private UserWriteBehindService start(int capacity, int batchSize, Duration linger) {
+        UserWriteBehindService service = new UserWriteBehindService(userService, userBatchService, true,
+                capacity, batchSize, linger, 1000, Duration.ofMinutes(1), Duration.ofSeconds(5), meterRegistry);
+        service.start();
+        return service;
+    }
+
+    private double depth() {
+        return meterRegistry.get("users.writebehind.queue.depth").gauge().value();
+    }
+
+    private UserBatchCreateResponseDto createAll(List<UserCreateRequestDto> requests) {
+        List<UserBatchItemResultDto> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            UserCreateRequestDto request = requests.get(i);
+            results.add(UserBatchItemResultDto.created(i,
+                    new UserResponseDto(sequence.incrementAndGet(), request.getUsername(), request.getEmail())));
+        }
+        return new UserBatchCreateResponseDto(results.size(), 0, results);
+    }
+
+    private static UserCreateRequestDto request(String username) {
+        UserCreateRequestDto request = new UserCreateRequestDto();
+        request.setUsername(username);
+        request.setEmail(username + "@ejemplo.com");
+        request.setActive(true);
+        return request;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "La condición no se cumplió a tiempo");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
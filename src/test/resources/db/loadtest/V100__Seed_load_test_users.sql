@@ -0,0 +1,8 @@
+-- Usuarios de la prueba de carga (IDs 1..seed-rows, uno de cada diez inactivo).
+-- Solo se aplica cuando LoadTest añade classpath:db/loadtest a spring.flyway.locations.
+INSERT INTO users (id, username, email, active)
+SELECT X, 'load' || X, 'load' || X || '@ejemplo.com', MOD(X, 10) <> 0
+FROM SYSTEM_RANGE(1, ${seed-rows});
+
+-- Continuar la secuencia por encima de los IDs sembrados
+ALTER SEQUENCE users_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM users);